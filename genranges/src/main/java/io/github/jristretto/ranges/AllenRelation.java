@@ -0,0 +1,201 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The thirteen relations of Allen's interval algebra, read as "x RELATION y".
+ *
+ * <p>
+ * With x = [a,b) and y = [c,d), {@link #of(Range, Range) of} finds the
+ * relation with at most three endpoint comparisons, where asking
+ * {@link Range#meets(Range) meets}, {@link Range#overlaps(Range) overlaps} and
+ * {@link Range#contains(Range) contains} one after the other takes up to ten.
+ * Empty ranges follow the same decision tree, e.g. [c,c) STARTS [c,d).</p>
+ */
+public enum AllenRelation {
+    /**
+     * b &lt; c.
+     */
+    BEFORE,
+    /**
+     * b == c.
+     */
+    MEETS,
+    /**
+     * a &lt; c &lt; b &lt; d.
+     */
+    OVERLAPS,
+    /**
+     * a == c, b &lt; d.
+     */
+    STARTS,
+    /**
+     * c &lt; a, b &lt; d.
+     */
+    DURING,
+    /**
+     * c &lt; a, b == d.
+     */
+    FINISHES,
+    /**
+     * a == c, b == d.
+     */
+    EQUALS,
+    /**
+     * a &lt; c, b == d.
+     */
+    FINISHED_BY,
+    /**
+     * a &lt; c, d &lt; b.
+     */
+    CONTAINS,
+    /**
+     * a == c, d &lt; b.
+     */
+    STARTED_BY,
+    /**
+     * c &lt; a &lt; d &lt; b.
+     */
+    OVERLAPPED_BY,
+    /**
+     * a == d.
+     */
+    MET_BY,
+    /**
+     * d &lt; a.
+     */
+    AFTER;
+
+    /**
+     * The relation of y to x when this is the relation of x to y.
+     *
+     * @return the inverse relation
+     */
+    public AllenRelation inverse() {
+        AllenRelation[] all = values();
+        return all[ all.length - 1 - ordinal() ];
+    }
+
+    /**
+     * Do ranges in this relation share at least one point.
+     *
+     * @return true for all relations but BEFORE, MEETS, MET_BY and AFTER
+     */
+    public boolean isOverlap() {
+        return this != BEFORE && this != MEETS && this != MET_BY
+                && this != AFTER;
+    }
+
+    /**
+     * Classify the relation of x to y.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param x first range
+     * @param y second range
+     * @return the relation of x to y
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            AllenRelation of( R x, R y ) {
+        int ac = x.start().compareTo( y.start() );
+        if ( ac < 0 ) {
+            int bc = x.end().compareTo( y.start() );
+            if ( bc < 0 ) {
+                return BEFORE;
+            }
+            if ( bc == 0 ) {
+                return MEETS;
+            }
+            int bd = x.end().compareTo( y.end() );
+            return bd < 0 ? OVERLAPS : bd == 0 ? FINISHED_BY : CONTAINS;
+        }
+        if ( ac > 0 ) {
+            int ad = x.start().compareTo( y.end() );
+            if ( ad > 0 ) {
+                return AFTER;
+            }
+            if ( ad == 0 ) {
+                return MET_BY;
+            }
+            int bd = x.end().compareTo( y.end() );
+            return bd < 0 ? DURING : bd == 0 ? FINISHES : OVERLAPPED_BY;
+        }
+        int bd = x.end().compareTo( y.end() );
+        return bd < 0 ? STARTS : bd == 0 ? EQUALS : STARTED_BY;
+    }
+
+    /**
+     * Classify every range against every query, skipping the pairs that are
+     * far apart. A plane sweep over the starts only visits pairs that touch,
+     * so the result holds every pair that is neither BEFORE nor AFTER. Any
+     * pair not in the result is one of those two, which the order of their
+     * starts decides.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted ranges in order of start
+     * @param queries in any order
+     * @return per relation the (range, query) pairs in that relation
+     * @throws IllegalArgumentException when the ranges are not sorted
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            Map<AllenRelation, List<RangePair<R>>> classify(
+                    List<? extends R> sorted, Collection<? extends R> queries ) {
+        Map<AllenRelation, List<RangePair<R>>> result = new EnumMap<>(
+                AllenRelation.class );
+        List<R> qs = new ArrayList<>( queries );
+        qs.sort( null );
+        List<R> activeR = new ArrayList<>();
+        List<R> activeQ = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while ( i < sorted.size() || j < qs.size() ) {
+            boolean takeRange = j >= qs.size() || ( i < sorted.size() && sorted
+                    .get( i ).start().compareTo( qs.get( j ).start() ) <= 0 );
+            if ( takeRange ) {
+                R r = sorted.get( i++ );
+                if ( i > 1 && sorted.get( i - 2 ).start().compareTo( r.start() ) > 0 ) {
+                    throw new IllegalArgumentException( "range " + r + " at "
+                            + ( i - 1 ) + " is out of order" );
+                }
+                expire( activeQ, r.start() );
+                for ( R q : activeQ ) {
+                    add( result, r, q );
+                }
+                activeR.add( r );
+            } else {
+                R q = qs.get( j++ );
+                expire( activeR, q.start() );
+                for ( R r : activeR ) {
+                    add( result, r, q );
+                }
+                activeQ.add( q );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drop ranges that end before the sweep position. Ranges ending exactly
+     * there still meet what starts there.
+     */
+    private static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            void expire( List<R> active, P now ) {
+        for ( Iterator<R> it = active.iterator(); it.hasNext(); ) {
+            if ( it.next().end().compareTo( now ) < 0 ) {
+                it.remove();
+            }
+        }
+    }
+
+    private static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            void add( Map<AllenRelation, List<RangePair<R>>> result, R r, R q ) {
+        result.computeIfAbsent( of( r, q ), k -> new ArrayList<>() )
+                .add( new RangePair<>( r, q ) );
+    }
+}
@@ -0,0 +1,362 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Holder of an immutable index, e.g. an {@link RTree} or a
+ * {@link NestedContainmentList}, that is replaced by a bulk reload without
+ * pausing readers.
+ *
+ * <p>
+ * A reload builds the new index on an executor while readers keep using the
+ * current one, then publishes it with one atomic swap. Readers
+ * {@link #acquire() lease} the version that is current when they start and
+ * keep it until they close the lease, so a query never sees two versions.
+ * Every version is reference counted, the holder counting as one reference
+ * while the version is current. When a replaced version loses its last
+ * reference it is handed to the reclaim callback, e.g. to close an
+ * {@link InstantRangeSegmentStore}, and dropped.</p>
+ *
+ * <p>
+ * The metrics tell the cost of a reload: how long the last build took, how
+ * many replaced versions are still held by readers, the most that were ever
+ * held at once, and how long the last replaced version stayed alive after it
+ * was replaced. During that time old and new versions are both in memory; for
+ * an index that is a {@link MemoryFootprint} the bytes of the old versions are
+ * reported too.</p>
+ *
+ * <p>
+ * The holder is thread safe. Concurrent reloads are allowed; the one that
+ * finishes last wins.</p>
+ *
+ * @param <T> index type
+ */
+public final class CopyOnWriteIndex<T> implements MemoryFootprint {
+
+    private final Consumer<? super T> reclaim;
+    private final AtomicReference<Version<T>> current;
+    private final Set<Version<T>> retiredVersions = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger retained = new AtomicInteger();
+    private final AtomicInteger maxRetained = new AtomicInteger();
+    private final AtomicLong reloadCount = new AtomicLong();
+    private volatile long lastReloadNanos;
+    private volatile long lastOverlapNanos;
+
+    /**
+     * Create a holder.
+     *
+     * @param initial first version of the index
+     * @param reclaim called once with every replaced version when its last
+     * reader is done
+     */
+    public CopyOnWriteIndex( T initial, Consumer<? super T> reclaim ) {
+        this.reclaim = Objects.requireNonNull( reclaim );
+        this.current = new AtomicReference<>( new Version<>( Objects
+                .requireNonNull( initial ), 0 ) );
+    }
+
+    /**
+     * Create a holder whose old versions are left to the garbage collector.
+     *
+     * @param initial first version of the index
+     */
+    public CopyOnWriteIndex( T initial ) {
+        this( initial, t -> {
+        } );
+    }
+
+    /**
+     * Lease the current version. Close the lease when done, preferably with
+     * try with resources.
+     *
+     * @return the lease
+     */
+    public Lease<T> acquire() {
+        while ( true ) {
+            Version<T> v = current.get();
+            // fails only when v was replaced and released meanwhile
+            if ( v.tryRetain() ) {
+                return new Lease<>( this, v );
+            }
+        }
+    }
+
+    /**
+     * Query the current version.
+     *
+     * @param <V> result type
+     * @param query on the index
+     * @return the result
+     */
+    public <V> V read( Function<? super T, ? extends V> query ) {
+        try ( Lease<T> lease = acquire() ) {
+            return query.apply( lease.index() );
+        }
+    }
+
+    /**
+     * Build a new version on the common pool, where a parallel builder can
+     * use the other workers, and publish it.
+     *
+     * @param builder of the new version
+     * @return the published version, or the failure of the builder, in which
+     * case the current version stays
+     */
+    public CompletableFuture<T> reload( Supplier<? extends T> builder ) {
+        return reload( builder, ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Build a new version on an executor and publish it.
+     *
+     * @param builder of the new version
+     * @param executor running the builder
+     * @return the published version, or the failure of the builder, in which
+     * case the current version stays
+     */
+    public CompletableFuture<T> reload( Supplier<? extends T> builder,
+            Executor executor ) {
+        return CompletableFuture.supplyAsync( () -> {
+            long t0 = System.nanoTime();
+            T index = Objects.requireNonNull( builder.get() );
+            lastReloadNanos = System.nanoTime() - t0;
+            publish( index );
+            return index;
+        }, executor );
+    }
+
+    /**
+     * Publish an index built by the caller.
+     *
+     * @param index the new version
+     */
+    public void publish( T index ) {
+        Objects.requireNonNull( index );
+        // number the version from the one it replaces, so version() only grows
+        Version<T> old;
+        do {
+            old = current.get();
+        } while ( !current.compareAndSet( old, new Version<>( index,
+                old.number + 1 ) ) );
+        reloadCount.incrementAndGet();
+        old.retiredAt = System.nanoTime();
+        retiredVersions.add( old );
+        int now = retained.incrementAndGet();
+        // only a version a reader still leases after the holder let go counts
+        if ( !release( old ) ) {
+            maxRetained.accumulateAndGet( now, Math::max );
+        }
+    }
+
+    private boolean release( Version<T> v ) {
+        if ( v.references.decrementAndGet() == 0 ) {
+            retiredVersions.remove( v );
+            retained.decrementAndGet();
+            lastOverlapNanos = System.nanoTime() - v.retiredAt;
+            reclaim.accept( v.index );
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Number of the current version, 0 for the initial one.
+     *
+     * @return the version
+     */
+    public long version() {
+        return current.get().number;
+    }
+
+    /**
+     * Number of versions published after the initial one.
+     *
+     * @return the count
+     */
+    public long reloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * Duration of the last successful build.
+     *
+     * @return the duration, zero before the first reload
+     */
+    public Duration lastReloadTime() {
+        return Duration.ofNanos( lastReloadNanos );
+    }
+
+    /**
+     * Number of replaced versions still leased by readers, i.e. held in
+     * memory next to the current one.
+     *
+     * @return the count
+     */
+    public int retainedVersions() {
+        return retained.get();
+    }
+
+    /**
+     * Largest number of replaced versions that were leased at once.
+     *
+     * @return the count
+     */
+    public int maxRetainedVersions() {
+        return maxRetained.get();
+    }
+
+    /**
+     * Time between the replacement of the last reclaimed version and its
+     * reclamation, during which it shared memory with its successor.
+     *
+     * @return the duration, zero before the first reclamation
+     */
+    public Duration lastOverlapTime() {
+        return Duration.ofNanos( lastOverlapNanos );
+    }
+
+    /**
+     * {@inheritDoc} Sums the current version and the replaced versions still
+     * leased, for indexes that are a {@link MemoryFootprint}; other indexes
+     * count as zero.
+     */
+    @Override
+    public long heapBytes() {
+        return sum( MemoryFootprint::heapBytes );
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return sum( MemoryFootprint::offHeapBytes );
+    }
+
+    /**
+     * {@inheritDoc} Counts the elements of the current version only.
+     */
+    @Override
+    public long elementCount() {
+        return current.get().index instanceof MemoryFootprint f ? f
+                .elementCount() : 0;
+    }
+
+    /**
+     * Bytes held by replaced versions that readers still lease, next to the
+     * current version.
+     *
+     * @return the bytes, on and off heap
+     */
+    public long retainedVersionBytes() {
+        long bytes = 0;
+        for ( Version<T> v : retiredVersions ) {
+            if ( v.index instanceof MemoryFootprint f ) {
+                bytes += f.retainedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private long sum( ToLongFunction<MemoryFootprint> bytes ) {
+        long sum = 0;
+        Version<T> now = current.get();
+        for ( Version<T> v : retiredVersions ) {
+            if ( v != now && v.index instanceof MemoryFootprint f ) {
+                sum += bytes.applyAsLong( f );
+            }
+        }
+        return now.index instanceof MemoryFootprint f ? sum + bytes
+                .applyAsLong( f ) : sum;
+    }
+
+    @Override
+    public String toString() {
+        return "CopyOnWriteIndex{version=" + version() + ", retained="
+                + retainedVersions() + ", lastReload=" + lastReloadTime() + "}";
+    }
+
+    /**
+     * A reader's hold on one version of the index.
+     *
+     * @param <T> index type
+     */
+    public static final class Lease<T> implements AutoCloseable {
+
+        private final CopyOnWriteIndex<T> holder;
+        private final Version<T> version;
+        private final AtomicInteger closed = new AtomicInteger();
+
+        private Lease( CopyOnWriteIndex<T> holder, Version<T> version ) {
+            this.holder = holder;
+            this.version = version;
+        }
+
+        /**
+         * The leased version of the index.
+         *
+         * @return the index
+         * @throws IllegalStateException when the lease is closed
+         */
+        public T index() {
+            if ( closed.get() != 0 ) {
+                throw new IllegalStateException( "lease is closed" );
+            }
+            return version.index;
+        }
+
+        /**
+         * Number of the leased version.
+         *
+         * @return the version
+         */
+        public long version() {
+            return version.number;
+        }
+
+        /**
+         * Give up the lease. Closing again has no effect.
+         */
+        @Override
+        public void close() {
+            if ( closed.compareAndSet( 0, 1 ) ) {
+                holder.release( version );
+            }
+        }
+    }
+
+    private static final class Version<T> {
+
+        final T index;
+        final long number;
+        // one for the holder while current, one per open lease
+        final AtomicInteger references = new AtomicInteger( 1 );
+        volatile long retiredAt;
+
+        Version( T index, long number ) {
+            this.index = index;
+            this.number = number;
+        }
+
+        boolean tryRetain() {
+            int n = references.get();
+            while ( n > 0 ) {
+                if ( references.compareAndSet( n, n + 1 ) ) {
+                    return true;
+                }
+                n = references.get();
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Dynamic coverage depth: add and remove ranges, and ask how many ranges cover
+ * a point or what the maximum depth within a window is, all in O(log m) for m
+ * distinct endpoints.
+ *
+ * <p>
+ * This is a segment tree over the coordinate compressed endpoints. The
+ * endpoints must be known up front, from the ranges that may be added or from
+ * a set of points; they cut the line into elementary segments [c<sub>i</sub>,
+ * c<sub>i+1</sub>), the leaves of the tree. Adding a range adds one to the
+ * elementary segments it spans. The increment is kept lazily in the O(log m)
+ * nodes that cover the range exactly, and every node holds the maximum depth
+ * in its subtree, so neither update nor query visits the leaves below such a
+ * node.</p>
+ *
+ * <p>
+ * Ranges are counted as a multiset: a range can be added more than once and
+ * is removed once per remove. Empty ranges cover nothing and are not counted.
+ * The tree is not thread safe.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class CoverageDepthTree<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+        implements MemoryFootprint {
+
+    private final Object[] coords;
+    private final int segments;
+    // per node: increment applying to the whole node, and max depth in the
+    // node including its own increment
+    private final int[] add;
+    private final int[] max;
+    private final Map<R, Integer> counts = new HashMap<>();
+    private int size;
+
+    private CoverageDepthTree( Object[] coords ) {
+        this.coords = coords;
+        this.segments = Math.max( 1, coords.length - 1 );
+        this.add = new int[ 4 * segments ];
+        this.max = new int[ 4 * segments ];
+    }
+
+    /**
+     * Create an empty tree for the endpoints of the given ranges.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param universe ranges whose endpoints make up the coordinates
+     * @return the tree, without any range added
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            CoverageDepthTree<R, P, D> of( Collection<? extends R> universe ) {
+        List<P> points = new ArrayList<>( 2 * universe.size() );
+        for ( R r : universe ) {
+            points.add( r.start() );
+            points.add( r.end() );
+        }
+        return ofPoints( points );
+    }
+
+    /**
+     * Create an empty tree for the given coordinates.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param points the endpoints ranges may have
+     * @return the tree
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            CoverageDepthTree<R, P, D> ofPoints( Collection<? extends P> points ) {
+        return new CoverageDepthTree<>( new TreeSet<P>( points ).toArray() );
+    }
+
+    /**
+     * Add a range.
+     *
+     * @param range to add
+     * @throws IllegalArgumentException when an endpoint is not one of the
+     * coordinates
+     */
+    public void add( R range ) {
+        if ( update( range, 1 ) ) {
+            counts.merge( range, 1, Integer::sum );
+            size++;
+        }
+    }
+
+    /**
+     * Remove one occurrence of a range.
+     *
+     * @param range to remove
+     * @return true if it was present
+     */
+    public boolean remove( R range ) {
+        Integer n = counts.get( range );
+        if ( n == null ) {
+            return false;
+        }
+        if ( n == 1 ) {
+            counts.remove( range );
+        } else {
+            counts.put( range, n - 1 );
+        }
+        update( range, -1 );
+        size--;
+        return true;
+    }
+
+    /**
+     * Number of ranges present, counting duplicates.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long heapBytes() {
+        long bytes = RangeFootprint.objectBytes( 4, 8 ) + RangeFootprint
+                .arrayBytes( RangeFootprint.REFERENCE, coords.length )
+                + RangeFootprint.arrayBytes( 4, add.length ) + RangeFootprint
+                .arrayBytes( 4, max.length ) + RangeFootprint.objectBytes( 2, 16 );
+        for ( Object p : coords ) {
+            bytes += RangeFootprint.pointBytes( p );
+        }
+        for ( Map.Entry<R, Integer> e : counts.entrySet() ) {
+            bytes += RangeFootprint.HASH_ENTRY + RangeFootprint.rangeBytes( e
+                    .getKey() ) + RangeFootprint.pointBytes( e.getValue() );
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc} Counts the ranges added, duplicates included.
+     */
+    @Override
+    public long elementCount() {
+        return size;
+    }
+
+    /**
+     * Number of ranges that contain the point.
+     *
+     * @param point to test
+     * @return the coverage depth at the point
+     */
+    public int depthAt( P point ) {
+        int i = floor( point );
+        if ( i < 0 || i >= coords.length - 1 ) {
+            return 0;
+        }
+        return pointQuery( 1, 0, segments - 1, i );
+    }
+
+    /**
+     * Maximum coverage depth of any point in the window.
+     *
+     * @param window to inspect
+     * @return the maximum depth, 0 for an empty window
+     */
+    public int maxDepth( R window ) {
+        if ( window.start().compareTo( window.end() ) >= 0
+                || coords.length < 2 ) {
+            return 0;
+        }
+        int from = Math.max( 0, floor( window.start() ) );
+        // last elementary segment starting before the window end
+        int to = Math.min( segments - 1, lower( window.end() ) );
+        if ( from > to ) {
+            return 0;
+        }
+        return rangeQuery( 1, 0, segments - 1, from, to );
+    }
+
+    /**
+     * Maximum coverage depth over all points.
+     *
+     * @return the maximum depth
+     */
+    public int maxDepth() {
+        return max[ 1 ];
+    }
+
+    private boolean update( R range, int delta ) {
+        int cmp = range.start().compareTo( range.end() );
+        if ( cmp >= 0 ) {
+            return false;
+        }
+        int from = indexOf( range.start() );
+        int to = indexOf( range.end() ) - 1;
+        update( 1, 0, segments - 1, from, to, delta );
+        return true;
+    }
+
+    private void update( int node, int lo, int hi, int from, int to, int delta ) {
+        if ( from <= lo && hi <= to ) {
+            add[ node ] += delta;
+            max[ node ] += delta;
+            return;
+        }
+        int mid = ( lo + hi ) >>> 1;
+        if ( from <= mid ) {
+            update( 2 * node, lo, mid, from, to, delta );
+        }
+        if ( to > mid ) {
+            update( 2 * node + 1, mid + 1, hi, from, to, delta );
+        }
+        max[ node ] = add[ node ] + Math.max( max[ 2 * node ], max[ 2 * node
+                + 1 ] );
+    }
+
+    private int pointQuery( int node, int lo, int hi, int i ) {
+        int depth = 0;
+        while ( lo < hi ) {
+            depth += add[ node ];
+            int mid = ( lo + hi ) >>> 1;
+            if ( i <= mid ) {
+                node = 2 * node;
+                hi = mid;
+            } else {
+                node = 2 * node + 1;
+                lo = mid + 1;
+            }
+        }
+        return depth + add[ node ];
+    }
+
+    private int rangeQuery( int node, int lo, int hi, int from, int to ) {
+        if ( from <= lo && hi <= to ) {
+            return max[ node ];
+        }
+        int mid = ( lo + hi ) >>> 1;
+        int best = Integer.MIN_VALUE;
+        if ( from <= mid ) {
+            best = rangeQuery( 2 * node, lo, mid, from, to );
+        }
+        if ( to > mid ) {
+            best = Math.max( best, rangeQuery( 2 * node + 1, mid + 1, hi, from,
+                    to ) );
+        }
+        return add[ node ] + best;
+    }
+
+    private int indexOf( P p ) {
+        int i = Arrays.binarySearch( coords, p );
+        if ( i < 0 ) {
+            throw new IllegalArgumentException( "endpoint " + p
+                    + " is not one of the coordinates" );
+        }
+        return i;
+    }
+
+    /**
+     * Index of the last coordinate at or before p, -1 if none.
+     */
+    private int floor( P p ) {
+        int i = Arrays.binarySearch( coords, p );
+        return i >= 0 ? i : -i - 2;
+    }
+
+    /**
+     * Index of the last coordinate strictly before p, -1 if none.
+     */
+    private int lower( P p ) {
+        int i = Arrays.binarySearch( coords, p );
+        return i >= 0 ? i - 1 : -i - 2;
+    }
+}
@@ -0,0 +1,241 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * Hash index on the endpoints of ranges, for O(1) lookup of the ranges that
+ * {@link Range#meets(Range) meet} a range on either side, and for assembling
+ * all maximal chains of meeting ranges, like consecutive shifts or adjacent
+ * file extents.
+ *
+ * <p>
+ * Points are used as hash keys, so their equals must agree with their
+ * compareTo, as it does for Integer and Instant.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class EndpointIndex<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+        implements MemoryFootprint {
+
+    private final List<R> ranges;
+    private final Map<P, List<Integer>> byStart;
+    private final Map<P, List<Integer>> byEnd;
+
+    private EndpointIndex( List<R> ranges ) {
+        this.ranges = ranges;
+        this.byStart = new HashMap<>();
+        this.byEnd = new HashMap<>();
+        for ( int i = 0; i < ranges.size(); i++ ) {
+            R r = ranges.get( i );
+            byStart.computeIfAbsent( r.start(), k -> new ArrayList<>( 1 ) ).add( i );
+            byEnd.computeIfAbsent( r.end(), k -> new ArrayList<>( 1 ) ).add( i );
+        }
+    }
+
+    /**
+     * Index ranges.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param ranges to index, duplicates are kept
+     * @return the index
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            EndpointIndex<R, P, D> of( Collection<? extends R> ranges ) {
+        return new EndpointIndex<>( List.copyOf( ranges ) );
+    }
+
+    /**
+     * Number of indexed ranges.
+     *
+     * @return the size
+     */
+    public int size() {
+        return ranges.size();
+    }
+
+    /**
+     * {@inheritDoc} The map keys are the points of the ranges and are not
+     * counted twice.
+     */
+    @Override
+    public long heapBytes() {
+        return RangeFootprint.objectBytes( 3, 0 ) + RangeFootprint.listBytes(
+                ranges.size() ) + RangeFootprint.rangeBytes( ranges ) + mapBytes(
+                byStart ) + mapBytes( byEnd );
+    }
+
+    private static long mapBytes( Map<?, List<Integer>> map ) {
+        long bytes = RangeFootprint.objectBytes( 3, 16 );
+        for ( List<Integer> l : map.values() ) {
+            bytes += RangeFootprint.HASH_ENTRY + RangeFootprint.listBytes( l
+                    .size() );
+            for ( Integer i : l ) {
+                bytes += RangeFootprint.pointBytes( i );
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public long elementCount() {
+        return ranges.size();
+    }
+
+    /**
+     * Indexed ranges that end where the given range starts.
+     *
+     * @param range to look up, need not be indexed
+     * @return the left neighbours, without the range itself
+     */
+    public List<R> meetingOnLeft( R range ) {
+        return lookup( byEnd, range.start(), range );
+    }
+
+    /**
+     * Indexed ranges that start where the given range ends.
+     *
+     * @param range to look up, need not be indexed
+     * @return the right neighbours, without the range itself
+     */
+    public List<R> meetingOnRight( R range ) {
+        return lookup( byStart, range.end(), range );
+    }
+
+    private List<R> lookup( Map<P, List<Integer>> map, P key, R self ) {
+        List<Integer> hits = map.get( key );
+        if ( hits == null ) {
+            return List.of();
+        }
+        List<R> result = new ArrayList<>( hits.size() );
+        for ( int i : hits ) {
+            if ( ranges.get( i ) != self ) {
+                result.add( ranges.get( i ) );
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Assemble the maximal chains in the common pool.
+     *
+     * @return the chains
+     * @see #chains(ForkJoinPool)
+     */
+    public List<List<R>> chains() {
+        return chains( ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Assemble the maximal chains: the groups of ranges connected through
+     * shared endpoints, where one ends and another starts. A range that meets
+     * nothing forms a chain of its own.
+     *
+     * <p>
+     * The endpoints are processed in parallel and merge their ranges in a
+     * lock free union-find, so this takes about O(n/p) for p threads.</p>
+     *
+     * @param pool to run in
+     * @return the chains, each in order of start, ordered by their first
+     * start
+     */
+    public List<List<R>> chains( ForkJoinPool pool ) {
+        int n = ranges.size();
+        AtomicIntegerArray parent = new AtomicIntegerArray( n );
+        for ( int i = 0; i < n; i++ ) {
+            parent.set( i, i );
+        }
+        List<P> joints = new ArrayList<>();
+        for ( P p : byStart.keySet() ) {
+            if ( byEnd.containsKey( p ) ) {
+                joints.add( p );
+            }
+        }
+        pool.submit( () -> joints.parallelStream().forEach( p -> {
+            int first = byStart.get( p ).get( 0 );
+            for ( int i : byStart.get( p ) ) {
+                union( parent, first, i );
+            }
+            for ( int i : byEnd.get( p ) ) {
+                union( parent, first, i );
+            }
+        } ) ).join();
+        int[] root = pool.submit( () -> IntStream.range( 0, n ).parallel()
+                .map( i -> find( parent, i ) ).toArray() ).join();
+        Map<Integer, List<R>> groups = new HashMap<>();
+        for ( int i = 0; i < n; i++ ) {
+            groups.computeIfAbsent( root[ i ], k -> new ArrayList<>() ).add(
+                    ranges.get( i ) );
+        }
+        List<List<R>> chains = new ArrayList<>( groups.values() );
+        chains.forEach( c -> c.sort( null ) );
+        chains.sort( Comparator.comparing( c -> c.get( 0 ).start() ) );
+        return chains;
+    }
+
+    /**
+     * Assemble the maximal chains and join each into one range with
+     * {@link Range#joinWith(Range) joinWith}.
+     *
+     * @return one range per chain, in order of start
+     */
+    public List<R> joinedChains() {
+        List<R> result = new ArrayList<>();
+        for ( List<R> chain : chains() ) {
+            R joined = chain.get( 0 );
+            for ( int i = 1; i < chain.size(); i++ ) {
+                joined = joined.joinWith( chain.get( i ) );
+            }
+            result.add( joined );
+        }
+        return result;
+    }
+
+    /**
+     * Root of x, halving the path on the way.
+     */
+    private static int find( AtomicIntegerArray parent, int x ) {
+        while ( true ) {
+            int p = parent.get( x );
+            if ( p == x ) {
+                return x;
+            }
+            int gp = parent.get( p );
+            parent.compareAndSet( x, p, gp );
+            x = gp;
+        }
+    }
+
+    /**
+     * Link the root with the larger index below the other, retrying when
+     * another thread moved a root in between.
+     */
+    private static void union( AtomicIntegerArray parent, int a, int b ) {
+        while ( true ) {
+            a = find( parent, a );
+            b = find( parent, b );
+            if ( a == b ) {
+                return;
+            }
+            if ( a < b ) {
+                int t = a;
+                a = b;
+                b = t;
+            }
+            if ( parent.compareAndSet( a, a, b ) ) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package io.github.jristretto.ranges;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Sorts more ranges than fit in memory, like range dumps of hundreds of GB,
+ * with an external merge sort.
+ *
+ * <p>
+ * The input is read in chunks that are sorted in memory and spilled as runs
+ * to temporary files, encoded with a {@link RangeCodec}. Up to
+ * {@code parallelism} chunks are sorted and written at the same time on an
+ * executor, while the next chunk is read; reading waits when all slots are
+ * busy, so at most {@code maxRangesInMemory} ranges are held at any time. The
+ * runs are then merged with a heap, at most {@value #FAN_IN} at a time, in
+ * several passes if there are more runs, so the number of open files is
+ * bounded too. Input that fits in one chunk is sorted without spilling.</p>
+ *
+ * <p>
+ * Ranges are sorted by start, then end. In {@link Mode#DISTINCT} mode ranges
+ * that are {@link Range#rangeEquals(Object) equal} are kept once, in
+ * {@link Mode#COALESCE} mode meeting and overlapping ranges are joined as by
+ * {@link RangeCoalescer}. Both are already applied when runs are written, which
+ * makes the runs smaller.</p>
+ *
+ * <p>
+ * A sorter runs one sort at a time. Its {@link MemoryFootprint} is the
+ * estimated peak of the last sort.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class ExternalRangeSorter<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+        implements MemoryFootprint {
+
+    /**
+     * Maximum number of runs merged at once.
+     */
+    public static final int FAN_IN = 64;
+
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    /**
+     * What to do with equal and overlapping ranges.
+     */
+    public enum Mode {
+        /**
+         * Keep every range.
+         */
+        ALL,
+        /**
+         * Keep one of every set of equal ranges.
+         */
+        DISTINCT,
+        /**
+         * Join meeting and overlapping ranges and drop empty ones.
+         */
+        COALESCE
+    }
+
+    private final RangeCodec<R> codec;
+    private final Path tempDirectory;
+    private final int maxRangesInMemory;
+    private final Mode mode;
+    private final Executor executor;
+    private final int parallelism;
+    private final Comparator<R> order = Comparator.<R, P>comparing(
+            Range::start ).thenComparing( Range::end );
+    private long lastCount;
+    private long lastPeakBytes;
+    private int lastRunCount;
+    private long lastSpilledBytes;
+
+    /**
+     * Create a sorter that sorts runs on the common pool, as many at a time as
+     * the pool is parallel and the memory bound allows.
+     *
+     * @param codec for the runs
+     * @param tempDirectory for the runs
+     * @param maxRangesInMemory memory bound, at least 2
+     * @param mode handling of equal and overlapping ranges
+     */
+    public ExternalRangeSorter( RangeCodec<R> codec, Path tempDirectory,
+            int maxRangesInMemory, Mode mode ) {
+        this( codec, tempDirectory, maxRangesInMemory, mode, ForkJoinPool
+                .commonPool(), Math.max( 1, Math.min( ForkJoinPool
+                        .getCommonPoolParallelism(), maxRangesInMemory - 1 ) ) );
+    }
+
+    /**
+     * Create a sorter.
+     *
+     * @param codec for the runs
+     * @param tempDirectory for the runs
+     * @param maxRangesInMemory memory bound, at least parallelism + 1
+     * @param mode handling of equal and overlapping ranges
+     * @param executor sorting and writing the runs
+     * @param parallelism number of runs sorted at the same time, at least 1
+     */
+    public ExternalRangeSorter( RangeCodec<R> codec, Path tempDirectory,
+            int maxRangesInMemory, Mode mode, Executor executor,
+            int parallelism ) {
+        if ( parallelism < 1 ) {
+            throw new IllegalArgumentException( "parallelism " + parallelism
+                    + " is less than 1" );
+        }
+        if ( maxRangesInMemory < parallelism + 1 ) {
+            throw new IllegalArgumentException( "cannot sort " + parallelism
+                    + " runs in parallel with " + maxRangesInMemory
+                    + " ranges in memory" );
+        }
+        this.codec = Objects.requireNonNull( codec );
+        this.tempDirectory = Objects.requireNonNull( tempDirectory );
+        this.maxRangesInMemory = maxRangesInMemory;
+        this.mode = Objects.requireNonNull( mode );
+        this.executor = Objects.requireNonNull( executor );
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sort ranges.
+     *
+     * @param input ranges in any order
+     * @param sink receiving the sorted ranges
+     * @return the number of ranges passed to the sink
+     * @throws IOException when a run cannot be written or read
+     */
+    public synchronized long sort( Iterator<? extends R> input,
+            Consumer<? super R> sink ) throws IOException {
+        // one chunk being read, one per sort in flight
+        int chunk = maxRangesInMemory / ( parallelism + 1 );
+        Semaphore slots = new Semaphore( parallelism );
+        List<Path> files = new ArrayList<>();
+        List<CompletableFuture<Path>> spills = new ArrayList<>();
+        long[] out = { 0 };
+        Consumer<R> counting = r -> {
+            out[ 0 ]++;
+            sink.accept( r );
+        };
+        long count = 0;
+        long sampleBytes = 0;
+        try {
+            Object[] buffer = new Object[ chunk ];
+            int n = 0;
+            while ( input.hasNext() ) {
+                R r = input.next();
+                if ( count++ == 0 ) {
+                    sampleBytes = RangeFootprint.rangeBytes( r );
+                }
+                buffer[ n++ ] = r;
+                if ( n == chunk && input.hasNext() ) {
+                    spills.add( spill( buffer, n, slots, files ) );
+                    buffer = new Object[ chunk ];
+                    n = 0;
+                }
+            }
+            if ( spills.isEmpty() ) {
+                Reducer reducer = new Reducer( counting );
+                for ( R r : sorted( buffer, n ) ) {
+                    reducer.accept( r );
+                }
+                reducer.finish();
+            } else {
+                if ( n > 0 ) {
+                    spills.add( spill( buffer, n, slots, files ) );
+                }
+                buffer = null;
+                List<Path> runs = new ArrayList<>();
+                for ( CompletableFuture<Path> s : spills ) {
+                    runs.add( join( s ) );
+                }
+                lastRunCount = runs.size();
+                lastSpilledBytes = 0;
+                for ( Path run : runs ) {
+                    lastSpilledBytes += Files.size( run );
+                }
+                while ( runs.size() > FAN_IN ) {
+                    runs = mergePass( runs, files );
+                }
+                merge( runs, counting );
+            }
+            lastCount = count;
+            long heldRanges = Math.min( count, maxRangesInMemory );
+            lastPeakBytes = RangeFootprint.objectBytes( 10, 36 )
+                    + ( parallelism + 1L ) * RangeFootprint.arrayBytes(
+                            RangeFootprint.REFERENCE, chunk ) + heldRanges
+                    * sampleBytes + ( spills.isEmpty() ? 0
+                    : ( FAN_IN + 1L ) * IO_BUFFER_BYTES );
+            if ( spills.isEmpty() ) {
+                lastRunCount = 0;
+                lastSpilledBytes = 0;
+            }
+            return out[ 0 ];
+        } finally {
+            for ( CompletableFuture<Path> s : spills ) {
+                s.exceptionally( ex -> null ).join();
+            }
+            for ( Path f : files ) {
+                Files.deleteIfExists( f );
+            }
+        }
+    }
+
+    /**
+     * Sort a file of ranges written back to back with the codec into another
+     * such file.
+     *
+     * @param input file to sort
+     * @param output file to write, replaced if it exists
+     * @return the number of ranges written
+     * @throws IOException when reading or writing fails
+     */
+    public long sort( Path input, Path output ) throws IOException {
+        try ( InputStream in = new BufferedInputStream( Files.newInputStream(
+                input ), IO_BUFFER_BYTES );
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream( Files.newOutputStream( output ),
+                                IO_BUFFER_BYTES ) ) ) {
+            return sort( codec.reader( in ), r -> {
+                try {
+                    codec.write( out, r );
+                } catch ( IOException ex ) {
+                    throw new UncheckedIOException( ex );
+                }
+            } );
+        } catch ( UncheckedIOException ex ) {
+            throw ex.getCause();
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private List<R> sorted( Object[] buffer, int n ) {
+        List<R> part = (List<R>) (List<?>) Arrays.asList( buffer ).subList(
+                0, n );
+        part.sort( order );
+        return part;
+    }
+
+    private CompletableFuture<Path> spill( Object[] buffer, int n,
+            Semaphore slots, List<Path> files ) throws IOException {
+        slots.acquireUninterruptibly();
+        Path run;
+        try {
+            run = Files.createTempFile( tempDirectory, "run", ".ranges" );
+            files.add( run );
+        } catch ( IOException ex ) {
+            slots.release();
+            throw ex;
+        }
+        return CompletableFuture.supplyAsync( () -> {
+            try {
+                write( run, sorted( buffer, n ).iterator() );
+                return run;
+            } finally {
+                slots.release();
+            }
+        }, executor );
+    }
+
+    private void write( Path run, Iterator<R> sorted ) {
+        try ( DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream( Files.newOutputStream( run ),
+                        IO_BUFFER_BYTES ) ) ) {
+            Reducer reducer = new Reducer( r -> {
+                try {
+                    codec.write( out, r );
+                } catch ( IOException ex ) {
+                    throw new UncheckedIOException( ex );
+                }
+            } );
+            sorted.forEachRemaining( reducer );
+            reducer.finish();
+        } catch ( IOException ex ) {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    private static <T> T join( CompletableFuture<T> future ) throws IOException {
+        try {
+            return future.join();
+        } catch ( CompletionException ex ) {
+            if ( ex.getCause() instanceof UncheckedIOException io ) {
+                throw io.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Merge groups of FAN_IN runs into longer runs.
+     */
+    private List<Path> mergePass( List<Path> runs, List<Path> files )
+            throws IOException {
+        List<Path> next = new ArrayList<>();
+        for ( int from = 0; from < runs.size(); from += FAN_IN ) {
+            List<Path> group = runs.subList( from, Math.min( runs.size(), from
+                    + FAN_IN ) );
+            if ( group.size() == 1 ) {
+                next.add( group.get( 0 ) );
+                continue;
+            }
+            Path merged = Files.createTempFile( tempDirectory, "run",
+                    ".ranges" );
+            files.add( merged );
+            try ( DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream( Files.newOutputStream( merged ),
+                            IO_BUFFER_BYTES ) ) ) {
+                merge( group, r -> {
+                    try {
+                        codec.write( out, r );
+                    } catch ( IOException ex ) {
+                        throw new UncheckedIOException( ex );
+                    }
+                } );
+            } catch ( UncheckedIOException ex ) {
+                throw ex.getCause();
+            }
+            for ( Path p : group ) {
+                Files.deleteIfExists( p );
+            }
+            next.add( merged );
+        }
+        return next;
+    }
+
+    /**
+     * K-way merge of sorted runs with a heap of their heads.
+     */
+    private void merge( List<Path> runs, Consumer<R> sink ) throws IOException {
+        List<InputStream> streams = new ArrayList<>();
+        try {
+            PriorityQueue<Cursor> heap = new PriorityQueue<>( runs.size(), (
+                    a, b ) -> order.compare( a.head, b.head ) );
+            for ( Path run : runs ) {
+                InputStream in = new BufferedInputStream( Files.newInputStream(
+                        run ), IO_BUFFER_BYTES );
+                streams.add( in );
+                Cursor c = new Cursor( codec.reader( in ) );
+                if ( c.advance() ) {
+                    heap.add( c );
+                }
+            }
+            Reducer reducer = new Reducer( sink );
+            while ( !heap.isEmpty() ) {
+                Cursor c = heap.poll();
+                reducer.accept( c.head );
+                if ( c.advance() ) {
+                    heap.add( c );
+                }
+            }
+            reducer.finish();
+        } catch ( UncheckedIOException ex ) {
+            throw ex.getCause();
+        } finally {
+            for ( InputStream in : streams ) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Number of ranges read by the last sort.
+     *
+     * @return the count
+     */
+    public long lastCount() {
+        return lastCount;
+    }
+
+    /**
+     * Number of runs spilled by the last sort, 0 when it fitted in memory.
+     *
+     * @return the count
+     */
+    public int lastRunCount() {
+        return lastRunCount;
+    }
+
+    /**
+     * Size of the runs spilled by the last sort.
+     *
+     * @return the bytes
+     */
+    public long lastSpilledBytes() {
+        return lastSpilledBytes;
+    }
+
+    /**
+     * {@inheritDoc} The estimated peak of the last sort: the chunk buffers,
+     * the ranges in them and the merge buffers.
+     */
+    @Override
+    public synchronized long heapBytes() {
+        return lastPeakBytes;
+    }
+
+    /**
+     * {@inheritDoc} Counts the ranges read by the last sort.
+     */
+    @Override
+    public synchronized long elementCount() {
+        return lastCount;
+    }
+
+    private final class Cursor {
+
+        final Iterator<R> source;
+        R head;
+
+        Cursor( Iterator<R> source ) {
+            this.source = source;
+        }
+
+        boolean advance() {
+            head = source.hasNext() ? source.next() : null;
+            return head != null;
+        }
+    }
+
+    /**
+     * Applies the mode to a sorted sequence.
+     */
+    private final class Reducer implements Consumer<R> {
+
+        private final Consumer<R> sink;
+        private R previous;
+
+        Reducer( Consumer<R> sink ) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void accept( R r ) {
+            switch ( mode ) {
+                case ALL -> sink.accept( r );
+                case DISTINCT -> {
+                    if ( previous == null || !previous.rangeEquals( r ) ) {
+                        sink.accept( r );
+                        previous = r;
+                    }
+                }
+                case COALESCE -> {
+                    if ( r.start().compareTo( r.end() ) >= 0 ) {
+                        return;
+                    }
+                    if ( previous == null ) {
+                        previous = r;
+                    } else if ( previous.meets( r ) || previous.overlaps( r ) ) {
+                        previous = previous.joinWith( r );
+                    } else {
+                        sink.accept( previous );
+                        previous = r;
+                    }
+                }
+            }
+        }
+
+        void finish() {
+            if ( mode == Mode.COALESCE && previous != null ) {
+                sink.accept( previous );
+            }
+            previous = null;
+        }
+    }
+}
@@ -3,7 +3,14 @@ package io.github.jristretto.ranges;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Spliterator;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  *
@@ -39,6 +46,117 @@ public record InstantRange(Instant start, Instant end) implements
         return new InstantRange( startInclusive, endExclusive );
     }
 
+    /**
+     * The instants start, start + step, ... before end. The stream is sized
+     * and splits evenly when run in parallel.
+     *
+     * @param step between the instants, positive
+     * @return the instants in order
+     */
+    public Stream<Instant> points( Duration step ) {
+        if ( step.isNegative() || step.isZero() ) {
+            throw new IllegalArgumentException( "step " + step
+                    + " is not positive" );
+        }
+        Duration length = length();
+        long count = length.dividedBy( step );
+        if ( step.multipliedBy( count ).compareTo( length ) < 0 ) {
+            count++;
+        }
+        return StreamSupport.stream( new Points( start, step, 0, count ), false );
+    }
+
+    /**
+     * The instants start + i * step for i in [from, to), split in halves.
+     */
+    private static final class Points implements Spliterator<Instant> {
+
+        private final Instant origin;
+        private final Duration step;
+        private long from;
+        private final long to;
+
+        Points( Instant origin, Duration step, long from, long to ) {
+            this.origin = origin;
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance( Consumer<? super Instant> action ) {
+            if ( from >= to ) {
+                return false;
+            }
+            action.accept( origin.plus( step.multipliedBy( from++ ) ) );
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining( Consumer<? super Instant> action ) {
+            if ( from >= to ) {
+                return;
+            }
+            Instant t = origin.plus( step.multipliedBy( from ) );
+            for ( ; from < to; from++ ) {
+                action.accept( t );
+                t = t.plus( step );
+            }
+        }
+
+        @Override
+        public Spliterator<Instant> trySplit() {
+            long mid = ( from + to ) >>> 1;
+            if ( mid <= from ) {
+                return null;
+            }
+            Spliterator<Instant> prefix = new Points( origin, step, from, mid );
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL | DISTINCT
+                    | SORTED;
+        }
+
+        @Override
+        public Comparator<? super Instant> getComparator() {
+            // natural order
+            return null;
+        }
+    }
+
+    /**
+     * Divide this range into n consecutive sub ranges of equal length, up to
+     * a nanosecond, e.g. for fork/join work distribution.
+     *
+     * @param n number of parts, positive
+     * @return the parts in order, meeting each other
+     */
+    public List<InstantRange> split( int n ) {
+        if ( n < 1 ) {
+            throw new IllegalArgumentException( "cannot split in " + n
+                    + " parts" );
+        }
+        Duration length = length();
+        List<InstantRange> parts = new ArrayList<>( n );
+        Instant from = start;
+        for ( int i = 1; i <= n; i++ ) {
+            Instant to = i == n ? end : start.plus( length.multipliedBy( i )
+                    .dividedBy( n ) );
+            parts.add( between( from, to ) );
+            from = to;
+        }
+        return parts;
+    }
+
     @Override
     public String toString() {
         return rangeToString();
@@ -0,0 +1,640 @@
+package io.github.jristretto.ranges;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Append optimised store for {@link InstantRange}s that arrive roughly in time
+ * order, organised like a small log structured merge tree.
+ *
+ * <p>
+ * Appends go into an in-memory buffer. When the buffer is full it is sorted
+ * and flushed as immutable segments, one per time partition of the range
+ * starts. Each segment is written to a file in the store directory and keeps
+ * its sorted ranges in memory, together with its minimum start, maximum end and
+ * longest range. Queries skip segments whose bounds do not overlap the window
+ * and binary search inside the others.</p>
+ *
+ * <p>
+ * Once a partition holds {@code compactionFanIn} segments of the same level, a
+ * background thread merges them into one segment of the next level. Retention
+ * drops whole segments whose ranges have all ended, which is a file delete
+ * instead of a rewrite.</p>
+ *
+ * <p>
+ * Appends and queries may be called from any thread. Queries see the segments
+ * as published at the moment of the call without blocking on compaction.</p>
+ *
+ * <p>
+ * A buffer whose flush fails stays in memory and visible to queries, and is
+ * written again by the next {@link #flush()} or {@link #close()}. A failed
+ * compaction leaves its input segments as they were; it is reported once by
+ * {@link #awaitCompaction()} and retried by the next compaction.</p>
+ *
+ * <p>
+ * The output of a compaction lists the sequence numbers of its inputs in its
+ * header, and is written before the inputs are deleted. When a crash leaves
+ * both on disk, opening the store drops the inputs, so no range is loaded
+ * twice.</p>
+ */
+public final class InstantRangeSegmentStore implements AutoCloseable,
+        MemoryFootprint {
+
+    /**
+     * Default number of buffered ranges before a flush.
+     */
+    public static final int DEFAULT_MEMTABLE_CAPACITY = 1 << 16;
+
+    /**
+     * Default number of same level segments merged in one compaction.
+     */
+    public static final int DEFAULT_COMPACTION_FAN_IN = 4;
+
+    private static final int MAGIC = 0x52534547;
+    // header also lists the sequence numbers of the segments merged into it
+    private static final int MAGIC_MERGED = 0x52534748;
+    private static final Pattern FILE_NAME
+            = Pattern.compile( "p(-?\\d+)-L(\\d+)-(\\d+)\\.seg" );
+
+    private final Path directory;
+    private final long partitionSeconds;
+    private final int memtableCapacity;
+    private final int compactionFanIn;
+    private final ExecutorService compactor;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final Object memtableLock = new Object();
+    private final Object segmentsLock = new Object();
+    private final List<List<InstantRange>> frozen = new ArrayList<>();
+    // frozen buffers whose flush failed, written again by the next flush
+    private final List<List<InstantRange>> unwritten = new ArrayList<>();
+    private List<InstantRange> memtable;
+    private volatile List<Segment> segments = List.of();
+    private final AtomicReference<IOException> compactionFailure
+            = new AtomicReference<>();
+
+    private InstantRangeSegmentStore( Path directory, Duration partition,
+            int memtableCapacity, int compactionFanIn ) {
+        if ( partition.getSeconds() < 1 ) {
+            throw new IllegalArgumentException( "partition " + partition
+                    + " is shorter than one second" );
+        }
+        if ( memtableCapacity < 1 || compactionFanIn < 2 ) {
+            throw new IllegalArgumentException( "memtable capacity "
+                    + memtableCapacity + " or compaction fan in "
+                    + compactionFanIn + " too small" );
+        }
+        this.directory = directory;
+        this.partitionSeconds = partition.getSeconds();
+        this.memtableCapacity = memtableCapacity;
+        this.compactionFanIn = compactionFanIn;
+        this.memtable = new ArrayList<>( memtableCapacity );
+        this.compactor = Executors.newSingleThreadExecutor( r -> {
+            Thread t = new Thread( r, "segment-compactor-" + directory
+                    .getFileName() );
+            t.setDaemon( true );
+            return t;
+        } );
+    }
+
+    /**
+     * Open or create a store in the given directory with default buffer size
+     * and compaction fan in. Existing segment files are loaded.
+     *
+     * @param directory for the segment files
+     * @param partition length of a time partition, at least one second
+     * @return the store
+     * @throws IOException when the directory cannot be read or created
+     */
+    public static InstantRangeSegmentStore open( Path directory,
+            Duration partition ) throws IOException {
+        return open( directory, partition, DEFAULT_MEMTABLE_CAPACITY,
+                DEFAULT_COMPACTION_FAN_IN );
+    }
+
+    /**
+     * Open or create a store in the given directory. Existing segment files
+     * are loaded.
+     *
+     * @param directory for the segment files
+     * @param partition length of a time partition, at least one second
+     * @param memtableCapacity number of buffered ranges before a flush
+     * @param compactionFanIn number of same level segments to merge, at least 2
+     * @return the store
+     * @throws IOException when the directory cannot be read or created
+     */
+    public static InstantRangeSegmentStore open( Path directory,
+            Duration partition, int memtableCapacity, int compactionFanIn )
+            throws IOException {
+        Files.createDirectories( directory );
+        InstantRangeSegmentStore store = new InstantRangeSegmentStore(
+                directory, partition, memtableCapacity, compactionFanIn );
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        List<Segment> loaded = new ArrayList<>();
+        Set<Long> replaced = new HashSet<>();
+        long maxSequence = -1;
+        try ( DirectoryStream<Path> files = Files.newDirectoryStream( directory ) ) {
+            for ( Path file : files ) {
+                String name = file.getFileName().toString();
+                if ( name.endsWith( ".tmp" ) ) {
+                    Files.delete( file );
+                    continue;
+                }
+                Matcher m = FILE_NAME.matcher( name );
+                if ( m.matches() ) {
+                    long sequence = Long.parseLong( m.group( 3 ) );
+                    loaded.add( readSegment( file, Long.parseLong( m.group( 1 ) ),
+                            Integer.parseInt( m.group( 2 ) ), sequence, replaced ) );
+                    maxSequence = Math.max( maxSequence, sequence );
+                }
+            }
+        }
+        // inputs of a compaction interrupted before it deleted them
+        for ( Segment s : loaded ) {
+            if ( replaced.contains( s.sequence ) ) {
+                Files.deleteIfExists( s.file );
+            }
+        }
+        loaded.removeIf( s -> replaced.contains( s.sequence ) );
+        loaded.sort( Segment.ORDER );
+        nextSequence.set( maxSequence + 1 );
+        segments = List.copyOf( loaded );
+    }
+
+    /**
+     * Add a range. May flush the buffer when it is full.
+     *
+     * @param range to add
+     * @throws UncheckedIOException when a flush fails
+     */
+    public void append( InstantRange range ) {
+        List<InstantRange> full = null;
+        synchronized ( memtableLock ) {
+            memtable.add( range );
+            if ( memtable.size() >= memtableCapacity ) {
+                full = freezeMemtable();
+            }
+        }
+        if ( full != null ) {
+            writeMemtable( full );
+        }
+    }
+
+    /**
+     * Flush the buffered ranges to segments, including buffers whose earlier
+     * flush failed.
+     *
+     * @throws UncheckedIOException when the flush fails. The buffers that
+     * were not written stay in memory for the next flush.
+     */
+    public void flush() {
+        List<List<InstantRange>> pending;
+        synchronized ( memtableLock ) {
+            pending = new ArrayList<>( unwritten );
+            unwritten.clear();
+            pending.add( freezeMemtable() );
+        }
+        for ( int i = 0; i < pending.size(); i++ ) {
+            try {
+                writeMemtable( pending.get( i ) );
+            } catch ( UncheckedIOException ex ) {
+                synchronized ( memtableLock ) {
+                    // the failed buffer was put back by writeMemtable
+                    unwritten.addAll( pending.subList( i + 1, pending.size() ) );
+                }
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Swap in a fresh buffer. The full one stays visible to queries until its
+     * segments are published. Caller holds the memtable lock.
+     */
+    private List<InstantRange> freezeMemtable() {
+        List<InstantRange> full = memtable;
+        memtable = new ArrayList<>( memtableCapacity );
+        frozen.add( full );
+        return full;
+    }
+
+    private void writeMemtable( List<InstantRange> buffer ) {
+        Map<Long, List<InstantRange>> byPartition = new TreeMap<>();
+        for ( InstantRange r : buffer ) {
+            byPartition.computeIfAbsent( partitionOf( r ), k -> new ArrayList<>() )
+                    .add( r );
+        }
+        List<Segment> created = new ArrayList<>();
+        try {
+            for ( Map.Entry<Long, List<InstantRange>> e : byPartition.entrySet() ) {
+                InstantRange[] sorted = e.getValue().toArray( InstantRange[]::new );
+                Arrays.sort( sorted );
+                created.add( writeSegment( e.getKey(), 0, sorted, List.of() ) );
+            }
+        } catch ( IOException ex ) {
+            // drop the partial output, the buffer is written again as a whole
+            for ( Segment s : created ) {
+                try {
+                    Files.deleteIfExists( s.file );
+                } catch ( IOException suppressed ) {
+                    ex.addSuppressed( suppressed );
+                }
+            }
+            synchronized ( memtableLock ) {
+                unwritten.add( buffer );
+            }
+            throw new UncheckedIOException( ex );
+        }
+        synchronized ( memtableLock ) {
+            synchronized ( segmentsLock ) {
+                List<Segment> next = new ArrayList<>( segments );
+                next.addAll( created );
+                next.sort( Segment.ORDER );
+                segments = List.copyOf( next );
+            }
+            frozen.removeIf( f -> f == buffer );
+        }
+        if ( !created.isEmpty() ) {
+            scheduleCompaction();
+        }
+    }
+
+    private long partitionOf( InstantRange r ) {
+        return Math.floorDiv( r.start().getEpochSecond(), partitionSeconds );
+    }
+
+    /**
+     * Get all stored ranges that overlap the window, flushed or not.
+     *
+     * @param window to query
+     * @return the overlapping ranges, sorted by start
+     */
+    public List<InstantRange> overlapping( InstantRange window ) {
+        List<InstantRange> result = new ArrayList<>();
+        List<Segment> published;
+        synchronized ( memtableLock ) {
+            published = segments;
+            for ( List<InstantRange> buffer : frozen ) {
+                collect( buffer, window, result );
+            }
+            collect( memtable, window, result );
+        }
+        for ( Segment s : published ) {
+            s.collect( window, result );
+        }
+        result.sort( null );
+        return result;
+    }
+
+    private static void collect( List<InstantRange> buffer, InstantRange window,
+            List<InstantRange> out ) {
+        for ( InstantRange r : buffer ) {
+            if ( r.overlaps( window ) ) {
+                out.add( r );
+            }
+        }
+    }
+
+    /**
+     * Drop all segments in which every range ended at or before the cutoff.
+     * Buffered ranges are not affected.
+     *
+     * @param cutoff retention limit
+     * @return number of ranges dropped
+     * @throws UncheckedIOException when a segment file cannot be deleted
+     */
+    public long dropEndedBefore( Instant cutoff ) {
+        List<Segment> dropped = new ArrayList<>();
+        synchronized ( segmentsLock ) {
+            List<Segment> kept = new ArrayList<>();
+            for ( Segment s : segments ) {
+                ( s.maxEnd.compareTo( cutoff ) <= 0 ? dropped : kept ).add( s );
+            }
+            segments = List.copyOf( kept );
+        }
+        long count = 0;
+        for ( Segment s : dropped ) {
+            deleteQuietly( s.file );
+            count += s.ranges.length;
+        }
+        return count;
+    }
+
+    /**
+     * Number of ranges in this store, buffered ones included.
+     *
+     * @return the size
+     */
+    public long size() {
+        synchronized ( memtableLock ) {
+            long n = memtable.size();
+            for ( List<InstantRange> buffer : frozen ) {
+                n += buffer.size();
+            }
+            for ( Segment s : segments ) {
+                n += s.ranges.length;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * {@inheritDoc} Counts the buffered ranges and the loaded segments; the
+     * segment files on disk are not memory and are not counted.
+     */
+    @Override
+    public long heapBytes() {
+        synchronized ( memtableLock ) {
+            long bytes = RangeFootprint.objectBytes( 14, 16 ) + RangeFootprint
+                    .listBytes( memtableCapacity ) + RangeFootprint.rangeBytes(
+                    memtable );
+            for ( List<InstantRange> buffer : frozen ) {
+                bytes += RangeFootprint.listBytes( buffer.size() )
+                        + RangeFootprint.rangeBytes( buffer );
+            }
+            for ( Segment s : segments ) {
+                bytes += RangeFootprint.objectBytes( 5, 20 ) + 3
+                        * RangeFootprint.pointBytes( s.minStart )
+                        + RangeFootprint.arrayBytes( RangeFootprint.REFERENCE,
+                                s.ranges.length ) + RangeFootprint.rangeBytes(
+                        Arrays.asList( s.ranges ) );
+            }
+            return bytes;
+        }
+    }
+
+    @Override
+    public long elementCount() {
+        return size();
+    }
+
+    /**
+     * Number of segments currently published.
+     *
+     * @return segment count
+     */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Wait until all compactions scheduled so far have completed.
+     *
+     * @throws InterruptedException when interrupted while waiting
+     * @throws UncheckedIOException when a compaction could not write its
+     * output since the last call. The input segments are then left as they
+     * were, to be merged by the next compaction.
+     */
+    public void awaitCompaction() throws InterruptedException {
+        try {
+            compactor.submit( () -> { } ).get();
+        } catch ( ExecutionException ex ) {
+            throw new IllegalStateException( ex.getCause() );
+        }
+        IOException failure = compactionFailure.getAndSet( null );
+        if ( failure != null ) {
+            throw new UncheckedIOException( failure );
+        }
+    }
+
+    /**
+     * Flush the buffer, finish running compactions and stop the compaction
+     * thread.
+     *
+     * @throws IOException when the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } catch ( UncheckedIOException ex ) {
+            throw ex.getCause();
+        } finally {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination( 1, TimeUnit.MINUTES );
+            } catch ( InterruptedException ex ) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void scheduleCompaction() {
+        if ( !compactor.isShutdown() ) {
+            compactor.execute( this::compact );
+        }
+    }
+
+    /**
+     * Merge groups of same partition, same level segments until no partition
+     * has a full group left. Runs on the compaction thread only.
+     */
+    private void compact() {
+        List<Segment> group;
+        while ( !( group = nextCompactionGroup() ).isEmpty() ) {
+            int total = group.stream().mapToInt( s -> s.ranges.length ).sum();
+            InstantRange[] merged = new InstantRange[ total ];
+            int pos = 0;
+            for ( Segment s : group ) {
+                System.arraycopy( s.ranges, 0, merged, pos, s.ranges.length );
+                pos += s.ranges.length;
+            }
+            // the input is a concatenation of sorted runs, which TimSort merges
+            Arrays.sort( merged );
+            Segment output;
+            try {
+                output = writeSegment( group.get( 0 ).partition,
+                        group.get( 0 ).level + 1, merged, group );
+            } catch ( IOException ex ) {
+                compactionFailure.set( ex );
+                return;
+            }
+            boolean published;
+            synchronized ( segmentsLock ) {
+                published = segments.containsAll( group );
+                if ( published ) {
+                    List<Segment> next = new ArrayList<>( segments );
+                    next.removeAll( group );
+                    next.add( output );
+                    next.sort( Segment.ORDER );
+                    segments = List.copyOf( next );
+                }
+            }
+            // inputs dropped by retention in the meantime: discard the output
+            for ( Segment s : published ? group : List.of( output ) ) {
+                deleteQuietly( s.file );
+            }
+        }
+    }
+
+    private List<Segment> nextCompactionGroup() {
+        Map<String, List<Segment>> groups = new HashMap<>();
+        for ( Segment s : segments ) {
+            List<Segment> g = groups.computeIfAbsent( s.partition + "/" + s.level,
+                    k -> new ArrayList<>() );
+            g.add( s );
+            if ( g.size() == compactionFanIn ) {
+                return g;
+            }
+        }
+        return List.of();
+    }
+
+    private Segment writeSegment( long partition, int level,
+            InstantRange[] sorted, List<Segment> inputs ) throws IOException {
+        long sequence = nextSequence.getAndIncrement();
+        Path file = directory.resolve( "p" + partition + "-L" + level + "-"
+                + sequence + ".seg" );
+        Path tmp = directory.resolve( file.getFileName() + ".tmp" );
+        try {
+            try ( DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream( Files.newOutputStream( tmp ) ) ) ) {
+                out.writeInt( inputs.isEmpty() ? MAGIC : MAGIC_MERGED );
+                out.writeInt( sorted.length );
+                if ( !inputs.isEmpty() ) {
+                    out.writeInt( inputs.size() );
+                    for ( Segment s : inputs ) {
+                        out.writeLong( s.sequence );
+                    }
+                }
+                for ( InstantRange r : sorted ) {
+                    RangeCodec.INSTANT.write( out, r );
+                }
+            }
+            Files.move( tmp, file, StandardCopyOption.ATOMIC_MOVE );
+        } catch ( IOException ex ) {
+            try {
+                Files.deleteIfExists( tmp );
+            } catch ( IOException suppressed ) {
+                ex.addSuppressed( suppressed );
+            }
+            throw ex;
+        }
+        return new Segment( file, partition, level, sequence, sorted );
+    }
+
+    /**
+     * Read a segment file, adding the sequence numbers of the segments it
+     * replaced to the given set.
+     */
+    private static Segment readSegment( Path file, long partition, int level,
+            long sequence, Set<Long> replaced ) throws IOException {
+        try ( DataInputStream in = new DataInputStream( new BufferedInputStream(
+                Files.newInputStream( file ) ) ) ) {
+            int magic = in.readInt();
+            if ( magic != MAGIC && magic != MAGIC_MERGED ) {
+                throw new IOException( file + " is not a segment file" );
+            }
+            InstantRange[] ranges = new InstantRange[ in.readInt() ];
+            if ( magic == MAGIC_MERGED ) {
+                for ( int i = in.readInt(); i > 0; i-- ) {
+                    replaced.add( in.readLong() );
+                }
+            }
+            for ( int i = 0; i < ranges.length; i++ ) {
+                ranges[ i ] = RangeCodec.INSTANT.read( in );
+            }
+            return new Segment( file, partition, level, sequence, ranges );
+        }
+    }
+
+    private static void deleteQuietly( Path file ) {
+        try {
+            Files.deleteIfExists( file );
+        } catch ( IOException ex ) {
+            throw new UncheckedIOException( ex );
+        }
+    }
+
+    /**
+     * Immutable sorted run of ranges with its bounds.
+     */
+    static final class Segment {
+
+        static final Comparator<Segment> ORDER = Comparator
+                .comparingLong( ( Segment s ) -> s.partition )
+                .thenComparingLong( s -> s.sequence );
+
+        final Path file;
+        final long partition;
+        final int level;
+        final long sequence;
+        final InstantRange[] ranges;
+        final Instant minStart;
+        final Instant maxEnd;
+        final Duration maxLength;
+
+        Segment( Path file, long partition, int level, long sequence,
+                InstantRange[] ranges ) {
+            this.file = file;
+            this.partition = partition;
+            this.level = level;
+            this.sequence = sequence;
+            this.ranges = ranges;
+            Instant end = Instant.MIN;
+            Duration longest = Duration.ZERO;
+            for ( InstantRange r : ranges ) {
+                end = Range.max( end, r.end() );
+                longest = Range.max( longest, r.length() );
+            }
+            this.minStart = ranges.length == 0 ? Instant.MAX : ranges[ 0 ].start();
+            this.maxEnd = end;
+            this.maxLength = longest;
+        }
+
+        void collect( InstantRange window, List<InstantRange> out ) {
+            if ( minStart.compareTo( window.end() ) >= 0
+                    || maxEnd.compareTo( window.start() ) <= 0 ) {
+                return;
+            }
+            // no range can start earlier than this and still reach the window
+            Instant lowest = window.start().minus( maxLength );
+            int lo = 0;
+            int hi = ranges.length;
+            while ( lo < hi ) {
+                int mid = ( lo + hi ) >>> 1;
+                if ( ranges[ mid ].start().compareTo( lowest ) < 0 ) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            for ( int i = lo; i < ranges.length
+                    && ranges[ i ].start().compareTo( window.end() ) < 0; i++ ) {
+                if ( ranges[ i ].overlaps( window ) ) {
+                    out.add( ranges[ i ] );
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package io.github.jristretto.ranges;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiFunction;
+import java.util.stream.IntStream;
 
 /**
  * Simple integer based range. This is the first leaf class and it is used to
@@ -57,4 +60,38 @@ public record IntegerRange(Integer start, Integer end) implements
         return new IntegerRange( start, end );//cs:replace:return null;
     }
 
+    /**
+     * All points of this range, without boxing. The stream is sized and
+     * splits evenly when run in parallel.
+     *
+     * @return the points from start up to end
+     */
+    public IntStream points() {
+        return IntStream.range( start, end );
+    }
+
+    /**
+     * Divide this range into n consecutive sub ranges that differ at most one
+     * in length, e.g. for fork/join work distribution. When n exceeds the
+     * length some parts are empty.
+     *
+     * @param n number of parts, positive
+     * @return the parts in order, meeting each other
+     */
+    public List<IntegerRange> split( int n ) {
+        if ( n < 1 ) {
+            throw new IllegalArgumentException( "cannot split in " + n
+                    + " parts" );
+        }
+        long length = (long) end - start;
+        List<IntegerRange> parts = new ArrayList<>( n );
+        int from = start;
+        for ( int i = 1; i <= n; i++ ) {
+            int to = (int) ( start + length * i / n );
+            parts.add( between( from, to ) );
+            from = to;
+        }
+        return parts;
+    }
+
 }
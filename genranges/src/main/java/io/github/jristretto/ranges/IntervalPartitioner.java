@@ -0,0 +1,132 @@
+package io.github.jristretto.ranges;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Assigns ranges to resources, like bookings to rooms, such that no two
+ * {@link Range#overlaps(Range) overlapping} ranges share a resource, using the
+ * minimum number of resources.
+ *
+ * <p>
+ * The greedy sweep takes the ranges in order of start and gives each the
+ * lowest numbered resource that is free at its start. Busy resources wait in a
+ * min-heap on their end; a resource whose range ends exactly where the next
+ * one starts is free again, since meeting ranges do not overlap. The number of
+ * resources used equals the maximum number of ranges overlapping at one point,
+ * which is the least possible. Resources are numbered 0 to peak - 1. Empty
+ * ranges contain no point, need no resource and get {@link #NO_RESOURCE}.</p>
+ *
+ * <p>
+ * An instance is the streaming form: feed it ranges in order of start with
+ * {@link #assign(Range)}. {@link #partition(List)} sorts first and does the
+ * sweep for a whole list. Both take O(log k) per range for k busy resources,
+ * O(n log n) overall. An instance is not thread safe.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class IntervalPartitioner<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>> {
+
+    /**
+     * Outcome of a batch partitioning.
+     *
+     * @param resourceOf resource per range, in input order
+     * @param peak number of resources used
+     */
+    public record Assignment(int[] resourceOf, int peak) {
+
+    }
+
+    /**
+     * Resource of an empty range.
+     */
+    public static final int NO_RESOURCE = -1;
+
+    private record Busy<P>(P end, int resource) {
+
+    }
+
+    private final PriorityQueue<Busy<P>> busy = new PriorityQueue<>(
+            Comparator.comparing( Busy::end ) );
+    private final PriorityQueue<Integer> free = new PriorityQueue<>();
+    private P lastStart;
+    private int peak;
+
+    /**
+     * Create an empty partitioner for streaming use.
+     */
+    public IntervalPartitioner() {
+    }
+
+    /**
+     * Assign the next range.
+     *
+     * @param range the next range, starting at or after the previous one
+     * @return its resource, {@link #NO_RESOURCE} for an empty range
+     * @throws IllegalArgumentException when the range starts before its
+     * predecessor
+     */
+    public int assign( R range ) {
+        P start = range.start();
+        if ( lastStart != null && start.compareTo( lastStart ) < 0 ) {
+            throw new IllegalArgumentException( "range " + range
+                    + " starts before its predecessor at " + lastStart );
+        }
+        lastStart = start;
+        while ( !busy.isEmpty() && busy.peek().end().compareTo( start ) <= 0 ) {
+            free.add( busy.poll().resource() );
+        }
+        if ( start.compareTo( range.end() ) >= 0 ) {
+            return NO_RESOURCE;
+        }
+        int resource = free.isEmpty() ? peak++ : free.poll();
+        busy.add( new Busy<>( range.end(), resource ) );
+        return resource;
+    }
+
+    /**
+     * Number of resources used so far.
+     *
+     * @return the peak number of simultaneously busy resources
+     */
+    public int peak() {
+        return peak;
+    }
+
+    /**
+     * Number of resources busy right after the last assignment.
+     *
+     * @return the busy count
+     */
+    public int busy() {
+        return busy.size();
+    }
+
+    /**
+     * Partition a list of ranges in any order.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param ranges to assign
+     * @return the resource per range, {@link #NO_RESOURCE} for empty ranges,
+     * and the number of resources
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Assignment partition( List<? extends R> ranges ) {
+        Integer[] order = new Integer[ ranges.size() ];
+        Arrays.setAll( order, i -> i );
+        Arrays.parallelSort( order, Comparator.<Integer, P>comparing(
+                i -> ranges.get( i ).start() ) );
+        IntervalPartitioner<R, P, D> sweep = new IntervalPartitioner<>();
+        int[] resourceOf = new int[ order.length ];
+        for ( int i : order ) {
+            resourceOf[ i ] = sweep.assign( ranges.get( i ) );
+        }
+        return new Assignment( resourceOf, sweep.peak() );
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Order preserving mapping between the points of a range type and
+ * {@code long}s. Encodings and sketches that need integer arithmetic on points
+ * use it; the ranges themselves stay generic.
+ *
+ * <p>
+ * The mapping must be monotone: {@code a.compareTo(b) < 0} implies
+ * {@code toLong(a) <= toLong(b)}. A mapping that truncates, like instants at
+ * second resolution, is not reversible; {@link #fromLong(long)} then returns
+ * the first point of the unit.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ */
+public interface LongRangeMapping<R extends Range<R, P, ?>, P extends Comparable<? super P>> {
+
+    /**
+     * Map a point to a long.
+     *
+     * @param point to map
+     * @return the long value
+     * @throws ArithmeticException when the point is outside the mappable span
+     */
+    long toLong( P point );
+
+    /**
+     * Map a long back to a point.
+     *
+     * @param value to map
+     * @return the point
+     */
+    P fromLong( long value );
+
+    /**
+     * Create a range from mapped start and end.
+     *
+     * @param start mapped start, inclusive
+     * @param end mapped end, exclusive
+     * @return the range
+     */
+    R range( long start, long end );
+
+    /**
+     * Number of bits the mapped values need: every point maps into the
+     * signed span [-2<sup>bits-1</sup>, 2<sup>bits-1</sup>).
+     *
+     * @return the bits, 1 to 64
+     */
+    default int bits() {
+        return Long.SIZE;
+    }
+
+    /**
+     * Exact mapping of IntegerRange points.
+     */
+    LongRangeMapping<IntegerRange, Integer> INTEGER = new LongRangeMapping<>() {
+        @Override
+        public long toLong( Integer point ) {
+            return point;
+        }
+
+        @Override
+        public Integer fromLong( long value ) {
+            return Math.toIntExact( value );
+        }
+
+        @Override
+        public IntegerRange range( long start, long end ) {
+            return IntegerRange.of( Math.toIntExact( start ), Math.toIntExact( end ) );
+        }
+
+        @Override
+        public int bits() {
+            return Integer.SIZE;
+        }
+    };
+
+    /**
+     * Exact mapping of instants to nanoseconds since the epoch. Covers the
+     * years 1677 to 2262.
+     */
+    LongRangeMapping<InstantRange, Instant> INSTANT_NANOS = instants( Duration
+            .ofNanos( 1 ) );
+
+    /**
+     * Mapping of instants to whole units since the epoch. Points within a
+     * unit map to the same value.
+     *
+     * @param unit resolution, positive
+     * @return the mapping
+     */
+    static LongRangeMapping<InstantRange, Instant> instants( Duration unit ) {
+        if ( unit.isNegative() || unit.isZero() ) {
+            throw new IllegalArgumentException( "unit " + unit
+                    + " is not positive" );
+        }
+        boolean wholeSeconds = unit.getNano() == 0;
+        long unitSeconds = unit.getSeconds();
+        long unitNanos = wholeSeconds ? 0 : unit.toNanos();
+        // largest magnitude: Instant's seconds, or the nanos that fit a long
+        long largest = wholeSeconds ? Instant.MIN.getEpochSecond() / -unitSeconds
+                : Long.MAX_VALUE / unitNanos;
+        int bits = Long.SIZE + 1 - Long.numberOfLeadingZeros( largest );
+        return new LongRangeMapping<>() {
+            @Override
+            public long toLong( Instant point ) {
+                if ( wholeSeconds ) {
+                    return Math.floorDiv( point.getEpochSecond(), unitSeconds );
+                }
+                long nanos = Math.addExact( Math.multiplyExact( point
+                        .getEpochSecond(), 1_000_000_000L ), point.getNano() );
+                return Math.floorDiv( nanos, unitNanos );
+            }
+
+            @Override
+            public Instant fromLong( long value ) {
+                if ( wholeSeconds ) {
+                    return Instant.ofEpochSecond( Math.multiplyExact( value,
+                            unitSeconds ) );
+                }
+                return Instant.EPOCH.plusNanos( Math.multiplyExact( value,
+                        unitNanos ) );
+            }
+
+            @Override
+            public InstantRange range( long start, long end ) {
+                return InstantRange.of( fromLong( start ), fromLong( end ) );
+            }
+
+            @Override
+            public int bits() {
+                return bits;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.jristretto.ranges;
+
+/**
+ * Memory a container or index retains, for sizing heaps and choosing
+ * representations.
+ *
+ * <p>
+ * The numbers are estimates from the object layout of a 64 bit JVM with
+ * compressed references, computed by {@link RangeFootprint}; they are not
+ * measured. Unless an implementation says otherwise, the ranges it holds are
+ * counted as if no one else referenced them. Computing a footprint may walk
+ * the whole structure.</p>
+ */
+public interface MemoryFootprint {
+
+    /**
+     * Estimated bytes on the Java heap.
+     *
+     * @return the bytes
+     */
+    long heapBytes();
+
+    /**
+     * Bytes outside the heap, e.g. direct buffers or mapped files.
+     *
+     * @return the bytes, zero by default
+     */
+    default long offHeapBytes() {
+        return 0;
+    }
+
+    /**
+     * Number of elements the bytes are spent on, e.g. ranges.
+     *
+     * @return the count
+     */
+    long elementCount();
+
+    /**
+     * All retained bytes, on and off heap.
+     *
+     * @return the sum
+     */
+    default long retainedBytes() {
+        return heapBytes() + offHeapBytes();
+    }
+
+    /**
+     * Retained bytes per element.
+     *
+     * @return the average, 0 when there are no elements
+     */
+    default double bytesPerElement() {
+        long n = elementCount();
+        return n == 0 ? 0 : (double) retainedBytes() / n;
+    }
+}
@@ -0,0 +1,290 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Static index answering containment questions: which stored ranges contain a
+ * query range, which lie inside it, and which overlap it.
+ *
+ * <p>
+ * This is a nested containment list. Every range that is
+ * {@link Range#contains(Range) contained} in another range is stored in the
+ * sublist of a range that contains it. Within one sublist no range contains
+ * another, so both starts and ends increase along the list, and a binary search
+ * finds the relevant run of siblings. A query only descends into sublists of
+ * ranges that can still have matching descendants, giving O(log n + k) for
+ * typical, shallowly nested data.</p>
+ *
+ * <p>
+ * Storage is a few flat arrays: the ranges grouped per sublist, and for every
+ * range the index bounds of its child sublist. Of two equal ranges the one that
+ * comes later in sort order is the child of the other.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class NestedContainmentList<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+        implements MemoryFootprint {
+
+    private final Object[] ranges;
+    private final int[] childFrom;
+    private final int[] childTo;
+    private final int rootTo;
+
+    private NestedContainmentList( Object[] ranges, int[] childFrom,
+            int[] childTo, int rootTo ) {
+        this.ranges = ranges;
+        this.childFrom = childFrom;
+        this.childTo = childTo;
+        this.rootTo = rootTo;
+    }
+
+    /**
+     * Build the index.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param input ranges in any order
+     * @return the index
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            NestedContainmentList<R, P, D> of( Collection<? extends R> input ) {
+        List<R> sorted = new ArrayList<>( input );
+        // containers before the ranges they contain
+        sorted.sort( Comparator.<R, P>comparing( Range::start )
+                .thenComparing( Range::end, Comparator.reverseOrder() ) );
+        int n = sorted.size();
+        // parent per range, -1 for the top level
+        int[] parent = new int[ n ];
+        int[] childCount = new int[ n + 1 ];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for ( int i = 0; i < n; i++ ) {
+            R r = sorted.get( i );
+            while ( !stack.isEmpty() && !sorted.get( stack.peek() ).contains( r ) ) {
+                stack.pop();
+            }
+            parent[ i ] = stack.isEmpty() ? -1 : stack.peek();
+            childCount[ parent[ i ] + 1 ]++;
+            stack.push( i );
+        }
+        // lay out the sublists breadth first, each one contiguous
+        Object[] ranges = new Object[ n ];
+        int[] childFrom = new int[ n ];
+        int[] childTo = new int[ n ];
+        int[] position = new int[ n ];
+        int next = childCount[ 0 ];
+        List<List<Integer>> children = new ArrayList<>();
+        for ( int i = 0; i <= n; i++ ) {
+            children.add( new ArrayList<>( childCount[ i ] ) );
+        }
+        for ( int i = 0; i < n; i++ ) {
+            children.get( parent[ i ] + 1 ).add( i );
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        int filled = 0;
+        for ( int c : children.get( 0 ) ) {
+            position[ c ] = filled++;
+            queue.add( c );
+        }
+        while ( !queue.isEmpty() ) {
+            int i = queue.poll();
+            int p = position[ i ];
+            ranges[ p ] = sorted.get( i );
+            List<Integer> kids = children.get( i + 1 );
+            childFrom[ p ] = next;
+            for ( int c : kids ) {
+                position[ c ] = next++;
+                queue.add( c );
+            }
+            childTo[ p ] = next;
+        }
+        return new NestedContainmentList<>( ranges, childFrom, childTo,
+                childCount[ 0 ] );
+    }
+
+    /**
+     * Number of stored ranges.
+     *
+     * @return the size
+     */
+    public int size() {
+        return ranges.length;
+    }
+
+    @Override
+    public long heapBytes() {
+        long bytes = RangeFootprint.objectBytes( 3, 4 ) + RangeFootprint
+                .arrayBytes( RangeFootprint.REFERENCE, ranges.length )
+                + RangeFootprint.arrayBytes( 4, childFrom.length )
+                + RangeFootprint.arrayBytes( 4, childTo.length );
+        for ( Object r : ranges ) {
+            bytes += RangeFootprint.rangeBytes( (Range<?, ?, ?>) r );
+        }
+        return bytes;
+    }
+
+    @Override
+    public long elementCount() {
+        return ranges.length;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private R at( int i ) {
+        return (R) ranges[ i ];
+    }
+
+    /**
+     * Get all stored ranges that contain the query.
+     *
+     * @param query range
+     * @return containing ranges, outermost first per nesting chain
+     */
+    public List<R> containing( R query ) {
+        List<R> out = new ArrayList<>();
+        forEachContaining( query, out::add );
+        return out;
+    }
+
+    /**
+     * Visit all stored ranges that contain the query.
+     *
+     * @param query range
+     * @param consumer of the containing ranges
+     */
+    public void forEachContaining( R query, Consumer<? super R> consumer ) {
+        containing( 0, rootTo, query, consumer );
+    }
+
+    private void containing( int from, int to, R q, Consumer<? super R> consumer ) {
+        // siblings that start at or before q start form a prefix, those that
+        // also end at or after q end are the tail of that prefix
+        int i = firstStartAfter( from, to, q.start() ) - 1;
+        for ( ; i >= from && at( i ).end().compareTo( q.end() ) >= 0; i-- ) {
+            consumer.accept( at( i ) );
+            containing( childFrom[ i ], childTo[ i ], q, consumer );
+        }
+    }
+
+    /**
+     * Get all stored ranges that lie inside the query.
+     *
+     * @param query range
+     * @return contained ranges
+     */
+    public List<R> containedIn( R query ) {
+        List<R> out = new ArrayList<>();
+        forEachContainedIn( query, out::add );
+        return out;
+    }
+
+    /**
+     * Visit all stored ranges that lie inside the query.
+     *
+     * @param query range
+     * @param consumer of the contained ranges
+     */
+    public void forEachContainedIn( R query, Consumer<? super R> consumer ) {
+        containedIn( 0, rootTo, query, consumer );
+    }
+
+    private void containedIn( int from, int to, R q, Consumer<? super R> consumer ) {
+        // siblings ending before q start, and their descendants, are out
+        for ( int i = firstEndAtOrAfter( from, to, q.start() ); i < to
+                && at( i ).start().compareTo( q.end() ) <= 0; i++ ) {
+            if ( q.contains( at( i ) ) ) {
+                subtree( i, consumer );
+            } else {
+                containedIn( childFrom[ i ], childTo[ i ], q, consumer );
+            }
+        }
+    }
+
+    private void subtree( int i, Consumer<? super R> consumer ) {
+        consumer.accept( at( i ) );
+        for ( int c = childFrom[ i ]; c < childTo[ i ]; c++ ) {
+            subtree( c, consumer );
+        }
+    }
+
+    /**
+     * Get all stored ranges that overlap the query.
+     *
+     * @param query range
+     * @return overlapping ranges
+     */
+    public List<R> overlapping( R query ) {
+        List<R> out = new ArrayList<>();
+        forEachOverlapping( query, out::add );
+        return out;
+    }
+
+    /**
+     * Visit all stored ranges that overlap the query.
+     *
+     * @param query range
+     * @param consumer of the overlapping ranges
+     */
+    public void forEachOverlapping( R query, Consumer<? super R> consumer ) {
+        overlapping( 0, rootTo, query, consumer );
+    }
+
+    private void overlapping( int from, int to, R q, Consumer<? super R> consumer ) {
+        for ( int i = firstEndAfter( from, to, q.start() ); i < to
+                && at( i ).start().compareTo( q.end() ) < 0; i++ ) {
+            if ( at( i ).overlaps( q ) ) {
+                consumer.accept( at( i ) );
+            }
+            overlapping( childFrom[ i ], childTo[ i ], q, consumer );
+        }
+    }
+
+    private int firstStartAfter( int from, int to, P p ) {
+        int lo = from;
+        int hi = to;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( at( mid ).start().compareTo( p ) <= 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int firstEndAtOrAfter( int from, int to, P p ) {
+        int lo = from;
+        int hi = to;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( at( mid ).end().compareTo( p ) < 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int firstEndAfter( int from, int to, P p ) {
+        int lo = from;
+        int hi = to;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( at( mid ).end().compareTo( p ) <= 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
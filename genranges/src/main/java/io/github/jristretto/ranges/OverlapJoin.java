@@ -0,0 +1,227 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static io.github.jristretto.ranges.Range.max;
+
+/**
+ * Parallel overlap join: all pairs of ranges, one from each input, that
+ * {@link Range#overlaps(Range) overlap}.
+ *
+ * <p>
+ * The point domain is cut into partitions at quantiles of a sample of the
+ * starts, so that every partition gets about the same number of ranges. A
+ * range that crosses partition boundaries is copied into every partition it
+ * touches. Each partition is joined with a plane sweep as a separate task in a
+ * {@link ForkJoinPool}. A pair found in more than one partition is only
+ * reported by the partition that holds the start of their intersection, so the
+ * result has no duplicates.</p>
+ *
+ * <p>
+ * The result is streamed per partition in partition order: the first pairs are
+ * available as soon as the first partition is done while the others are still
+ * being computed. Within a partition the order is unspecified.</p>
+ */
+public final class OverlapJoin {
+
+    private static final int SAMPLE_SIZE = 4096;
+
+    private OverlapJoin() {
+    }
+
+    /**
+     * Join on the common pool with four partitions per available core.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param left first input
+     * @param right second input
+     * @return the overlapping pairs
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<RangePair<R>> join( Collection<? extends R> left,
+                    Collection<? extends R> right ) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        return join( left.stream(), right.stream(), pool, 4 * pool
+                .getParallelism() );
+    }
+
+    /**
+     * Join in the given pool.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param left first input
+     * @param right second input
+     * @param pool to run the partitions in
+     * @param partitions wanted number of partitions, positive. Fewer are used
+     * when the sample has too few distinct starts.
+     * @return the overlapping pairs
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<RangePair<R>> join( Stream<? extends R> left,
+                    Stream<? extends R> right, ForkJoinPool pool,
+                    int partitions ) {
+        if ( partitions < 1 ) {
+            throw new IllegalArgumentException( "partitions " + partitions
+                    + " is not positive" );
+        }
+        List<R> ls = nonEmpty( left );
+        List<R> rs = nonEmpty( right );
+        if ( ls.isEmpty() || rs.isEmpty() ) {
+            return Stream.empty();
+        }
+        List<P> bounds = boundaries( ls, rs, partitions );
+        List<List<R>> lParts = distribute( ls, bounds );
+        List<List<R>> rParts = distribute( rs, bounds );
+        List<ForkJoinTask<List<RangePair<R>>>> tasks = new ArrayList<>();
+        for ( int i = 0; i <= bounds.size(); i++ ) {
+            int part = i;
+            tasks.add( pool.submit( () -> sweep( lParts.get( part ), rParts.get(
+                    part ), bounds, part ) ) );
+        }
+        return tasks.stream().flatMap( t -> t.join().stream() );
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> nonEmpty( Stream<? extends R> in ) {
+        // empty ranges overlap nothing
+        return in.filter( r -> r.start().compareTo( r.end() ) < 0 )
+                .collect( Collectors.toList() );
+    }
+
+    /**
+     * Pick distinct partition boundaries at quantiles of sampled starts.
+     */
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<P> boundaries( List<R> ls, List<R> rs, int partitions ) {
+        int total = ls.size() + rs.size();
+        int step = Math.max( 1, total / SAMPLE_SIZE );
+        List<P> sample = new ArrayList<>();
+        for ( int i = 0; i < total; i += step ) {
+            R r = i < ls.size() ? ls.get( i ) : rs.get( i - ls.size() );
+            sample.add( r.start() );
+        }
+        Collections.sort( sample );
+        List<P> bounds = new ArrayList<>();
+        for ( int k = 1; k < partitions; k++ ) {
+            P b = sample.get( (int) ( (long) k * sample.size() / partitions ) );
+            if ( bounds.isEmpty() || bounds.get( bounds.size() - 1 ).compareTo( b ) < 0 ) {
+                bounds.add( b );
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Index of the partition that holds point p: the number of boundaries at
+     * or before p.
+     */
+    static <P extends Comparable<? super P>> int partitionOf( List<P> bounds,
+            P p ) {
+        int lo = 0;
+        int hi = bounds.size();
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( bounds.get( mid ).compareTo( p ) <= 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Put every range in all partitions it overlaps.
+     */
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<List<R>> distribute( List<R> ranges, List<P> bounds ) {
+        List<List<R>> parts = new ArrayList<>();
+        for ( int i = 0; i <= bounds.size(); i++ ) {
+            parts.add( new ArrayList<>() );
+        }
+        for ( R r : ranges ) {
+            int first = partitionOf( bounds, r.start() );
+            int last = first;
+            // partition last+1 starts at bounds[last], the range needs it when
+            // that boundary is before its end
+            while ( last < bounds.size() && bounds.get( last ).compareTo( r
+                    .end() ) < 0 ) {
+                last++;
+            }
+            for ( int i = first; i <= last; i++ ) {
+                parts.get( i ).add( r );
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * Plane sweep over one partition. Only pairs whose intersection starts in
+     * this partition are reported.
+     */
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<RangePair<R>> sweep( List<R> ls, List<R> rs, List<P> bounds,
+                    int part ) {
+        List<RangePair<R>> out = new ArrayList<>();
+        if ( ls.isEmpty() || rs.isEmpty() ) {
+            return out;
+        }
+        ls.sort( null );
+        rs.sort( null );
+        List<R> activeL = new ArrayList<>();
+        List<R> activeR = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while ( i < ls.size() || j < rs.size() ) {
+            // on equal starts take the left one first; the right one then
+            // finds it in the active list
+            boolean takeLeft = j >= rs.size() || ( i < ls.size() && ls.get( i )
+                    .start().compareTo( rs.get( j ).start() ) <= 0 );
+            if ( takeLeft ) {
+                R l = ls.get( i++ );
+                expire( activeR, l.start() );
+                for ( R r : activeR ) {
+                    emit( l, r, bounds, part, out );
+                }
+                activeL.add( l );
+            } else {
+                R r = rs.get( j++ );
+                expire( activeL, r.start() );
+                for ( R l : activeL ) {
+                    emit( l, r, bounds, part, out );
+                }
+                activeR.add( r );
+            }
+        }
+        return out;
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            void expire( List<R> active, P now ) {
+        for ( Iterator<R> it = active.iterator(); it.hasNext(); ) {
+            if ( it.next().end().compareTo( now ) <= 0 ) {
+                it.remove();
+            }
+        }
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            void emit( R l, R r, List<P> bounds, int part,
+                    List<RangePair<R>> out ) {
+        if ( partitionOf( bounds, max( l.start(), r.start() ) ) == part ) {
+            out.add( new RangePair<>( l, r ) );
+        }
+    }
+}
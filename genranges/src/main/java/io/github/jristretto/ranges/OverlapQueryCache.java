@@ -0,0 +1,471 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Cache for overlap queries in front of any range index.
+ *
+ * <p>
+ * The index is any function from query range to the stored ranges that
+ * overlap it, such as {@code NestedContainmentList::overlapping}. A query that
+ * was asked before is answered from the cache. A query that lies inside a
+ * cached query, in the sense of {@link Range#contains(Range) contains}, is
+ * answered by filtering that cached result, since every range that overlaps
+ * the inner query also overlaps the outer one. Only other queries reach the
+ * index.</p>
+ *
+ * <p>
+ * Memory is bounded by the total number of ranges held, counting every entry
+ * as its result ranges plus its query range. When it is exceeded, whole
+ * entries are evicted in {@link Policy} order. A result that alone exceeds the
+ * bound is returned but not cached. When the indexed ranges change,
+ * {@link #invalidate(Range)} drops the entries whose query overlaps the
+ * changed range.</p>
+ *
+ * <p>
+ * The cached queries are also kept in a tree augmented with the largest end
+ * of every subtree. Finding the cached queries that contain a query, or that
+ * overlap a changed range, visits only those queries plus O(log n) nodes per
+ * query found, not all cached entries.</p>
+ *
+ * <p>
+ * The cache is thread safe. The index is called outside the lock, so it is
+ * queried concurrently when concurrent queries miss. A result computed while
+ * an invalidation took place is not cached, so a stale result never outlives
+ * the invalidation that should have removed it.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class OverlapQueryCache<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+        implements MemoryFootprint {
+
+    /**
+     * Eviction order.
+     */
+    public enum Policy {
+        /**
+         * Evict the entry that was used longest ago.
+         */
+        LRU,
+        /**
+         * Evict the entry used the least number of times, the oldest first on
+         * a tie.
+         */
+        LFU
+    }
+
+    private final Function<? super R, ? extends Collection<? extends R>> index;
+    private final long capacity;
+    // keys by start, then end descending: the keys that can contain a query
+    // are exactly those that sort at or before it
+    private final NavigableMap<R, Entry<R>> byQuery;
+    private final TreeSet<Entry<R>> evictionOrder;
+    private final QueryTree queryTree = new QueryTree();
+    private long cachedRanges;
+    private long tick;
+    private long generation;
+    private long hits;
+    private long subsumptionHits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache.
+     *
+     * @param index answering overlap queries
+     * @param capacity maximum total number of ranges held
+     * @param policy eviction order
+     */
+    public OverlapQueryCache(
+            Function<? super R, ? extends Collection<? extends R>> index,
+            long capacity, Policy policy ) {
+        if ( capacity < 0 ) {
+            throw new IllegalArgumentException( "capacity " + capacity
+                    + " is negative" );
+        }
+        this.index = Objects.requireNonNull( index );
+        this.capacity = capacity;
+        this.byQuery = new TreeMap<>( Comparator.<R, P>comparing( Range::start )
+                .thenComparing( Range::end, Comparator.reverseOrder() ) );
+        Comparator<Entry<R>> recency = Comparator.comparingLong( e -> e.lastUsed );
+        this.evictionOrder = new TreeSet<>( switch ( policy ) {
+            case LRU ->
+                recency;
+            case LFU ->
+                Comparator.<Entry<R>>comparingLong( e -> e.uses )
+                .thenComparing( recency );
+        } );
+    }
+
+    /**
+     * Get the indexed ranges that overlap the query.
+     *
+     * @param query range
+     * @return the overlapping ranges, unmodifiable
+     */
+    public List<R> overlapping( R query ) {
+        long seenGeneration;
+        synchronized ( this ) {
+            Entry<R> exact = byQuery.get( query );
+            if ( exact != null ) {
+                hits++;
+                touch( exact );
+                return exact.result;
+            }
+            Entry<R> container = smallestContaining( query );
+            if ( container != null ) {
+                subsumptionHits++;
+                touch( container );
+                return filter( container.result, query );
+            }
+            misses++;
+            seenGeneration = generation;
+        }
+        List<R> result = List.copyOf( index.apply( query ) );
+        synchronized ( this ) {
+            if ( seenGeneration == generation && result.size() < capacity
+                    && !byQuery.containsKey( query ) ) {
+                Entry<R> e = new Entry<>( query, result );
+                byQuery.put( query, e );
+                queryTree.insert( e );
+                cachedRanges += e.weight();
+                touch( e );
+                evict();
+            }
+        }
+        return result;
+    }
+
+    private Entry<R> smallestContaining( R query ) {
+        Entry<R> best = null;
+        // sorting at or before the query and reaching its end means containing
+        for ( Entry<R> e : queryTree.reaching( query, true, query.end(), false ) ) {
+            if ( best == null || e.result.size() < best.result.size() ) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> filter( List<R> cached, R query ) {
+        List<R> out = new ArrayList<>();
+        for ( R r : cached ) {
+            if ( r.overlaps( query ) ) {
+                out.add( r );
+            }
+        }
+        return List.copyOf( out );
+    }
+
+    private void touch( Entry<R> e ) {
+        evictionOrder.remove( e );
+        e.uses++;
+        e.lastUsed = ++tick;
+        evictionOrder.add( e );
+    }
+
+    private void evict() {
+        while ( cachedRanges > capacity ) {
+            Entry<R> victim = evictionOrder.pollFirst();
+            byQuery.remove( victim.query );
+            queryTree.remove( victim.query );
+            cachedRanges -= victim.weight();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drop the cached queries affected by a change of the indexed ranges,
+     * i.e. those that overlap the added or removed range.
+     *
+     * @param changed range that was added to or removed from the index
+     */
+    public synchronized void invalidate( R changed ) {
+        generation++;
+        for ( Entry<R> e : queryTree.reaching( changed.between( changed.end(),
+                changed.end() ), false, changed.start(), true ) ) {
+            if ( e.query.overlaps( changed ) ) {
+                byQuery.remove( e.query );
+                queryTree.remove( e.query );
+                evictionOrder.remove( e );
+                cachedRanges -= e.weight();
+            }
+        }
+    }
+
+    /**
+     * Drop all cached queries.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        byQuery.clear();
+        queryTree.root = null;
+        evictionOrder.clear();
+        cachedRanges = 0;
+    }
+
+    /**
+     * Number of cached queries.
+     *
+     * @return the size
+     */
+    public synchronized int size() {
+        return byQuery.size();
+    }
+
+    /**
+     * Total number of ranges held, results and queries.
+     *
+     * @return the memory footprint in ranges
+     */
+    public synchronized long cachedRanges() {
+        return cachedRanges;
+    }
+
+    /**
+     * Number of queries answered from an identical cached query.
+     *
+     * @return the exact hit count
+     */
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Number of queries answered by filtering a containing cached query.
+     *
+     * @return the subsumption hit count
+     */
+    public synchronized long subsumptionHitCount() {
+        return subsumptionHits;
+    }
+
+    /**
+     * Number of queries passed on to the index.
+     *
+     * @return the miss count
+     */
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    /**
+     * Number of entries evicted to stay within capacity, invalidations not
+     * included.
+     *
+     * @return the eviction count
+     */
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Fraction of queries not passed on to the index.
+     *
+     * @return the hit rate, 0 before the first query
+     */
+    public synchronized double hitRate() {
+        long total = hits + subsumptionHits + misses;
+        return total == 0 ? 0 : (double) ( hits + subsumptionHits ) / total;
+    }
+
+    /**
+     * {@inheritDoc} The cached results hold ranges of the index, so they are
+     * counted as references only; the cached queries are counted in full.
+     */
+    @Override
+    public synchronized long heapBytes() {
+        long bytes = RangeFootprint.objectBytes( 5, 56 ) + 2 * RangeFootprint
+                .objectBytes( 3, 8 ) + RangeFootprint.objectBytes( 1, 0 );
+        for ( Entry<R> e : byQuery.values() ) {
+            // query tree node: entry, children, max end and priority
+            bytes += RangeFootprint.objectBytes( 4, 4 );
+            bytes += 2 * RangeFootprint.TREE_ENTRY + RangeFootprint.objectBytes(
+                    2, 16 ) + RangeFootprint.rangeBytes( e.query )
+                    + RangeFootprint.objectBytes( 1, 0 ) + RangeFootprint
+                    .arrayBytes( RangeFootprint.REFERENCE, e.result.size() );
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc} Counts the ranges in cached results.
+     */
+    @Override
+    public synchronized long elementCount() {
+        return cachedRanges - byQuery.size();
+    }
+
+    /**
+     * Treap of the cached entries in byQuery order, every node augmented with
+     * the largest query end in its subtree, so a search skips the subtrees
+     * whose queries all end too early.
+     */
+    private final class QueryTree {
+
+        Node<R, P> root;
+
+        void insert( Entry<R> e ) {
+            root = insert( root, new Node<>( e, ThreadLocalRandom.current()
+                    .nextInt() ) );
+        }
+
+        void remove( R query ) {
+            root = remove( root, query );
+        }
+
+        /**
+         * Entries whose query sorts before the bound, or at it when
+         * inclusive, and ends after the point, or at it when not strict.
+         */
+        List<Entry<R>> reaching( R bound, boolean inclusive, P point,
+                boolean strict ) {
+            List<Entry<R>> out = new ArrayList<>();
+            reaching( root, bound, inclusive, point, strict, out );
+            return out;
+        }
+
+        private void reaching( Node<R, P> n, R bound, boolean inclusive,
+                P point, boolean strict, List<Entry<R>> out ) {
+            if ( n == null || !reaches( n.maxEnd, point, strict ) ) {
+                return;
+            }
+            reaching( n.left, bound, inclusive, point, strict, out );
+            int c = byQuery.comparator().compare( n.entry.query, bound );
+            if ( c < 0 || ( inclusive && c == 0 ) ) {
+                if ( reaches( n.entry.query.end(), point, strict ) ) {
+                    out.add( n.entry );
+                }
+                reaching( n.right, bound, inclusive, point, strict, out );
+            }
+        }
+
+        private boolean reaches( P end, P point, boolean strict ) {
+            int c = end.compareTo( point );
+            return strict ? c > 0 : c >= 0;
+        }
+
+        private Node<R, P> insert( Node<R, P> n, Node<R, P> x ) {
+            if ( n == null ) {
+                return x;
+            }
+            if ( byQuery.comparator().compare( x.entry.query, n.entry.query ) < 0 ) {
+                n.left = insert( n.left, x );
+                if ( n.left.priority > n.priority ) {
+                    n = rotateRight( n );
+                }
+            } else {
+                n.right = insert( n.right, x );
+                if ( n.right.priority > n.priority ) {
+                    n = rotateLeft( n );
+                }
+            }
+            n.update();
+            return n;
+        }
+
+        private Node<R, P> remove( Node<R, P> n, R query ) {
+            if ( n == null ) {
+                return null;
+            }
+            int c = byQuery.comparator().compare( query, n.entry.query );
+            if ( c == 0 ) {
+                return join( n.left, n.right );
+            }
+            if ( c < 0 ) {
+                n.left = remove( n.left, query );
+            } else {
+                n.right = remove( n.right, query );
+            }
+            n.update();
+            return n;
+        }
+
+        private Node<R, P> join( Node<R, P> a, Node<R, P> b ) {
+            if ( a == null ) {
+                return b;
+            }
+            if ( b == null ) {
+                return a;
+            }
+            if ( a.priority > b.priority ) {
+                a.right = join( a.right, b );
+                a.update();
+                return a;
+            }
+            b.left = join( a, b.left );
+            b.update();
+            return b;
+        }
+
+        private Node<R, P> rotateRight( Node<R, P> n ) {
+            Node<R, P> l = n.left;
+            n.left = l.right;
+            l.right = n;
+            n.update();
+            return l;
+        }
+
+        private Node<R, P> rotateLeft( Node<R, P> n ) {
+            Node<R, P> r = n.right;
+            n.right = r.left;
+            r.left = n;
+            n.update();
+            return r;
+        }
+    }
+
+    private static final class Node<R extends Range<R, P, ?>, P extends Comparable<? super P>> {
+
+        final Entry<R> entry;
+        final int priority;
+        Node<R, P> left;
+        Node<R, P> right;
+        P maxEnd;
+
+        Node( Entry<R> entry, int priority ) {
+            this.entry = entry;
+            this.priority = priority;
+            this.maxEnd = entry.query.end();
+        }
+
+        void update() {
+            maxEnd = entry.query.end();
+            if ( left != null ) {
+                maxEnd = Range.max( maxEnd, left.maxEnd );
+            }
+            if ( right != null ) {
+                maxEnd = Range.max( maxEnd, right.maxEnd );
+            }
+        }
+    }
+
+    private static final class Entry<R> {
+
+        final R query;
+        final List<R> result;
+        long uses;
+        long lastUsed;
+
+        Entry( R query, List<R> result ) {
+            this.query = query;
+            this.result = result;
+        }
+
+        long weight() {
+            return result.size() + 1L;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.github.jristretto.ranges.Range.max;
+import static io.github.jristretto.ranges.Range.min;
+
+/**
+ * Immutable set of non overlapping ranges with structural sharing.
+ *
+ * <p>
+ * The ranges are kept in a persistent AVL tree, ordered by start. Every update
+ * copies only the path from the root to the changed nodes, O(log n) nodes per
+ * affected range, and returns a new set. The old set stays valid and unchanged,
+ * so taking a snapshot is nothing more than keeping a reference. Readers can
+ * query a snapshot from any number of threads without locking; writers publish
+ * new versions through a {@code volatile} field or an
+ * {@link java.util.concurrent.atomic.AtomicReference AtomicReference}.</p>
+ *
+ * <p>
+ * Stored ranges never overlap, but they may meet. Because of that the order by
+ * start is also the order by end, which is what makes the overlap queries
+ * O(log n + k). Empty ranges (start equals end) contain no points and are
+ * ignored by all updates.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class PersistentRangeSet<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+        implements Iterable<R>, MemoryFootprint {
+
+    private static final PersistentRangeSet<?, ?, ?> EMPTY
+            = new PersistentRangeSet<>( null );
+
+    private final Node<R> root;
+
+    private PersistentRangeSet( Node<R> root ) {
+        this.root = root;
+    }
+
+    /**
+     * Get the empty set.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @return the empty set
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            PersistentRangeSet<R, P, D> empty() {
+        return (PersistentRangeSet<R, P, D>) EMPTY;
+    }
+
+    /**
+     * Create a set that is the union of the given ranges.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param ranges to add
+     * @return the set covering all points of the ranges
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            PersistentRangeSet<R, P, D> of( Iterable<? extends R> ranges ) {
+        PersistentRangeSet<R, P, D> result = empty();
+        for ( R r : ranges ) {
+            result = result.union( r );
+        }
+        return result;
+    }
+
+    /**
+     * Number of ranges in this set.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size( root );
+    }
+
+    /**
+     * Is this set empty.
+     *
+     * @return true when there are no ranges in this set
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Check if a point is covered by one of the ranges in this set.
+     *
+     * @param point to check
+     * @return true if some range contains the point
+     */
+    public boolean contains( P point ) {
+        return rangeContaining( point ).isPresent();
+    }
+
+    /**
+     * Find the range that contains the point.
+     *
+     * @param point to look up
+     * @return the containing range or empty
+     */
+    public Optional<R> rangeContaining( P point ) {
+        Node<R> n = root;
+        while ( n != null ) {
+            if ( n.range.contains( point ) ) {
+                return Optional.of( n.range );
+            }
+            n = point.compareTo( n.range.start() ) < 0 ? n.left : n.right;
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Check that all points of the other range are covered by a single range
+     * in this set.
+     *
+     * @param other range to test
+     * @return true if some stored range contains other
+     */
+    public boolean encloses( R other ) {
+        return overlapping( other ).anyMatch( r -> r.contains( other ) );
+    }
+
+    /**
+     * Stream the ranges that overlap with the query in order of start.
+     *
+     * @param query range
+     * @return the overlapping ranges
+     */
+    public Stream<R> overlapping( R query ) {
+        P qEnd = query.end();
+        Iterator<R> it = new NodeIterator<>( root, query.start() );
+        return stream( it ).takeWhile( r -> r.start().compareTo( qEnd ) < 0
+                && r.overlaps( query ) );
+    }
+
+    /**
+     * Stream all ranges in order of start.
+     *
+     * @return the ranges
+     */
+    public Stream<R> stream() {
+        return stream( iterator() );
+    }
+
+    @Override
+    public Iterator<R> iterator() {
+        return new NodeIterator<>( root, null );
+    }
+
+    /**
+     * {@inheritDoc} Versions share the nodes they have in common, so the
+     * footprints of versions overstate their sum.
+     */
+    @Override
+    public long heapBytes() {
+        return RangeFootprint.objectBytes( 1, 0 ) + size() * RangeFootprint
+                .objectBytes( 3, 8 ) + RangeFootprint.rangeBytes( this );
+    }
+
+    @Override
+    public long elementCount() {
+        return size();
+    }
+
+    /**
+     * Add a range with {@link Range#joinWith(Range) joinWith} semantics. All
+     * stored ranges that meet or overlap the new range are replaced by the
+     * join.
+     *
+     * @param range to add
+     * @return the new version of the set
+     */
+    public PersistentRangeSet<R, P, D> union( R range ) {
+        if ( isEmptyRange( range ) ) {
+            return this;
+        }
+        List<R> touched = new ArrayList<>();
+        collect( root, range, true, touched );
+        Node<R> n = root;
+        R joined = range;
+        for ( R r : touched ) {
+            n = delete( n, r.start() );
+            joined = joined.joinWith( r );
+        }
+        return new PersistentRangeSet<>( insert( n, joined ) );
+    }
+
+    /**
+     * Add a range with {@link Range#punchThrough(Range) punchThrough}
+     * semantics. The parts of stored ranges under the punch are knocked out
+     * and the punch takes their place, the remainders stay as they were.
+     *
+     * @param punch to put in place
+     * @return the new version of the set
+     */
+    public PersistentRangeSet<R, P, D> punch( R punch ) {
+        if ( isEmptyRange( punch ) ) {
+            return this;
+        }
+        return new PersistentRangeSet<>( insert( cut( punch ), punch ) );
+    }
+
+    /**
+     * Remove all points of the given range from this set. Stored ranges that
+     * partially overlap are trimmed.
+     *
+     * @param range to remove
+     * @return the new version of the set
+     */
+    public PersistentRangeSet<R, P, D> remove( R range ) {
+        if ( isEmptyRange( range ) ) {
+            return this;
+        }
+        Node<R> n = cut( range );
+        return n == root ? this : new PersistentRangeSet<>( n );
+    }
+
+    private Node<R> cut( R range ) {
+        List<R> hit = new ArrayList<>();
+        collect( root, range, false, hit );
+        Node<R> n = root;
+        for ( R r : hit ) {
+            n = delete( n, r.start() );
+            if ( r.start().compareTo( range.start() ) < 0 ) {
+                n = insert( n, r.between( r.start(), range.start() ) );
+            }
+            if ( r.end().compareTo( range.end() ) > 0 ) {
+                n = insert( n, r.between( range.end(), r.end() ) );
+            }
+        }
+        return n;
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            boolean isEmptyRange( R r ) {
+        return r.start().compareTo( r.end() ) == 0;
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+        if ( this == obj ) {
+            return true;
+        }
+        if ( !( obj instanceof PersistentRangeSet ) ) {
+            return false;
+        }
+        PersistentRangeSet<?, ?, ?> other = (PersistentRangeSet<?, ?, ?>) obj;
+        if ( size() != other.size() ) {
+            return false;
+        }
+        Iterator<?> a = iterator();
+        Iterator<?> b = other.iterator();
+        while ( a.hasNext() ) {
+            if ( !Objects.equals( a.next(), b.next() ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = 1;
+        for ( R r : this ) {
+            h = 31 * h + r.hashCode();
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder( "{" );
+        for ( R r : this ) {
+            if ( sb.length() > 1 ) {
+                sb.append( ", " );
+            }
+            sb.append( r );
+        }
+        return sb.append( '}' ).toString();
+    }
+
+    private static <R> Stream<R> stream( Iterator<R> it ) {
+        return StreamSupport.stream( Spliterators.spliteratorUnknownSize( it,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SORTED
+                | Spliterator.DISTINCT ), false );
+    }
+
+    /**
+     * Collect the stored ranges that overlap the query, or also meet it when
+     * touching is set. Relies on the ends being ordered like the starts.
+     */
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            void collect( Node<R> n, R q, boolean touching, List<R> out ) {
+        if ( n == null ) {
+            return;
+        }
+        int endVsStart = n.range.end().compareTo( q.start() );
+        int startVsEnd = n.range.start().compareTo( q.end() );
+        boolean leftOf = touching ? endVsStart < 0 : endVsStart <= 0;
+        boolean rightOf = touching ? startVsEnd > 0 : startVsEnd >= 0;
+        if ( leftOf ) {
+            collect( n.right, q, touching, out );
+        } else if ( rightOf ) {
+            collect( n.left, q, touching, out );
+        } else {
+            collect( n.left, q, touching, out );
+            out.add( n.range );
+            collect( n.right, q, touching, out );
+        }
+    }
+
+    private static int size( Node<?> n ) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static int height( Node<?> n ) {
+        return n == null ? 0 : n.height;
+    }
+
+    private static <R> Node<R> node( R range, Node<R> left, Node<R> right ) {
+        return new Node<>( range, left, right );
+    }
+
+    private static <R> Node<R> balance( R range, Node<R> l, Node<R> r ) {
+        int hl = height( l );
+        int hr = height( r );
+        if ( hl > hr + 1 ) {
+            if ( height( l.left ) >= height( l.right ) ) {
+                return node( l.range, l.left, node( range, l.right, r ) );
+            }
+            return node( l.right.range, node( l.range, l.left, l.right.left ),
+                    node( range, l.right.right, r ) );
+        }
+        if ( hr > hl + 1 ) {
+            if ( height( r.right ) >= height( r.left ) ) {
+                return node( r.range, node( range, l, r.left ), r.right );
+            }
+            return node( r.left.range, node( range, l, r.left.left ),
+                    node( r.range, r.left.right, r.right ) );
+        }
+        return node( range, l, r );
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Node<R> insert( Node<R> n, R range ) {
+        if ( n == null ) {
+            return node( range, null, null );
+        }
+        int c = range.start().compareTo( n.range.start() );
+        if ( c < 0 ) {
+            return balance( n.range, insert( n.left, range ), n.right );
+        }
+        if ( c > 0 ) {
+            return balance( n.range, n.left, insert( n.right, range ) );
+        }
+        return node( range, n.left, n.right );
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Node<R> delete( Node<R> n, P start ) {
+        if ( n == null ) {
+            return null;
+        }
+        int c = start.compareTo( n.range.start() );
+        if ( c < 0 ) {
+            return balance( n.range, delete( n.left, start ), n.right );
+        }
+        if ( c > 0 ) {
+            return balance( n.range, n.left, delete( n.right, start ) );
+        }
+        if ( n.left == null ) {
+            return n.right;
+        }
+        if ( n.right == null ) {
+            return n.left;
+        }
+        Node<R> successor = n.right;
+        while ( successor.left != null ) {
+            successor = successor.left;
+        }
+        return balance( successor.range, n.left, delete( n.right,
+                successor.range.start() ) );
+    }
+
+    private static final class Node<R> {
+
+        final R range;
+        final Node<R> left;
+        final Node<R> right;
+        final int height;
+        final int size;
+
+        Node( R range, Node<R> left, Node<R> right ) {
+            this.range = range;
+            this.left = left;
+            this.right = right;
+            this.height = 1 + Math.max( PersistentRangeSet.height( left ),
+                    PersistentRangeSet.height( right ) );
+            this.size = 1 + PersistentRangeSet.size( left )
+                    + PersistentRangeSet.size( right );
+        }
+    }
+
+    /**
+     * In order iterator starting at the first range that ends after a given
+     * point, or at the first range when no point is given.
+     */
+    private static final class NodeIterator<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            implements Iterator<R> {
+
+        private final Deque<Node<R>> stack = new ArrayDeque<>();
+
+        NodeIterator( Node<R> root, P from ) {
+            Node<R> n = root;
+            while ( n != null ) {
+                if ( from == null || n.range.end().compareTo( from ) > 0 ) {
+                    stack.push( n );
+                    n = n.left;
+                } else {
+                    n = n.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public R next() {
+            if ( stack.isEmpty() ) {
+                throw new NoSuchElementException();
+            }
+            Node<R> n = stack.pop();
+            for ( Node<R> c = n.right; c != null; c = c.left ) {
+                stack.push( c );
+            }
+            return n.range;
+        }
+    }
+}
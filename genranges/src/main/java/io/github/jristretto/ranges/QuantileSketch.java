@@ -0,0 +1,187 @@
+package io.github.jristretto.ranges;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable sketch of a distribution of non negative values, answering
+ * quantile queries with bounded relative error.
+ *
+ * <p>
+ * Values are counted in logarithmic buckets: bucket i holds the values in
+ * (&gamma;<sup>i-1</sup>, &gamma;<sup>i</sup>] with &gamma; = (1+&alpha;) /
+ * (1-&alpha;), so that the bucket midpoint is within relative error &alpha; of
+ * every value in it. Zero is counted apart. Merging adds bucket counts, so the
+ * result does not depend on how the input was split, which makes the sketch
+ * fit for parallel collection. Memory grows with the logarithm of the ratio
+ * of the largest and smallest value, not with the number of values. A sketch
+ * is not thread safe.</p>
+ */
+public final class QuantileSketch implements MemoryFootprint {
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private long[] counts = new long[ 0 ];
+    private int offset;
+    private long zeros;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Create a sketch.
+     *
+     * @param relativeAccuracy alpha, between 0 and 1 exclusive, e.g. 0.01
+     */
+    public QuantileSketch( double relativeAccuracy ) {
+        if ( !( relativeAccuracy > 0 && relativeAccuracy < 1 ) ) {
+            throw new IllegalArgumentException( "relative accuracy "
+                    + relativeAccuracy + " is not between 0 and 1" );
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.logGamma = Math.log( ( 1 + relativeAccuracy ) / ( 1
+                - relativeAccuracy ) );
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value non negative
+     */
+    public void add( double value ) {
+        if ( !( value >= 0 ) || Double.isInfinite( value ) ) {
+            throw new IllegalArgumentException( "value " + value
+                    + " is not a finite non negative number" );
+        }
+        count++;
+        min = Math.min( min, value );
+        max = Math.max( max, value );
+        if ( value == 0 ) {
+            zeros++;
+            return;
+        }
+        int index = (int) Math.ceil( Math.log( value ) / logGamma );
+        grow( index, index );
+        counts[ index - offset ]++;
+    }
+
+    private void grow( int lo, int hi ) {
+        if ( counts.length == 0 ) {
+            offset = lo;
+            counts = new long[ hi - lo + 1 ];
+            return;
+        }
+        int newLo = Math.min( lo, offset );
+        int newHi = Math.max( hi, offset + counts.length - 1 );
+        if ( newLo == offset && newHi == offset + counts.length - 1 ) {
+            return;
+        }
+        long[] grown = new long[ newHi - newLo + 1 ];
+        System.arraycopy( counts, 0, grown, offset - newLo, counts.length );
+        counts = grown;
+        offset = newLo;
+    }
+
+    /**
+     * Add all values of another sketch with the same accuracy.
+     *
+     * @param other sketch
+     * @return this sketch
+     * @throws IllegalArgumentException when the accuracies differ
+     */
+    public QuantileSketch merge( QuantileSketch other ) {
+        if ( other.relativeAccuracy != relativeAccuracy ) {
+            throw new IllegalArgumentException( "cannot merge accuracy "
+                    + other.relativeAccuracy + " into " + relativeAccuracy );
+        }
+        if ( other.counts.length > 0 ) {
+            grow( other.offset, other.offset + other.counts.length - 1 );
+            for ( int i = 0; i < other.counts.length; i++ ) {
+                counts[ other.offset + i - offset ] += other.counts[ i ];
+            }
+        }
+        zeros += other.zeros;
+        count += other.count;
+        min = Math.min( min, other.min );
+        max = Math.max( max, other.max );
+        return this;
+    }
+
+    /**
+     * Estimate the value at a quantile.
+     *
+     * @param q quantile, 0 for the minimum up to 1 for the maximum
+     * @return the estimate, within the relative accuracy of a value at that
+     * rank, NaN when the sketch is empty
+     */
+    public double quantile( double q ) {
+        if ( !( q >= 0 && q <= 1 ) ) {
+            throw new IllegalArgumentException( "quantile " + q
+                    + " is not between 0 and 1" );
+        }
+        if ( count == 0 ) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.floor( q * ( count - 1 ) );
+        if ( rank < zeros ) {
+            return 0;
+        }
+        long seen = zeros;
+        for ( int i = 0; i < counts.length; i++ ) {
+            seen += counts[ i ];
+            if ( seen > rank ) {
+                double upper = Math.exp( ( offset + i ) * logGamma );
+                double estimate = 2 * upper / ( 1 + Math.exp( logGamma ) );
+                return Math.max( min, Math.min( max, estimate ) );
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Number of values added.
+     *
+     * @return the count
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Smallest value added, exact.
+     *
+     * @return the minimum, NaN when empty
+     */
+    public double min() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Largest value added, exact.
+     *
+     * @return the maximum, NaN when empty
+     */
+    public double max() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    @Override
+    public long heapBytes() {
+        return RangeFootprint.objectBytes( 1, 52 ) + RangeFootprint.arrayBytes(
+                8, counts.length );
+    }
+
+    /**
+     * {@inheritDoc} Counts the values added.
+     */
+    @Override
+    public long elementCount() {
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch{count=" + count + ", alpha=" + relativeAccuracy
+                + ", buckets=" + Arrays.stream( counts ).filter( c -> c > 0 )
+                        .count() + "}";
+    }
+}
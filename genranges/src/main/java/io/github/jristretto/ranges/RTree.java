@@ -0,0 +1,442 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * R-tree over {@link RangeBox}es, answering box overlap queries without
+ * scanning all boxes.
+ *
+ * <p>
+ * The tree can be bulk loaded with Sort-Tile-Recursive packing, which gives
+ * nearly full nodes with little overlap, and can grow afterwards by dynamic
+ * inserts using Guttman's least enlargement descent and quadratic split.</p>
+ *
+ * <p>
+ * The generic point types have no arithmetic, so the tree is given a
+ * coordinate function per dimension, for instance {@code Integer::doubleValue}
+ * or {@code Instant::toEpochMilli}. These are only used to estimate areas and
+ * centres for the packing and split heuristics. The query results are decided
+ * by {@link RangeBox#overlaps(RangeBox)} alone.</p>
+ *
+ * <p>
+ * This class is not thread safe.</p>
+ *
+ * @param <X> range type of the first dimension
+ * @param <XP> point type of the first dimension
+ * @param <Y> range type of the second dimension
+ * @param <YP> point type of the second dimension
+ */
+public class RTree<X extends Range<X, XP, ?>, XP extends Comparable<? super XP>, Y extends Range<Y, YP, ?>, YP extends Comparable<? super YP>>
+        implements MemoryFootprint {
+
+    /**
+     * Default maximum number of entries per node.
+     */
+    public static final int DEFAULT_NODE_CAPACITY = 16;
+
+    private final ToDoubleFunction<? super XP> xCoord;
+    private final ToDoubleFunction<? super YP> yCoord;
+    private final int maxEntries;
+    private final int minEntries;
+    private Node root;
+    private int size;
+
+    /**
+     * Create an empty tree.
+     *
+     * @param xCoord maps first dimension points onto a number line
+     * @param yCoord maps second dimension points onto a number line
+     * @param nodeCapacity maximum entries per node, at least 4
+     */
+    public RTree( ToDoubleFunction<? super XP> xCoord,
+            ToDoubleFunction<? super YP> yCoord, int nodeCapacity ) {
+        if ( nodeCapacity < 4 ) {
+            throw new IllegalArgumentException( "node capacity "
+                    + nodeCapacity + " is less than 4" );
+        }
+        this.xCoord = Objects.requireNonNull( xCoord );
+        this.yCoord = Objects.requireNonNull( yCoord );
+        this.maxEntries = nodeCapacity;
+        this.minEntries = Math.max( 2, nodeCapacity * 2 / 5 );
+        this.root = new Node( true );
+    }
+
+    /**
+     * Create an empty tree with the default node capacity.
+     *
+     * @param xCoord maps first dimension points onto a number line
+     * @param yCoord maps second dimension points onto a number line
+     */
+    public RTree( ToDoubleFunction<? super XP> xCoord,
+            ToDoubleFunction<? super YP> yCoord ) {
+        this( xCoord, yCoord, DEFAULT_NODE_CAPACITY );
+    }
+
+    /**
+     * Build a tree from a collection of boxes with Sort-Tile-Recursive
+     * packing.
+     *
+     * @param <X> range type of the first dimension
+     * @param <XP> point type of the first dimension
+     * @param <Y> range type of the second dimension
+     * @param <YP> point type of the second dimension
+     * @param boxes to load
+     * @param xCoord maps first dimension points onto a number line
+     * @param yCoord maps second dimension points onto a number line
+     * @return the packed tree
+     */
+    public static <X extends Range<X, XP, ?>, XP extends Comparable<? super XP>, Y extends Range<Y, YP, ?>, YP extends Comparable<? super YP>>
+            RTree<X, XP, Y, YP> bulkLoad(
+                    Collection<RangeBox<X, XP, Y, YP>> boxes,
+                    ToDoubleFunction<? super XP> xCoord,
+                    ToDoubleFunction<? super YP> yCoord ) {
+        RTree<X, XP, Y, YP> tree = new RTree<X, XP, Y, YP>( xCoord,
+                yCoord );
+        tree.load( boxes );
+        return tree;
+    }
+
+    private void load( Collection<RangeBox<X, XP, Y, YP>> boxes ) {
+        if ( boxes.isEmpty() ) {
+            return;
+        }
+        List<Node> level = new ArrayList<>();
+        for ( List<RangeBox<X, XP, Y, YP>> tile : tile( new ArrayList<>( boxes ),
+                Function.identity() ) ) {
+            Node leaf = new Node( true );
+            leaf.entries.addAll( tile );
+            leaf.recomputeMbr();
+            level.add( leaf );
+        }
+        while ( level.size() > 1 ) {
+            List<Node> parents = new ArrayList<>();
+            for ( List<Node> tile : tile( level, n -> n.mbr ) ) {
+                Node parent = new Node( false );
+                parent.children.addAll( tile );
+                parent.recomputeMbr();
+                parents.add( parent );
+            }
+            level = parents;
+        }
+        root = level.get( 0 );
+        size = boxes.size();
+    }
+
+    /**
+     * Sort-Tile-Recursive grouping: sort by x centre, cut into vertical
+     * slices, sort each slice by y centre and cut into node sized tiles.
+     */
+    private <T> List<List<T>> tile( List<T> items,
+            Function<T, RangeBox<X, XP, Y, YP>> box ) {
+        int n = items.size();
+        int leafCount = ( n + maxEntries - 1 ) / maxEntries;
+        int slices = (int) Math.ceil( Math.sqrt( leafCount ) );
+        int sliceSize = slices * maxEntries;
+        items.sort( Comparator.comparingDouble( t -> xCentre( box.apply( t ) ) ) );
+        List<List<T>> tiles = new ArrayList<>();
+        for ( int s = 0; s < n; s += sliceSize ) {
+            List<T> slice = new ArrayList<>( items.subList( s, Math.min( n,
+                    s + sliceSize ) ) );
+            slice.sort( Comparator.comparingDouble( t -> yCentre( box.apply( t ) ) ) );
+            for ( int t = 0; t < slice.size(); t += maxEntries ) {
+                tiles.add( new ArrayList<>( slice.subList( t, Math.min( slice
+                        .size(), t + maxEntries ) ) ) );
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Add a box to this tree.
+     *
+     * @param box to add
+     */
+    public void insert( RangeBox<X, XP, Y, YP> box ) {
+        Objects.requireNonNull( box );
+        Node sibling = insert( root, box );
+        if ( sibling != null ) {
+            Node newRoot = new Node( false );
+            newRoot.children.add( root );
+            newRoot.children.add( sibling );
+            newRoot.recomputeMbr();
+            root = newRoot;
+        }
+        size++;
+    }
+
+    private Node insert( Node n, RangeBox<X, XP, Y, YP> box ) {
+        if ( n.leaf ) {
+            n.entries.add( box );
+        } else {
+            Node child = chooseSubtree( n, box );
+            Node split = insert( child, box );
+            if ( split != null ) {
+                n.children.add( split );
+            }
+        }
+        n.mbr = n.mbr == null ? box : n.mbr.span( box );
+        if ( n.count() > maxEntries ) {
+            return split( n );
+        }
+        return null;
+    }
+
+    private Node chooseSubtree( Node n, RangeBox<X, XP, Y, YP> box ) {
+        Node best = null;
+        double bestEnlargement = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for ( Node c : n.children ) {
+            double area = area( c.mbr );
+            double enlargement = area( c.mbr.span( box ) ) - area;
+            if ( enlargement < bestEnlargement
+                    || ( enlargement == bestEnlargement && area < bestArea ) ) {
+                best = c;
+                bestEnlargement = enlargement;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Quadratic split. Moves about half of the content of n to a new sibling.
+     */
+    private Node split( Node n ) {
+        Node sibling = new Node( n.leaf );
+        if ( n.leaf ) {
+            List<List<RangeBox<X, XP, Y, YP>>> groups = quadraticSplit(
+                    n.entries, Function.identity() );
+            n.entries.clear();
+            n.entries.addAll( groups.get( 0 ) );
+            sibling.entries.addAll( groups.get( 1 ) );
+        } else {
+            List<List<Node>> groups = quadraticSplit( n.children, c -> c.mbr );
+            n.children.clear();
+            n.children.addAll( groups.get( 0 ) );
+            sibling.children.addAll( groups.get( 1 ) );
+        }
+        n.recomputeMbr();
+        sibling.recomputeMbr();
+        return sibling;
+    }
+
+    private <T> List<List<T>> quadraticSplit( List<T> items,
+            Function<T, RangeBox<X, XP, Y, YP>> box ) {
+        List<T> rest = new ArrayList<>( items );
+        // pick the pair of seeds that would waste the most area together
+        int seedA = 0;
+        int seedB = 1;
+        double worst = Double.NEGATIVE_INFINITY;
+        for ( int i = 0; i < rest.size(); i++ ) {
+            for ( int j = i + 1; j < rest.size(); j++ ) {
+                RangeBox<X, XP, Y, YP> bi = box.apply( rest.get( i ) );
+                RangeBox<X, XP, Y, YP> bj = box.apply( rest.get( j ) );
+                double waste = area( bi.span( bj ) ) - area( bi ) - area( bj );
+                if ( waste > worst ) {
+                    worst = waste;
+                    seedA = i;
+                    seedB = j;
+                }
+            }
+        }
+        List<T> groupA = new ArrayList<>();
+        List<T> groupB = new ArrayList<>();
+        groupA.add( rest.get( seedA ) );
+        groupB.add( rest.get( seedB ) );
+        RangeBox<X, XP, Y, YP> mbrA = box.apply( rest.get( seedA ) );
+        RangeBox<X, XP, Y, YP> mbrB = box.apply( rest.get( seedB ) );
+        rest.remove( seedB );
+        rest.remove( seedA );
+        while ( !rest.isEmpty() ) {
+            if ( groupA.size() + rest.size() == minEntries ) {
+                groupA.addAll( rest );
+                break;
+            }
+            if ( groupB.size() + rest.size() == minEntries ) {
+                groupB.addAll( rest );
+                break;
+            }
+            // pick the item with the strongest preference for one group
+            int pick = 0;
+            double maxDiff = -1;
+            double pickA = 0;
+            double pickB = 0;
+            for ( int i = 0; i < rest.size(); i++ ) {
+                RangeBox<X, XP, Y, YP> b = box.apply( rest.get( i ) );
+                double dA = area( mbrA.span( b ) ) - area( mbrA );
+                double dB = area( mbrB.span( b ) ) - area( mbrB );
+                if ( Math.abs( dA - dB ) > maxDiff ) {
+                    maxDiff = Math.abs( dA - dB );
+                    pick = i;
+                    pickA = dA;
+                    pickB = dB;
+                }
+            }
+            T item = rest.remove( pick );
+            boolean toA = pickA < pickB
+                    || ( pickA == pickB && groupA.size() <= groupB.size() );
+            if ( toA ) {
+                groupA.add( item );
+                mbrA = mbrA.span( box.apply( item ) );
+            } else {
+                groupB.add( item );
+                mbrB = mbrB.span( box.apply( item ) );
+            }
+        }
+        return List.of( groupA, groupB );
+    }
+
+    /**
+     * Visit all boxes that overlap the query.
+     *
+     * @param query box
+     * @param consumer receiving the overlapping boxes
+     */
+    public void search( RangeBox<X, XP, Y, YP> query,
+            Consumer<? super RangeBox<X, XP, Y, YP>> consumer ) {
+        if ( root.mbr != null ) {
+            search( root, query, consumer );
+        }
+    }
+
+    private void search( Node n, RangeBox<X, XP, Y, YP> query,
+            Consumer<? super RangeBox<X, XP, Y, YP>> consumer ) {
+        if ( !n.mbr.overlaps( query ) ) {
+            return;
+        }
+        if ( n.leaf ) {
+            for ( RangeBox<X, XP, Y, YP> e : n.entries ) {
+                if ( e.overlaps( query ) ) {
+                    consumer.accept( e );
+                }
+            }
+        } else {
+            for ( Node c : n.children ) {
+                search( c, query, consumer );
+            }
+        }
+    }
+
+    /**
+     * Get all boxes that overlap the query.
+     *
+     * @param query box
+     * @return list of overlapping boxes, in no particular order
+     */
+    public List<RangeBox<X, XP, Y, YP>> overlapping(
+            RangeBox<X, XP, Y, YP> query ) {
+        List<RangeBox<X, XP, Y, YP>> result = new ArrayList<>();
+        search( query, result::add );
+        return result;
+    }
+
+    /**
+     * Number of boxes in this tree.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Height of the tree, 1 for a single leaf.
+     *
+     * @return the height
+     */
+    public int height() {
+        int h = 1;
+        for ( Node n = root; !n.leaf; n = n.children.get( 0 ) ) {
+            h++;
+        }
+        return h;
+    }
+
+    @Override
+    public long heapBytes() {
+        return RangeFootprint.objectBytes( 5, 8 ) + heapBytes( root );
+    }
+
+    private long heapBytes( Node n ) {
+        // node with its list, sized for one overflow entry
+        long bytes = RangeFootprint.objectBytes( 5, 1 ) + RangeFootprint
+                .listBytes( maxEntries + 1 ) + boxBytes( n.mbr );
+        if ( n.leaf ) {
+            for ( RangeBox<X, XP, Y, YP> e : n.entries ) {
+                bytes += boxBytes( e );
+            }
+        } else {
+            for ( Node c : n.children ) {
+                bytes += heapBytes( c );
+            }
+        }
+        return bytes;
+    }
+
+    private static long boxBytes( RangeBox<?, ?, ?, ?> b ) {
+        return b == null ? 0 : RangeFootprint.objectBytes( 2, 0 )
+                + RangeFootprint.rangeBytes( b.x() ) + RangeFootprint.rangeBytes(
+                b.y() );
+    }
+
+    @Override
+    public long elementCount() {
+        return size;
+    }
+
+    private double area( RangeBox<X, XP, Y, YP> b ) {
+        double w = xCoord.applyAsDouble( b.x().end() ) - xCoord.applyAsDouble( b
+                .x().start() );
+        double h = yCoord.applyAsDouble( b.y().end() ) - yCoord.applyAsDouble( b
+                .y().start() );
+        return w * h;
+    }
+
+    private double xCentre( RangeBox<X, XP, Y, YP> b ) {
+        return ( xCoord.applyAsDouble( b.x().start() ) + xCoord.applyAsDouble(
+                b.x().end() ) ) / 2;
+    }
+
+    private double yCentre( RangeBox<X, XP, Y, YP> b ) {
+        return ( yCoord.applyAsDouble( b.y().start() ) + yCoord.applyAsDouble(
+                b.y().end() ) ) / 2;
+    }
+
+    private final class Node {
+
+        final boolean leaf;
+        final List<RangeBox<X, XP, Y, YP>> entries;
+        final List<Node> children;
+        RangeBox<X, XP, Y, YP> mbr;
+
+        Node( boolean leaf ) {
+            this.leaf = leaf;
+            this.entries = leaf ? new ArrayList<>( maxEntries + 1 ) : List.of();
+            this.children = leaf ? List.of() : new ArrayList<>( maxEntries + 1 );
+        }
+
+        int count() {
+            return leaf ? entries.size() : children.size();
+        }
+
+        void recomputeMbr() {
+            mbr = null;
+            if ( leaf ) {
+                for ( RangeBox<X, XP, Y, YP> e : entries ) {
+                    mbr = mbr == null ? e : mbr.span( e );
+                }
+            } else {
+                for ( Node c : children ) {
+                    mbr = mbr == null ? c.mbr : mbr.span( c.mbr );
+                }
+            }
+        }
+    }
+}
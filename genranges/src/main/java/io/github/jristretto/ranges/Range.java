@@ -307,6 +307,17 @@ public interface Range<R extends Range<R, P, D>, P extends Comparable<? super P>
         //cs:add:return false;
     }
 
+    /**
+     * Get the Allen relation of this range to the other range, in at most
+     * three endpoint comparisons.
+     *
+     * @param other range
+     * @return the relation, read as "this RELATION other"
+     */
+    default AllenRelation relationTo( R other ) {
+        return AllenRelation.of( self(), other );
+    }
+
     /**
      * Get the "zero" value for this distance type.
      *
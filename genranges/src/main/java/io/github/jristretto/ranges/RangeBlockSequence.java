@@ -0,0 +1,378 @@
+package io.github.jristretto.ranges;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compact, read only sequence of ranges sorted by start, encoded in blocks.
+ *
+ * <p>
+ * Inside a block every range is stored as two unsigned varints: the distance
+ * of its start to the previous start and its length, both computed through a
+ * {@link LongRangeMapping}. Sorted schedules have small deltas and lengths, so
+ * most ranges take two to four bytes instead of the tens of bytes of a range
+ * object with boxed points. A skip index holds the first start and the offset of
+ * every block, so {@link Cursor#seek(Comparable) seek} binary searches the index
+ * and decodes at most one block to find its target. Use the coarsest mapping
+ * that is still exact for the data, e.g. seconds instead of nanoseconds for a
+ * schedule in whole minutes, to keep the varints short.</p>
+ *
+ * <p>
+ * The encoding lives in a {@link ByteBuffer}, either on the heap or memory
+ * mapped from a file written by {@link #writeTo(Path)}. Layout, big endian:</p>
+ * <pre>
+ * int magic, int count, int blockSize, int blockCount
+ * blockCount x (long firstStart, int dataOffset)
+ * data: count x (varint startDelta, varint length)
+ * </pre>
+ *
+ * <p>
+ * Instances are immutable and may be shared between threads; every cursor keeps
+ * its own position.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ */
+public final class RangeBlockSequence<R extends Range<R, P, ?>, P extends Comparable<? super P>>
+        implements Iterable<R>, MemoryFootprint {
+
+    /**
+     * Default number of ranges per block.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 128;
+
+    private static final int MAGIC = 0x52424c4b;
+    private static final int HEADER_BYTES = 16;
+    private static final int INDEX_ENTRY_BYTES = 12;
+
+    private final ByteBuffer buffer;
+    private final LongRangeMapping<R, P> mapping;
+    private final int count;
+    private final int blockSize;
+    private final int blockCount;
+
+    private RangeBlockSequence( ByteBuffer buffer, LongRangeMapping<R, P> mapping ) {
+        this.buffer = buffer;
+        this.mapping = mapping;
+        if ( buffer.getInt( 0 ) != MAGIC ) {
+            throw new IllegalArgumentException( "not a range block sequence" );
+        }
+        this.count = buffer.getInt( 4 );
+        this.blockSize = buffer.getInt( 8 );
+        this.blockCount = buffer.getInt( 12 );
+    }
+
+    /**
+     * Encode ranges with the default block size.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted ranges, in order of start
+     * @param mapping of the points to longs
+     * @return the encoded sequence
+     * @throws IllegalArgumentException when the ranges are not sorted by start
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            RangeBlockSequence<R, P> encode( List<R> sorted,
+                    LongRangeMapping<R, P> mapping ) {
+        return encode( sorted, mapping, DEFAULT_BLOCK_SIZE );
+    }
+
+    /**
+     * Encode ranges.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted ranges, in order of start
+     * @param mapping of the points to longs
+     * @param blockSize ranges per block, positive
+     * @return the encoded sequence
+     * @throws IllegalArgumentException when the ranges are not sorted by start
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            RangeBlockSequence<R, P> encode( List<R> sorted,
+                    LongRangeMapping<R, P> mapping, int blockSize ) {
+        if ( blockSize < 1 ) {
+            throw new IllegalArgumentException( "block size " + blockSize
+                    + " is not positive" );
+        }
+        int n = sorted.size();
+        int blocks = (int) ( ( n + (long) blockSize - 1 ) / blockSize );
+        long dataStart = HEADER_BYTES + (long) blocks * INDEX_ENTRY_BYTES;
+        // worst case two ten byte varints per range, trimmed afterwards
+        long capacity = Math.addExact( dataStart, Math.multiplyExact( 20L, n ) );
+        if ( capacity > Integer.MAX_VALUE - 8 ) {
+            throw new IllegalArgumentException( n + " ranges may need up to "
+                    + capacity + " bytes, more than one buffer can hold;"
+                    + " split them over several sequences" );
+        }
+        ByteBuffer buf = ByteBuffer.allocate( (int) capacity );
+        buf.putInt( MAGIC ).putInt( n ).putInt( blockSize ).putInt( blocks );
+        buf.position( (int) dataStart );
+        long previous = Long.MIN_VALUE;
+        for ( int i = 0; i < n; i++ ) {
+            R r = sorted.get( i );
+            long start = mapping.toLong( r.start() );
+            long length = Math.subtractExact( mapping.toLong( r.end() ), start );
+            if ( i % blockSize == 0 ) {
+                int entry = HEADER_BYTES + ( i / blockSize ) * INDEX_ENTRY_BYTES;
+                buf.putLong( entry, start ).putInt( entry + 8, buf.position() );
+                previous = start;
+            }
+            if ( start < previous ) {
+                throw new IllegalArgumentException( "range " + r + " at " + i
+                        + " is out of order" );
+            }
+            putVarint( buf, start - previous );
+            putVarint( buf, length );
+            previous = start;
+        }
+        ByteBuffer trimmed = ByteBuffer.allocate( buf.position() );
+        trimmed.put( buf.flip() ).flip();
+        return new RangeBlockSequence<>( trimmed, mapping );
+    }
+
+    /**
+     * Use an existing encoding, for instance one read from a file.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param encoded buffer holding the encoding from position zero
+     * @param mapping that was used for encoding
+     * @return the sequence
+     * @throws IllegalArgumentException when the buffer holds no encoding
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            RangeBlockSequence<R, P> wrap( ByteBuffer encoded,
+                    LongRangeMapping<R, P> mapping ) {
+        return new RangeBlockSequence<>( encoded.duplicate(), mapping );
+    }
+
+    /**
+     * Memory map a file written by {@link #writeTo(Path)}. Blocks are paged in
+     * by the operating system when they are decoded.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param file to map
+     * @param mapping that was used for encoding
+     * @return the sequence
+     * @throws IOException when the file cannot be mapped
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            RangeBlockSequence<R, P> open( Path file,
+                    LongRangeMapping<R, P> mapping ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( file,
+                StandardOpenOption.READ ) ) {
+            return new RangeBlockSequence<>( channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, channel.size() ), mapping );
+        }
+    }
+
+    /**
+     * Write the encoding to a file.
+     *
+     * @param file to write
+     * @throws IOException when writing fails
+     */
+    public void writeTo( Path file ) throws IOException {
+        try ( FileChannel channel = FileChannel.open( file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING ) ) {
+            ByteBuffer b = buffer.duplicate().clear();
+            while ( b.hasRemaining() ) {
+                channel.write( b );
+            }
+        }
+    }
+
+    /**
+     * Number of ranges.
+     *
+     * @return the size
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Size of the encoding in bytes, skip index included.
+     *
+     * @return the encoded size
+     */
+    public int encodedBytes() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public long heapBytes() {
+        long bytes = RangeFootprint.objectBytes( 2, 12 ) + RangeFootprint
+                .objectBytes( 4, 24 );
+        return buffer.isDirect() ? bytes : bytes + RangeFootprint.arrayBytes( 1,
+                buffer.capacity() );
+    }
+
+    /**
+     * {@inheritDoc} A sequence {@link #open(Path, LongRangeMapping) opened}
+     * from a file maps it, so the encoding lives in the page cache.
+     */
+    @Override
+    public long offHeapBytes() {
+        return buffer.isDirect() ? buffer.capacity() : 0;
+    }
+
+    @Override
+    public long elementCount() {
+        return count;
+    }
+
+    /**
+     * Get a cursor positioned before the first range.
+     *
+     * @return new cursor
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    @Override
+    public Iterator<R> iterator() {
+        return cursor();
+    }
+
+    /**
+     * Stream the ranges, decoding lazily.
+     *
+     * @return the ranges in order
+     */
+    public Stream<R> stream() {
+        return StreamSupport.stream( Spliterators.spliterator( cursor(), count,
+                Spliterator.ORDERED | Spliterator.NONNULL ), false );
+    }
+
+    private static void putVarint( ByteBuffer buf, long value ) {
+        while ( ( value & ~0x7FL ) != 0 ) {
+            buf.put( (byte) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        buf.put( (byte) value );
+    }
+
+    /**
+     * Iterator that decodes one range per step and can jump ahead.
+     */
+    public final class Cursor implements Iterator<R> {
+
+        private int index;
+        private int offset;
+        private long previous;
+
+        private Cursor() {
+            positionAtBlock( 0 );
+        }
+
+        private void positionAtBlock( int block ) {
+            index = block * blockSize;
+            if ( block < blockCount ) {
+                int entry = HEADER_BYTES + block * INDEX_ENTRY_BYTES;
+                previous = buffer.getLong( entry );
+                offset = buffer.getInt( entry + 8 );
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        @Override
+        public R next() {
+            if ( index >= count ) {
+                throw new NoSuchElementException();
+            }
+            if ( index % blockSize == 0 ) {
+                positionAtBlock( index / blockSize );
+            }
+            long start = previous + readVarint();
+            long length = readVarint();
+            previous = start;
+            index++;
+            return mapping.range( start, start + length );
+        }
+
+        /**
+         * Peek at the start of the next range without decoding its length.
+         */
+        private long peekStart() {
+            if ( index % blockSize == 0 ) {
+                positionAtBlock( index / blockSize );
+            }
+            int saved = offset;
+            long start = previous + readVarint();
+            offset = saved;
+            return start;
+        }
+
+        /**
+         * Position this cursor so that the next range is the first one that
+         * starts at or after the target. Moving backwards is allowed.
+         *
+         * @param target start to seek
+         * @return this cursor
+         */
+        public Cursor seek( P target ) {
+            Objects.requireNonNull( target );
+            long t = mapping.toLong( target );
+            // last block whose first start is before the target
+            int lo = 0;
+            int hi = blockCount - 1;
+            int block = 0;
+            while ( lo <= hi ) {
+                int mid = ( lo + hi ) >>> 1;
+                if ( buffer.getLong( HEADER_BYTES + mid * INDEX_ENTRY_BYTES ) < t ) {
+                    block = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            positionAtBlock( block );
+            while ( index < count && peekStart() < t ) {
+                next();
+            }
+            return this;
+        }
+
+        /**
+         * Index of the next range in the sequence.
+         *
+         * @return position of this cursor
+         */
+        public int position() {
+            return index;
+        }
+
+        private long readVarint() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get( offset++ );
+                value |= (long) ( b & 0x7F ) << shift;
+                shift += 7;
+            } while ( b < 0 );
+            return value;
+        }
+    }
+}
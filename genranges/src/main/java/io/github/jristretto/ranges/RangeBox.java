@@ -0,0 +1,122 @@
+package io.github.jristretto.ranges;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.Optional;
+
+import static io.github.jristretto.ranges.Range.max;
+import static io.github.jristretto.ranges.Range.min;
+
+/**
+ * Two dimensional box, the cartesian product of two ranges. Like a time range
+ * combined with a range of resource ids.
+ *
+ * <p>
+ * All operations are applied per dimension, with the usual half open semantics
+ * of {@link Range}. Two boxes overlap when they overlap in both dimensions, one
+ * box contains another when it does so in both dimensions.</p>
+ *
+ * @param <X> range type of the first dimension
+ * @param <XP> point type of the first dimension
+ * @param <Y> range type of the second dimension
+ * @param <YP> point type of the second dimension
+ * @param x range in first dimension
+ * @param y range in second dimension
+ */
+public record RangeBox<X extends Range<X, XP, ?>, XP extends Comparable<? super XP>, Y extends Range<Y, YP, ?>, YP extends Comparable<? super YP>>(X x, Y y)
+        implements Serializable {
+
+    public RangeBox {
+        Objects.requireNonNull( x, "x" );
+        Objects.requireNonNull( y, "y" );
+    }
+
+    /**
+     * Convenience factory.
+     *
+     * @param <X> range type of the first dimension
+     * @param <XP> point type of the first dimension
+     * @param <Y> range type of the second dimension
+     * @param <YP> point type of the second dimension
+     * @param x range in first dimension
+     * @param y range in second dimension
+     * @return the box
+     */
+    public static <X extends Range<X, XP, ?>, XP extends Comparable<? super XP>, Y extends Range<Y, YP, ?>, YP extends Comparable<? super YP>>
+            RangeBox<X, XP, Y, YP> of( X x, Y y ) {
+        return new RangeBox<>( x, y );
+    }
+
+    /**
+     * Check if the point (px,py) is inside this box.
+     *
+     * @param px first coordinate
+     * @param py second coordinate
+     * @return true if both ranges contain their coordinate
+     */
+    public boolean contains( XP px, YP py ) {
+        return x.contains( px ) && y.contains( py );
+    }
+
+    /**
+     * Check if this box overlaps with other box.
+     *
+     * @param other box
+     * @return true if the boxes overlap in both dimensions
+     */
+    public boolean overlaps( RangeBox<X, XP, Y, YP> other ) {
+        return x.overlaps( other.x ) && y.overlaps( other.y );
+    }
+
+    /**
+     * Test if the other box is fully contained in this box.
+     *
+     * @param other box
+     * @return true if this contains other in both dimensions
+     */
+    public boolean contains( RangeBox<X, XP, Y, YP> other ) {
+        return x.contains( other.x ) && y.contains( other.y );
+    }
+
+    /**
+     * Compute the intersection of this and other box.
+     *
+     * @param other box
+     * @return the intersection, empty if the boxes do not overlap
+     */
+    public Optional<RangeBox<X, XP, Y, YP>> intersectWith(
+            RangeBox<X, XP, Y, YP> other ) {
+        Optional<X> ix = x.intersectWith( other.x );
+        if ( ix.isEmpty() ) {
+            return Optional.empty();
+        }
+        return y.intersectWith( other.y ).map( iy -> of( ix.get(), iy ) );
+    }
+
+    /**
+     * Get the smallest box that contains both this and other box. Unlike
+     * {@link Range#joinWith(Range) joinWith} the boxes need not touch.
+     *
+     * @param other box
+     * @return the bounding box of this and other
+     */
+    public RangeBox<X, XP, Y, YP> span( RangeBox<X, XP, Y, YP> other ) {
+        if ( this.contains( other ) ) {
+            return this;
+        }
+        return of( span( x, other.x ), span( y, other.y ) );
+    }
+
+    private static <Z extends Range<Z, Q, ?>, Q extends Comparable<? super Q>>
+            Z span( Z a, Z b ) {
+        if ( a.contains( b ) ) {
+            return a;
+        }
+        return a.between( min( a.start(), b.start() ), max( a.end(), b.end() ) );
+    }
+
+    @Override
+    public String toString() {
+        return x + "x" + y;
+    }
+}
@@ -0,0 +1,304 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collector;
+
+/**
+ * Turns any collection of ranges into its disjoint union: sorted, with all
+ * meeting or overlapping ranges replaced by their
+ * {@link Range#joinWith(Range) join}. Empty ranges contain no points and are
+ * dropped.
+ *
+ * <p>
+ * The parallel variant sorts with {@link Arrays#parallelSort(Object[])},
+ * coalesces fixed chunks of the sorted array as fork/join tasks, joins the
+ * few ranges that span chunk boundaries and copies the chunk results into one
+ * presized array, again in parallel. The result is a fixed size list. The
+ * collector does the same for {@code stream.parallel().collect(...)}: every
+ * leaf of the stream coalesces its own part as it goes, whenever its buffer
+ * has doubled, and the combiner merges two coalesced parts in linear time.
+ * So the collector holds about twice the disjoint pieces of the union, not
+ * the ranges.</p>
+ */
+public final class RangeCoalescer {
+
+    private static final int MIN_CHUNK = 1 << 13;
+
+    private RangeCoalescer() {
+    }
+
+    /**
+     * Coalesce ranges that are already sorted by start.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param sorted ranges in order of start
+     * @return the disjoint union
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> coalesceSorted( Iterable<? extends R> sorted ) {
+        List<R> out = new ArrayList<>();
+        for ( R r : sorted ) {
+            appendJoined( out, r );
+        }
+        return out;
+    }
+
+    /**
+     * Sort and coalesce on the calling thread.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param ranges in any order
+     * @return the disjoint union
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> coalesce( Collection<? extends R> ranges ) {
+        List<R> sorted = new ArrayList<>( ranges );
+        Collections.sort( sorted );
+        return coalesceSorted( sorted );
+    }
+
+    /**
+     * Sort and coalesce in the common pool. The array is sorted in place.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param ranges in any order
+     * @return the disjoint union, a fixed size list
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> parallelCoalesce( R[] ranges ) {
+        return parallelCoalesce( ranges, ForkJoinPool.commonPool() );
+    }
+
+    /**
+     * Sort and coalesce in the given pool. The array is sorted in place.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param ranges in any order
+     * @param pool to run in
+     * @return the disjoint union, a fixed size list
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> parallelCoalesce( R[] ranges, ForkJoinPool pool ) {
+        return pool.invoke( new RecursiveTask<List<R>>() {
+            @Override
+            protected List<R> compute() {
+                // parallelSort forks into the pool this task runs in
+                Arrays.parallelSort( ranges );
+                int chunk = Math.max( MIN_CHUNK, ranges.length / ( 8 * pool
+                        .getParallelism() ) );
+                List<ForkJoinTask<List<R>>> tasks = new ArrayList<>();
+                for ( int from = 0; from < ranges.length; from += chunk ) {
+                    List<R> slice = Arrays.asList( ranges ).subList( from, Math
+                            .min( ranges.length, from + chunk ) );
+                    tasks.add( ForkJoinTask.adapt( () -> coalesceSorted( slice ) ) );
+                }
+                List<List<R>> chunks = new ArrayList<>( tasks.size() );
+                for ( ForkJoinTask<List<R>> t : ForkJoinTask.invokeAll( tasks ) ) {
+                    chunks.add( t.join() );
+                }
+                return concatenate( chunks );
+            }
+        } );
+    }
+
+    /**
+     * Sort and coalesce a collection in the common pool.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param ranges in any order
+     * @return the disjoint union, a fixed size list
+     */
+    @SuppressWarnings( "unchecked" )
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> parallelCoalesce( Collection<? extends R> ranges ) {
+        // only used internally, the erasure of R[] is Range[]
+        R[] copy = (R[]) ranges.toArray( new Range<?, ?, ?>[ 0 ] );
+        return parallelCoalesce( copy );
+    }
+
+    /**
+     * Collector to the disjoint union of the streamed ranges. Works for
+     * sequential and parallel streams. Memory is bounded by about twice the
+     * number of disjoint pieces of the union, at least 1024 ranges per leaf.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @return the collector
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Collector<R, ?, List<R>> toCoalesced() {
+        return Collector.<R, Part<R, P, D>, List<R>>of(
+                Part::new,
+                Part::add,
+                Part::merge,
+                Part::finish );
+    }
+
+    /**
+     * Append a range to a coalesced list, joining it with the last range when
+     * they meet or overlap. The range must not start before the last range.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param out coalesced list, sorted by start
+     * @param r range to append
+     */
+    static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            void appendJoined( List<R> out, R r ) {
+        if ( r.start().compareTo( r.end() ) == 0 ) {
+            return;
+        }
+        int last = out.size() - 1;
+        if ( last >= 0 && out.get( last ).end().compareTo( r.start() ) >= 0 ) {
+            R l = out.get( last );
+            if ( l.end().compareTo( r.end() ) < 0 ) {
+                out.set( last, l.joinWith( r ) );
+            }
+        } else {
+            out.add( r );
+        }
+    }
+
+    /**
+     * Merge two coalesced lists into one, in O(n+m).
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param a coalesced list
+     * @param b coalesced list
+     * @return the coalesced union of a and b
+     */
+    static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> mergeCoalesced( List<R> a, List<R> b ) {
+        List<R> out = new ArrayList<>( a.size() + b.size() );
+        int i = 0;
+        int j = 0;
+        while ( i < a.size() || j < b.size() ) {
+            boolean takeA = j >= b.size() || ( i < a.size() && a.get( i )
+                    .compareTo( b.get( j ) ) <= 0 );
+            appendJoined( out, takeA ? a.get( i++ ) : b.get( j++ ) );
+        }
+        return out;
+    }
+
+    /**
+     * Concatenate the coalesced chunks of one sorted array. Only ranges at the
+     * head of a chunk can meet or overlap the last range before it; they are
+     * joined into that range in one sequential pass over the boundaries. The
+     * rest of every chunk is then copied once, in parallel, into a presized
+     * array. Must run in a fork/join pool.
+     *
+     * @param chunks coalesced chunks, in order
+     * @return the coalesced union, a fixed size list
+     */
+    @SuppressWarnings( "unchecked" )
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<R> concatenate( List<List<R>> chunks ) {
+        int[] skip = new int[ chunks.size() ];
+        // the chunk holding the last range so far
+        List<R> tail = null;
+        for ( int k = 0; k < chunks.size(); k++ ) {
+            List<R> c = chunks.get( k );
+            if ( tail != null ) {
+                int last = tail.size() - 1;
+                R l = tail.get( last );
+                int s = 0;
+                while ( s < c.size() && l.end().compareTo( c.get( s ).start() ) >= 0 ) {
+                    if ( l.end().compareTo( c.get( s ).end() ) < 0 ) {
+                        l = l.joinWith( c.get( s ) );
+                    }
+                    s++;
+                }
+                tail.set( last, l );
+                skip[ k ] = s;
+            }
+            if ( skip[ k ] < c.size() ) {
+                tail = c;
+            }
+        }
+        int[] offset = new int[ chunks.size() + 1 ];
+        for ( int k = 0; k < chunks.size(); k++ ) {
+            offset[ k + 1 ] = offset[ k ] + chunks.get( k ).size() - skip[ k ];
+        }
+        Object[] out = new Object[ offset[ chunks.size() ] ];
+        List<ForkJoinTask<?>> copies = new ArrayList<>( chunks.size() );
+        for ( int k = 0; k < chunks.size(); k++ ) {
+            List<R> c = chunks.get( k );
+            int from = skip[ k ];
+            int at = offset[ k ];
+            copies.add( ForkJoinTask.adapt( () -> {
+                int o = at;
+                for ( int i = from; i < c.size(); i++ ) {
+                    out[ o++ ] = c.get( i );
+                }
+            } ) );
+        }
+        ForkJoinTask.invokeAll( copies );
+        return (List<R>) (List<?>) Arrays.asList( out );
+    }
+
+    /**
+     * Mutable container of the collector. Raw ranges are appended to a
+     * buffer that is sorted and coalesced whenever it has grown to twice its
+     * last coalesced size, and again when the part is merged or finished. So
+     * a part holds at most about twice the disjoint pieces of the union seen
+     * so far, and every range takes amortized O(log n) time.
+     */
+    private static final class Part<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>> {
+
+        private static final int MIN_BUFFER = 1 << 10;
+
+        private List<R> ranges = new ArrayList<>();
+        private int coalescedSize;
+        private boolean coalesced = true;
+
+        void add( R r ) {
+            ranges.add( r );
+            coalesced = false;
+            if ( ranges.size() >= Math.max( MIN_BUFFER, 2 * coalescedSize ) ) {
+                normalized();
+            }
+        }
+
+        Part<R, P, D> merge( Part<R, P, D> other ) {
+            ranges = mergeCoalesced( normalized(), other.normalized() );
+            coalescedSize = ranges.size();
+            return this;
+        }
+
+        List<R> normalized() {
+            if ( !coalesced ) {
+                // the coalesced prefix is one run for the merge sort
+                Collections.sort( ranges );
+                ranges = coalesceSorted( ranges );
+                coalescedSize = ranges.size();
+                coalesced = true;
+            }
+            return ranges;
+        }
+
+        List<R> finish() {
+            return normalized();
+        }
+    }
+}
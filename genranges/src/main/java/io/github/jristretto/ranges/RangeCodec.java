@@ -0,0 +1,139 @@
+package io.github.jristretto.ranges;
+
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary encoding of single ranges, used where ranges are written to local
+ * files.
+ *
+ * @param <R> the range type
+ */
+public interface RangeCodec<R extends Range<R, ?, ?>> {
+
+    /**
+     * Write a range.
+     *
+     * @param out to write to
+     * @param range to write
+     * @throws IOException when writing fails
+     */
+    void write( DataOutput out, R range ) throws IOException;
+
+    /**
+     * Read a range written by {@link #write(DataOutput, Range) write}.
+     *
+     * @param in to read from
+     * @return the range
+     * @throws IOException when reading fails
+     */
+    R read( DataInput in ) throws IOException;
+
+    /**
+     * Write ranges back to back.
+     *
+     * @param out to write to
+     * @param ranges to write
+     * @return the number of ranges written
+     * @throws IOException when writing fails
+     */
+    default long writeAll( DataOutput out, Iterator<? extends R> ranges )
+            throws IOException {
+        long n = 0;
+        while ( ranges.hasNext() ) {
+            write( out, ranges.next() );
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Read ranges written back to back, lazily, up to the end of the stream.
+     * The caller closes the stream.
+     *
+     * @param in to read from
+     * @return iterator over the ranges, throwing {@link UncheckedIOException}
+     * when reading fails, also when the stream ends within a range
+     */
+    default Iterator<R> reader( InputStream in ) {
+        DataInputStream data = new DataInputStream( in.markSupported() ? in
+                : new BufferedInputStream( in ) );
+        return new Iterator<>() {
+            private R next;
+            private boolean done;
+
+            @Override
+            public boolean hasNext() {
+                if ( next == null && !done ) {
+                    try {
+                        // peek for the end of the stream between ranges
+                        data.mark( 1 );
+                        if ( data.read() < 0 ) {
+                            done = true;
+                        } else {
+                            data.reset();
+                            next = read( data );
+                        }
+                    } catch ( IOException ex ) {
+                        throw new UncheckedIOException( ex );
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public R next() {
+                if ( !hasNext() ) {
+                    throw new NoSuchElementException();
+                }
+                R r = next;
+                next = null;
+                return r;
+            }
+        };
+    }
+
+    /**
+     * Codec for IntegerRange, two ints, 8 bytes.
+     */
+    RangeCodec<IntegerRange> INTEGER = new RangeCodec<>() {
+        @Override
+        public void write( DataOutput out, IntegerRange range ) throws IOException {
+            out.writeInt( range.start() );
+            out.writeInt( range.end() );
+        }
+
+        @Override
+        public IntegerRange read( DataInput in ) throws IOException {
+            return IntegerRange.of( in.readInt(), in.readInt() );
+        }
+    };
+
+    /**
+     * Codec for InstantRange, seconds and nanos of start and end, 24 bytes.
+     */
+    RangeCodec<InstantRange> INSTANT = new RangeCodec<>() {
+        @Override
+        public void write( DataOutput out, InstantRange range ) throws IOException {
+            out.writeLong( range.start().getEpochSecond() );
+            out.writeInt( range.start().getNano() );
+            out.writeLong( range.end().getEpochSecond() );
+            out.writeInt( range.end().getNano() );
+        }
+
+        @Override
+        public InstantRange read( DataInput in ) throws IOException {
+            Instant start = Instant.ofEpochSecond( in.readLong(), in.readInt() );
+            Instant end = Instant.ofEpochSecond( in.readLong(), in.readInt() );
+            return InstantRange.of( start, end );
+        }
+    };
+}
@@ -0,0 +1,126 @@
+package io.github.jristretto.ranges;
+
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * One pass {@link Collector}s for statistics over ranges. All of them combine
+ * partial results exactly, so they give the same answer on sequential and
+ * parallel streams, and none keeps the ranges themselves, except
+ * {@link #unionLength(BinaryOperator)} which keeps their disjoint union.
+ */
+public final class RangeCollectors {
+
+    private RangeCollectors() {
+    }
+
+    /**
+     * Count, total length, minimum start and maximum end in one pass.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param plus addition of distances
+     * @return the collector
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Collector<R, ?, RangeSummaryStatistics<R, P, D>> summarizing(
+                    BinaryOperator<D> plus ) {
+        return Collector.of( () -> new RangeSummaryStatistics<>( plus ),
+                RangeSummaryStatistics::accept, RangeSummaryStatistics::combine,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH );
+    }
+
+    /**
+     * Sum of the lengths, counting overlapping parts more than once.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param plus addition of distances
+     * @return the collector, empty for no ranges
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Collector<R, ?, Optional<D>> totalLength( BinaryOperator<D> plus ) {
+        return Collectors.collectingAndThen( RangeCollectors.<R, P, D>summarizing(
+                plus ), RangeSummaryStatistics::getTotalLength );
+    }
+
+    /**
+     * Length of the union, counting overlapping parts once. The ranges are
+     * {@link RangeCoalescer#toCoalesced() coalesced} on the fly, whenever the
+     * buffer has doubled, so memory is bounded by about twice the number of
+     * disjoint pieces of the union rather than the number of ranges.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param plus addition of distances
+     * @return the collector, empty for no ranges
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Collector<R, ?, Optional<D>> unionLength( BinaryOperator<D> plus ) {
+        return Collectors.collectingAndThen( RangeCoalescer.<R, P, D>toCoalesced(),
+                union -> union.stream().map( Range::length ).reduce( plus ) );
+    }
+
+    /**
+     * Smallest start.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @return the collector, empty for no ranges
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            Collector<R, ?, Optional<P>> minStart() {
+        return Collectors.mapping( Range::start, Collectors.reducing( Range::min ) );
+    }
+
+    /**
+     * Largest end.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @return the collector, empty for no ranges
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            Collector<R, ?, Optional<P>> maxEnd() {
+        return Collectors.mapping( Range::end, Collectors.reducing( Range::max ) );
+    }
+
+    /**
+     * Sketch of the distribution of the lengths, for percentiles.
+     *
+     * @param <R> range type
+     * @param <D> distance type
+     * @param toDouble conversion of a length, e.g. Duration::toMillis
+     * @param relativeAccuracy of the quantiles, e.g. 0.01
+     * @return the collector
+     */
+    public static <R extends Range<R, ?, D>, D extends Comparable<? super D>>
+            Collector<R, ?, QuantileSketch> lengthQuantiles(
+                    ToDoubleFunction<? super D> toDouble,
+                    double relativeAccuracy ) {
+        return Collector.of( () -> new QuantileSketch( relativeAccuracy ),
+                ( sketch, r ) -> sketch.add( toDouble.applyAsDouble( r.length() ) ),
+                QuantileSketch::merge, Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH );
+    }
+
+    /**
+     * Number of ranges that overlap a window.
+     *
+     * @param <R> range type
+     * @param window to test against
+     * @return the collector
+     */
+    public static <R extends Range<R, ?, ?>> Collector<R, ?, Long> overlapCount(
+            R window ) {
+        return Collectors.filtering( r -> r.overlaps( window ), Collectors
+                .counting() );
+    }
+}
@@ -0,0 +1,251 @@
+package io.github.jristretto.ranges;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Difference between two versions of a set of ranges, as the coverage that
+ * was added and the coverage that was removed, like the changes to a schedule
+ * that must be published downstream.
+ *
+ * <p>
+ * The deltas are at sub range granularity: a range that is moved or resized
+ * is not reported as a whole, but as the parts it lost and gained. E.g. when
+ * [10,20) becomes [15,25), [10,15) is removed and [20,25) added. The added
+ * coverage is {@link RangeSetAlgebra#difference(Iterable, Iterable) new minus
+ * old}, the removed coverage old minus new, so applying the deltas to the old
+ * version gives the new one, up to coalescing.</p>
+ *
+ * <p>
+ * Both versions are walked once, in a single merge over their boundary
+ * points, so a diff takes O(n+m) time and constant extra space, and the
+ * deltas come in order of position, added and removed interleaved. This makes
+ * it possible to diff {@link #diff(Path, Path, RangeCodec, Consumer) files}
+ * that do not fit in memory. The inputs must be as for
+ * {@link RangeSetAlgebra}: sorted by start and not overlapping within
+ * themselves.</p>
+ */
+public final class RangeDiff {
+
+    private RangeDiff() {
+    }
+
+    /**
+     * Kind of change.
+     */
+    public enum Kind {
+        /**
+         * Covered by the new version only.
+         */
+        ADDED,
+        /**
+         * Covered by the old version only.
+         */
+        REMOVED
+    }
+
+    /**
+     * One change: a maximal range of added or removed coverage.
+     *
+     * @param <R> range type
+     * @param kind of change
+     * @param range changed
+     */
+    public record Delta<R extends Range<R, ?, ?>>(Kind kind, R range) {
+
+        /**
+         * Validate.
+         *
+         * @param kind of change
+         * @param range changed
+         */
+        public Delta {
+            Objects.requireNonNull( kind );
+            Objects.requireNonNull( range );
+        }
+
+        @Override
+        public String toString() {
+            return ( kind == Kind.ADDED ? "+" : "-" ) + range;
+        }
+    }
+
+    /**
+     * Coverage of the new version that the old one lacks.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param oldRanges sorted non overlapping ranges
+     * @param newRanges sorted non overlapping ranges
+     * @return the added ranges, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<R> added( Iterable<? extends R> oldRanges,
+                    Iterable<? extends R> newRanges ) {
+        return RangeSetAlgebra.difference( newRanges, oldRanges );
+    }
+
+    /**
+     * Coverage of the old version that the new one lacks.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param oldRanges sorted non overlapping ranges
+     * @param newRanges sorted non overlapping ranges
+     * @return the removed ranges, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<R> removed( Iterable<? extends R> oldRanges,
+                    Iterable<? extends R> newRanges ) {
+        return RangeSetAlgebra.difference( oldRanges, newRanges );
+    }
+
+    /**
+     * All changes from the old to the new version, in order of position.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param oldRanges sorted non overlapping ranges
+     * @param newRanges sorted non overlapping ranges
+     * @return the deltas, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<Delta<R>> diff( Iterable<? extends R> oldRanges,
+                    Iterable<? extends R> newRanges ) {
+        return StreamSupport.stream( Spliterators.spliteratorUnknownSize(
+                iterator( oldRanges.iterator(), newRanges.iterator() ),
+                Spliterator.ORDERED | Spliterator.NONNULL ), false );
+    }
+
+    /**
+     * All changes from the old to the new version, for inputs that are read
+     * incrementally.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param oldRanges sorted non overlapping ranges
+     * @param newRanges sorted non overlapping ranges
+     * @return iterator over the deltas, in order of position
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Iterator<Delta<R>> iterator( Iterator<? extends R> oldRanges,
+                    Iterator<? extends R> newRanges ) {
+        return new Sweep<>( oldRanges, newRanges );
+    }
+
+    /**
+     * Diff two files of ranges written back to back with a codec, see
+     * {@link RangeCodec#writeAll(java.io.DataOutput, Iterator)}, without
+     * loading them.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param oldFile sorted non overlapping ranges
+     * @param newFile sorted non overlapping ranges
+     * @param codec of the files
+     * @param sink receiving the deltas in order of position
+     * @return the number of deltas
+     * @throws IOException when reading fails
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            long diff( Path oldFile, Path newFile, RangeCodec<R> codec,
+                    Consumer<? super Delta<R>> sink ) throws IOException {
+        try ( InputStream oldIn = Files.newInputStream( oldFile );
+                InputStream newIn = Files.newInputStream( newFile ) ) {
+            Iterator<Delta<R>> deltas = iterator( codec.reader( oldIn ), codec
+                    .reader( newIn ) );
+            long n = 0;
+            while ( deltas.hasNext() ) {
+                sink.accept( deltas.next() );
+                n++;
+            }
+            return n;
+        } catch ( UncheckedIOException ex ) {
+            throw ex.getCause();
+        }
+    }
+
+    private static final class Sweep<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            implements Iterator<Delta<R>> {
+
+        private final RangeSetAlgebra.Side<R, P, D> older;
+        private final RangeSetAlgebra.Side<R, P, D> newer;
+        // kind of the delta being built, null when old and new agree
+        private Kind open;
+        private P openStart;
+        private Delta<R> next;
+
+        Sweep( Iterator<? extends R> older, Iterator<? extends R> newer ) {
+            this.older = new RangeSetAlgebra.Side<>( older );
+            this.newer = new RangeSetAlgebra.Side<>( newer );
+        }
+
+        @Override
+        public boolean hasNext() {
+            if ( next == null ) {
+                next = compute();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Delta<R> next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            Delta<R> d = next;
+            next = null;
+            return d;
+        }
+
+        private Kind kind() {
+            if ( older.inside == newer.inside ) {
+                return null;
+            }
+            return newer.inside ? Kind.ADDED : Kind.REMOVED;
+        }
+
+        private Delta<R> compute() {
+            while ( true ) {
+                P xo = older.boundary();
+                P xn = newer.boundary();
+                if ( xo == null && xn == null ) {
+                    return null;
+                }
+                P x = xo == null ? xn : xn == null ? xo : Range.min( xo, xn );
+                R factory = older.current != null ? older.current
+                        : newer.current;
+                older.pass( x );
+                newer.pass( x );
+                Kind now = kind();
+                if ( now == open ) {
+                    continue;
+                }
+                // a removal can end where an addition starts, or vice versa
+                Delta<R> done = open == null ? null : new Delta<>( open, factory
+                        .between( openStart, x ) );
+                open = now;
+                openStart = x;
+                if ( done != null ) {
+                    return done;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Estimates of the memory taken by ranges, their points and the structures
+ * holding them, for {@link MemoryFootprint} implementations and for
+ * diagnosing collections of plain ranges.
+ *
+ * <p>
+ * The estimates assume a 64 bit JVM with compressed references: a 12 byte
+ * object header, 4 byte references, a 16 byte array header and sizes rounded
+ * up to 8 bytes. So an IntegerRange takes 24 bytes plus two Integers of 16
+ * bytes, except for the small Integers the JVM caches, and an InstantRange 24
+ * bytes plus two Instants of 24 bytes. Packed into a long[] as by a
+ * {@link LongRangeMapping}, a range takes 16 bytes.</p>
+ */
+public final class RangeFootprint {
+
+    /**
+     * Bytes of an object header.
+     */
+    public static final int OBJECT_HEADER = 12;
+
+    /**
+     * Bytes of an array header.
+     */
+    public static final int ARRAY_HEADER = 16;
+
+    /**
+     * Bytes of a reference.
+     */
+    public static final int REFERENCE = 4;
+
+    /**
+     * Bytes of an entry of a TreeMap or TreeSet: key, value, left, right,
+     * parent and colour.
+     */
+    public static final long TREE_ENTRY = objectBytes( 5, 1 );
+
+    /**
+     * Bytes of an entry of a HashMap or HashSet, plus its slot in the table
+     * at the default load factor.
+     */
+    public static final long HASH_ENTRY = objectBytes( 3, 4 ) + 2 * REFERENCE;
+
+    private RangeFootprint() {
+    }
+
+    /**
+     * Round up to the 8 byte object alignment.
+     *
+     * @param bytes unaligned
+     * @return aligned
+     */
+    public static long align( long bytes ) {
+        return ( bytes + 7 ) & ~7L;
+    }
+
+    /**
+     * Bytes of an object.
+     *
+     * @param references number of reference fields
+     * @param primitiveBytes bytes of the primitive fields
+     * @return the aligned size
+     */
+    public static long objectBytes( int references, int primitiveBytes ) {
+        return align( OBJECT_HEADER + (long) references * REFERENCE
+                + primitiveBytes );
+    }
+
+    /**
+     * Bytes of an array.
+     *
+     * @param elementBytes bytes per element, REFERENCE for object arrays
+     * @param length number of elements
+     * @return the aligned size
+     */
+    public static long arrayBytes( int elementBytes, long length ) {
+        return align( ARRAY_HEADER + elementBytes * length );
+    }
+
+    /**
+     * Bytes of an ArrayList or ArrayDeque with its backing array, assuming no
+     * spare capacity.
+     *
+     * @param size number of elements
+     * @return the size, without the elements
+     */
+    public static long listBytes( long size ) {
+        return objectBytes( 1, 8 ) + arrayBytes( REFERENCE, size );
+    }
+
+    /**
+     * Bytes of a point object, zero for values the JVM shares.
+     *
+     * @param point to estimate
+     * @return the size
+     */
+    public static long pointBytes( Object point ) {
+        if ( point instanceof Integer i ) {
+            // Integer.valueOf cache
+            return i >= -128 && i <= 127 ? 0 : objectBytes( 0, 4 );
+        }
+        if ( point instanceof Long || point instanceof Double ) {
+            return objectBytes( 0, 8 );
+        }
+        if ( point instanceof Instant || point instanceof Duration ) {
+            // long seconds, int nanos
+            return objectBytes( 0, 12 );
+        }
+        return objectBytes( 0, 8 );
+    }
+
+    /**
+     * Bytes of a range with its points.
+     *
+     * @param range to estimate
+     * @return the size
+     */
+    public static long rangeBytes( Range<?, ?, ?> range ) {
+        return objectBytes( 2, 0 ) + pointBytes( range.start() ) + pointBytes(
+                range.end() );
+    }
+
+    /**
+     * Bytes of ranges with their points.
+     *
+     * @param ranges to estimate
+     * @return the sum
+     */
+    public static long rangeBytes( Iterable<? extends Range<?, ?, ?>> ranges ) {
+        long sum = 0;
+        for ( Range<?, ?, ?> r : ranges ) {
+            sum += rangeBytes( r );
+        }
+        return sum;
+    }
+
+    /**
+     * Footprint of a collection of plain ranges, with the alternatives.
+     *
+     * @param elementCount number of ranges
+     * @param heapBytes the collection, the ranges and their points, counting
+     * shared objects once
+     * @param distinctPoints number of distinct point objects
+     * @param sharedPointBytes bytes saved by points that are shared between
+     * ranges
+     * @param packedBytes the ranges as start and end in a long[]
+     */
+    public record Estimate(long elementCount, long heapBytes,
+            long distinctPoints, long sharedPointBytes, long packedBytes)
+            implements MemoryFootprint {
+
+        @Override
+        public String toString() {
+            return String.format( "%d ranges: %d bytes (%.1f per range), "
+                    + "%d distinct points, %d bytes saved by sharing, "
+                    + "%d bytes packed", elementCount, heapBytes,
+                    bytesPerElement(), distinctPoints, sharedPointBytes,
+                    packedBytes );
+        }
+    }
+
+    /**
+     * Estimate the footprint of a collection of ranges, such as a list of
+     * IntegerRange or InstantRange records. Ranges and points referenced more
+     * than once are counted once. Lists with random access are taken to be
+     * array backed, other collections to take a hash or tree entry per
+     * element.
+     *
+     * @param ranges to estimate
+     * @return the estimate
+     */
+    public static Estimate of( Collection<? extends Range<?, ?, ?>> ranges ) {
+        Map<Object, Boolean> seen = new IdentityHashMap<>();
+        long bytes = ranges instanceof RandomAccess ? listBytes( ranges.size() )
+                : objectBytes( 2, 8 ) + ranges.size() * TREE_ENTRY;
+        long points = 0;
+        long shared = 0;
+        for ( Range<?, ?, ?> r : ranges ) {
+            if ( seen.put( r, Boolean.TRUE ) != null ) {
+                continue;
+            }
+            bytes += objectBytes( 2, 0 );
+            for ( Object p : new Object[]{ r.start(), r.end() } ) {
+                long b = pointBytes( p );
+                if ( seen.put( p, Boolean.TRUE ) == null ) {
+                    bytes += b;
+                    points++;
+                } else {
+                    shared += b;
+                }
+            }
+        }
+        return new Estimate( ranges.size(), bytes, points, shared, arrayBytes(
+                8, 2L * ranges.size() ) );
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.jristretto.ranges;
+
+/**
+ * Pair of ranges produced by joins, left from the first input, right from the
+ * second.
+ *
+ * @param <R> range type
+ * @param left range from the first input
+ * @param right range from the second input
+ */
+public record RangePair<R extends Range<R, ?, ?>>(R left, R right) {
+
+    @Override
+    public String toString() {
+        return "(" + left + ", " + right + ")";
+    }
+}
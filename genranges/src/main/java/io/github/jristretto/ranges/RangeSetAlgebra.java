@@ -0,0 +1,289 @@
+package io.github.jristretto.ranges;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Set operations between two sorted sequences of non overlapping ranges, like
+ * availability minus bookings.
+ *
+ * <p>
+ * Both inputs are walked once, in a merge over their boundary points, so every
+ * operation takes O(n+m) time and constant extra space. The output is produced
+ * lazily, range by range, and is itself sorted and coalesced: result ranges
+ * never meet or overlap. The result ranges are created with
+ * {@link Range#between(Comparable, Comparable) between} on an input range.</p>
+ *
+ * <p>
+ * Inputs must be sorted by start and must not overlap within themselves; ranges
+ * that meet are fine. The output of {@link RangeCoalescer} and the content of a
+ * {@link PersistentRangeSet} qualify. An input that violates this is reported
+ * with an {@link IllegalArgumentException} when the offending range is
+ * reached.</p>
+ */
+public final class RangeSetAlgebra {
+
+    private RangeSetAlgebra() {
+    }
+
+    /**
+     * The set operation, as a predicate on membership of a point in a and b.
+     */
+    public enum Operation {
+        /**
+         * Points in a or b.
+         */
+        UNION {
+            @Override
+            boolean test( boolean inA, boolean inB ) {
+                return inA || inB;
+            }
+        },
+        /**
+         * Points in a and b.
+         */
+        INTERSECTION {
+            @Override
+            boolean test( boolean inA, boolean inB ) {
+                return inA && inB;
+            }
+        },
+        /**
+         * Points in a but not in b.
+         */
+        DIFFERENCE {
+            @Override
+            boolean test( boolean inA, boolean inB ) {
+                return inA && !inB;
+            }
+        },
+        /**
+         * Points in exactly one of a and b.
+         */
+        SYMMETRIC_DIFFERENCE {
+            @Override
+            boolean test( boolean inA, boolean inB ) {
+                return inA != inB;
+            }
+        };
+
+        abstract boolean test( boolean inA, boolean inB );
+    }
+
+    /**
+     * Union of a and b.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param a sorted non overlapping ranges
+     * @param b sorted non overlapping ranges
+     * @return the union, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<R> union( Iterable<? extends R> a, Iterable<? extends R> b ) {
+        return apply( Operation.UNION, a, b );
+    }
+
+    /**
+     * Intersection of a and b.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param a sorted non overlapping ranges
+     * @param b sorted non overlapping ranges
+     * @return the intersection, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<R> intersection( Iterable<? extends R> a,
+                    Iterable<? extends R> b ) {
+        return apply( Operation.INTERSECTION, a, b );
+    }
+
+    /**
+     * Points of a that are not in b.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param a sorted non overlapping ranges
+     * @param b sorted non overlapping ranges
+     * @return the difference, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<R> difference( Iterable<? extends R> a,
+                    Iterable<? extends R> b ) {
+        return apply( Operation.DIFFERENCE, a, b );
+    }
+
+    /**
+     * Points in exactly one of a and b.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param a sorted non overlapping ranges
+     * @param b sorted non overlapping ranges
+     * @return the symmetric difference, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<R> symmetricDifference( Iterable<? extends R> a,
+                    Iterable<? extends R> b ) {
+        return apply( Operation.SYMMETRIC_DIFFERENCE, a, b );
+    }
+
+    /**
+     * Apply an operation to two sequences.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param op operation
+     * @param a sorted non overlapping ranges
+     * @param b sorted non overlapping ranges
+     * @return the result, lazily computed
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Stream<R> apply( Operation op, Iterable<? extends R> a,
+                    Iterable<? extends R> b ) {
+        return StreamSupport.stream( Spliterators.spliteratorUnknownSize(
+                iterator( op, a.iterator(), b.iterator() ), Spliterator.ORDERED
+                | Spliterator.NONNULL ), false );
+    }
+
+    /**
+     * Apply an operation to two iterators, for inputs that are read
+     * incrementally, e.g. from files.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param op operation
+     * @param a sorted non overlapping ranges
+     * @param b sorted non overlapping ranges
+     * @return iterator over the result
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Iterator<R> iterator( Operation op, Iterator<? extends R> a,
+                    Iterator<? extends R> b ) {
+        return new Sweep<>( Objects.requireNonNull( op ), a, b );
+    }
+
+    /**
+     * One input of the sweep: the current range and whether the sweep is
+     * inside it. Also used by {@link RangeDiff}.
+     */
+    static final class Side<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>> {
+
+        private final Iterator<? extends R> source;
+        R current;
+        boolean inside;
+
+        Side( Iterator<? extends R> source ) {
+            this.source = source;
+            advance( null );
+        }
+
+        private void advance( P previousEnd ) {
+            current = null;
+            while ( source.hasNext() ) {
+                R r = source.next();
+                if ( previousEnd != null && r.start().compareTo( previousEnd ) < 0 ) {
+                    throw new IllegalArgumentException( "range " + r
+                            + " starts before the end " + previousEnd
+                            + " of its predecessor" );
+                }
+                if ( r.start().compareTo( r.end() ) < 0 ) {
+                    current = r;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Next boundary of this side, or null when exhausted.
+         */
+        P boundary() {
+            if ( current == null ) {
+                return null;
+            }
+            return inside ? current.end() : current.start();
+        }
+
+        /**
+         * Step over all boundaries at x.
+         */
+        void pass( P x ) {
+            while ( current != null && boundary().compareTo( x ) == 0 ) {
+                if ( inside ) {
+                    inside = false;
+                    advance( current.end() );
+                } else {
+                    inside = true;
+                }
+            }
+        }
+    }
+
+    private static final class Sweep<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            implements Iterator<R> {
+
+        private final Operation op;
+        private final Side<R, P, D> a;
+        private final Side<R, P, D> b;
+        private P openStart;
+        private R next;
+
+        Sweep( Operation op, Iterator<? extends R> a, Iterator<? extends R> b ) {
+            this.op = op;
+            this.a = new Side<>( a );
+            this.b = new Side<>( b );
+        }
+
+        @Override
+        public boolean hasNext() {
+            if ( next == null ) {
+                next = compute();
+            }
+            return next != null;
+        }
+
+        @Override
+        public R next() {
+            if ( !hasNext() ) {
+                throw new NoSuchElementException();
+            }
+            R r = next;
+            next = null;
+            return r;
+        }
+
+        private R compute() {
+            while ( true ) {
+                P xa = a.boundary();
+                P xb = b.boundary();
+                if ( xa == null && xb == null ) {
+                    return null;
+                }
+                P x = xa == null ? xb : xb == null ? xa : Range.min( xa, xb );
+                // any range at hand can create the result through between
+                R factory = a.current != null ? a.current : b.current;
+                boolean was = op.test( a.inside, b.inside );
+                a.pass( x );
+                b.pass( x );
+                boolean now = op.test( a.inside, b.inside );
+                if ( !was && now ) {
+                    openStart = x;
+                } else if ( was && !now ) {
+                    return factory.between( openStart, x );
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.jristretto.ranges;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BinaryOperator;
+
+/**
+ * State for collecting count, total length, minimum start and maximum end of
+ * ranges in one pass, in the manner of
+ * {@link java.util.IntSummaryStatistics}. Lengths are measured with
+ * {@link Range#length()} and added with the given operator, as the distance
+ * type has no addition of its own.
+ *
+ * <p>
+ * Instances are not thread safe; for parallel streams use
+ * {@link RangeCollectors#summarizing(BinaryOperator)}, which gives every
+ * thread its own instance and {@link #combine(RangeSummaryStatistics)
+ * combines} them.</p>
+ *
+ * @param <R> range type
+ * @param <P> demarcation point type
+ * @param <D> distance type
+ */
+public final class RangeSummaryStatistics<R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>> {
+
+    private final BinaryOperator<D> plus;
+    private long count;
+    private D totalLength;
+    private P minStart;
+    private P maxEnd;
+
+    /**
+     * Create empty statistics.
+     *
+     * @param plus addition of distances, e.g. Integer::sum or Duration::plus
+     */
+    public RangeSummaryStatistics( BinaryOperator<D> plus ) {
+        this.plus = Objects.requireNonNull( plus );
+    }
+
+    /**
+     * Record a range.
+     *
+     * @param range to record
+     */
+    public void accept( R range ) {
+        D length = range.length();
+        totalLength = count == 0 ? length : plus.apply( totalLength, length );
+        minStart = count == 0 ? range.start() : Range.min( minStart, range
+                .start() );
+        maxEnd = count == 0 ? range.end() : Range.max( maxEnd, range.end() );
+        count++;
+    }
+
+    /**
+     * Add the state of other statistics to this one.
+     *
+     * @param other statistics
+     * @return this
+     */
+    public RangeSummaryStatistics<R, P, D> combine(
+            RangeSummaryStatistics<R, P, D> other ) {
+        if ( other.count == 0 ) {
+            return this;
+        }
+        if ( count == 0 ) {
+            totalLength = other.totalLength;
+            minStart = other.minStart;
+            maxEnd = other.maxEnd;
+        } else {
+            totalLength = plus.apply( totalLength, other.totalLength );
+            minStart = Range.min( minStart, other.minStart );
+            maxEnd = Range.max( maxEnd, other.maxEnd );
+        }
+        count += other.count;
+        return this;
+    }
+
+    /**
+     * Number of ranges recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Sum of the lengths, counting overlapping parts more than once.
+     *
+     * @return the total length, empty when nothing was recorded
+     */
+    public Optional<D> getTotalLength() {
+        return Optional.ofNullable( totalLength );
+    }
+
+    /**
+     * Smallest start.
+     *
+     * @return the minimum start, empty when nothing was recorded
+     */
+    public Optional<P> getMinStart() {
+        return Optional.ofNullable( minStart );
+    }
+
+    /**
+     * Largest end.
+     *
+     * @return the maximum end, empty when nothing was recorded
+     */
+    public Optional<P> getMaxEnd() {
+        return Optional.ofNullable( maxEnd );
+    }
+
+    @Override
+    public String toString() {
+        return "RangeSummaryStatistics{count=" + count + ", totalLength="
+                + totalLength + ", minStart=" + minStart + ", maxEnd=" + maxEnd
+                + "}";
+    }
+}
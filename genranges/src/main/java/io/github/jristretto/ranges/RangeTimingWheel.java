@@ -0,0 +1,336 @@
+package io.github.jristretto.ranges;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Fires a callback at the start and at the end of every scheduled range,
+ * for millions of ranges, without a scheduled task per range.
+ *
+ * <p>
+ * This is a hierarchical timing wheel. Time is cut into ticks. Level 0 has a
+ * slot per tick for the next {@value #SLOTS} ticks, level k a slot per
+ * {@value #SLOTS}<sup>k</sup> ticks. A deadline goes into the lowest level
+ * that reaches it, and is moved down a level whenever the wheel below comes
+ * round to its slot, until it fires from level 0. Slots are doubly linked
+ * lists, so scheduling and cancelling take O(1) and a tick costs O(1) plus the
+ * deadlines that fire or move.</p>
+ *
+ * <p>
+ * The wheel does not run by itself: {@link #advance()} reads the clock and
+ * fires everything due, and is called periodically by one driver, e.g.
+ * {@link #start(ScheduledExecutorService)}. With a controllable clock and a
+ * direct executor, tests can advance the wheel deterministically. A deadline
+ * fires at the first tick at or after it, so at most one tick late, plus the
+ * delay of the driver. Deadlines already passed fire on the next advance.</p>
+ *
+ * <p>
+ * Callbacks run on the given executor, outside the wheel's lock. The wheel is
+ * thread safe.</p>
+ */
+public final class RangeTimingWheel implements MemoryFootprint {
+
+    /**
+     * Slots per level.
+     */
+    public static final int SLOTS = 64;
+
+    private static final int BITS = 6;
+    private static final int MASK = SLOTS - 1;
+    // enough levels for any non negative long tick
+    private static final int LEVELS = ( Long.SIZE + BITS - 1 ) / BITS;
+
+    private final Clock clock;
+    private final Duration tick;
+    private final Executor executor;
+    private final Consumer<? super InstantRange> onStart;
+    private final Consumer<? super InstantRange> onEnd;
+    private final Instant origin;
+    private final Timer[][] wheels = new Timer[ LEVELS ][ SLOTS ];
+    private long currentTick;
+    private int pending;
+
+    /**
+     * Create a wheel.
+     *
+     * @param clock time source, read by advance
+     * @param tick resolution, positive
+     * @param executor running the callbacks
+     * @param onStart called when a range starts
+     * @param onEnd called when a range ends
+     */
+    public RangeTimingWheel( Clock clock, Duration tick, Executor executor,
+            Consumer<? super InstantRange> onStart,
+            Consumer<? super InstantRange> onEnd ) {
+        if ( tick.isNegative() || tick.isZero() ) {
+            throw new IllegalArgumentException( "tick " + tick
+                    + " is not positive" );
+        }
+        this.clock = Objects.requireNonNull( clock );
+        this.tick = tick;
+        this.executor = Objects.requireNonNull( executor );
+        this.onStart = Objects.requireNonNull( onStart );
+        this.onEnd = Objects.requireNonNull( onEnd );
+        this.origin = clock.instant();
+        for ( Timer[] wheel : wheels ) {
+            for ( int s = 0; s < SLOTS; s++ ) {
+                wheel[ s ] = Timer.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Schedule the start and end callbacks of a range.
+     *
+     * @param range to schedule
+     * @return handle to cancel the callbacks that have not fired yet
+     */
+    public synchronized Handle schedule( InstantRange range ) {
+        Timer start = new Timer( range, true, ticksUntil( range.start() ) );
+        Timer end = new Timer( range, false, ticksUntil( range.end() ) );
+        insert( start, currentTick + 1 );
+        insert( end, currentTick + 1 );
+        pending += 2;
+        return new Handle( start, end );
+    }
+
+    /**
+     * Fire all callbacks due at the current time of the clock.
+     *
+     * @return number of callbacks dispatched
+     */
+    public int advance() {
+        List<Timer> due = new ArrayList<>();
+        synchronized ( this ) {
+            long now = ticksElapsed( clock.instant() );
+            while ( currentTick < now ) {
+                if ( pending == due.size() ) {
+                    // nothing left to fire, skip the idle ticks
+                    currentTick = now;
+                    break;
+                }
+                currentTick++;
+                cascade();
+                Timer slot = wheels[ 0 ][ (int) ( currentTick & MASK ) ];
+                while ( slot.next != slot ) {
+                    Timer t = slot.next;
+                    t.unlink();
+                    due.add( t );
+                }
+            }
+            pending -= due.size();
+        }
+        for ( Timer t : due ) {
+            Consumer<? super InstantRange> callback = t.start ? onStart : onEnd;
+            executor.execute( () -> callback.accept( t.range ) );
+        }
+        return due.size();
+    }
+
+    /**
+     * Drive the wheel by calling {@link #advance()} once per tick.
+     *
+     * @param scheduler to run the driver on
+     * @return the driver task, cancel it to stop
+     */
+    public ScheduledFuture<?> start( ScheduledExecutorService scheduler ) {
+        long nanos = tick.toNanos();
+        return scheduler.scheduleAtFixedRate( this::advance, nanos, nanos,
+                TimeUnit.NANOSECONDS );
+    }
+
+    /**
+     * Number of callbacks scheduled and not yet fired or cancelled.
+     *
+     * @return the count
+     */
+    public synchronized int pending() {
+        return pending;
+    }
+
+    /**
+     * {@inheritDoc} Every range counts once, with its end timer, which stays
+     * after its start timer has fired.
+     */
+    @Override
+    public synchronized long heapBytes() {
+        long timer = RangeFootprint.objectBytes( 3, 9 );
+        long bytes = RangeFootprint.objectBytes( 7, 12 ) + RangeFootprint
+                .arrayBytes( RangeFootprint.REFERENCE, LEVELS ) + LEVELS
+                * ( RangeFootprint.arrayBytes( RangeFootprint.REFERENCE, SLOTS )
+                + SLOTS * timer ) + pending * timer;
+        for ( Timer[] wheel : wheels ) {
+            for ( Timer sentinel : wheel ) {
+                for ( Timer t = sentinel.next; t != sentinel; t = t.next ) {
+                    if ( !t.start ) {
+                        bytes += RangeFootprint.rangeBytes( t.range );
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * {@inheritDoc} Counts the pending callbacks.
+     */
+    @Override
+    public long elementCount() {
+        return pending();
+    }
+
+    /**
+     * Move the timers of every higher level slot that comes round at the
+     * current tick one or more levels down, highest level first, so that
+     * timers moved to a level that comes round too move on. Timers due at the
+     * current tick land in the level 0 slot that fires right after.
+     */
+    private void cascade() {
+        int top = 0;
+        while ( top + 1 < LEVELS && ( currentTick & ( ( 1L << ( BITS
+                * ( top + 1 ) ) ) - 1 ) ) == 0 ) {
+            top++;
+        }
+        for ( int level = top; level >= 1; level-- ) {
+            Timer slot = wheels[ level ][ (int) ( ( currentTick >>> ( BITS
+                    * level ) ) & MASK ) ];
+            while ( slot.next != slot ) {
+                Timer t = slot.next;
+                t.unlink();
+                insert( t, currentTick );
+            }
+        }
+    }
+
+    /**
+     * Put a timer in the slot of its deadline, or of the earliest tick that
+     * still fires if the deadline is before it.
+     */
+    private void insert( Timer t, long earliest ) {
+        long deadline = Math.max( t.deadline, earliest );
+        long delta = deadline - currentTick;
+        int level = 0;
+        while ( level + 1 < LEVELS && delta >= 1L << ( BITS * ( level + 1 ) ) ) {
+            level++;
+        }
+        wheels[ level ][ (int) ( ( deadline >>> ( BITS * level ) ) & MASK ) ]
+                .append( t );
+    }
+
+    private long ticksElapsed( Instant now ) {
+        if ( !now.isAfter( origin ) ) {
+            return 0;
+        }
+        try {
+            return Duration.between( origin, now ).dividedBy( tick );
+        } catch ( ArithmeticException tooFar ) {
+            return Long.MAX_VALUE >>> 1;
+        }
+    }
+
+    /**
+     * First tick at or after the instant.
+     */
+    private long ticksUntil( Instant at ) {
+        if ( !at.isAfter( origin ) ) {
+            return 0;
+        }
+        try {
+            Duration d = Duration.between( origin, at );
+            long ticks = d.dividedBy( tick );
+            return tick.multipliedBy( ticks ).equals( d ) ? ticks : ticks + 1;
+        } catch ( ArithmeticException tooFar ) {
+            return Long.MAX_VALUE >>> 1;
+        }
+    }
+
+    /**
+     * The callbacks of one scheduled range.
+     */
+    public final class Handle {
+
+        private final Timer start;
+        private final Timer end;
+
+        private Handle( Timer start, Timer end ) {
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * The scheduled range.
+         *
+         * @return the range
+         */
+        public InstantRange range() {
+            return start.range;
+        }
+
+        /**
+         * Cancel the callbacks that have not fired yet.
+         *
+         * @return true if a callback was cancelled
+         */
+        public boolean cancel() {
+            synchronized ( RangeTimingWheel.this ) {
+                boolean cancelled = false;
+                for ( Timer t : new Timer[]{ start, end } ) {
+                    if ( t.next != null ) {
+                        t.unlink();
+                        pending--;
+                        cancelled = true;
+                    }
+                }
+                return cancelled;
+            }
+        }
+    }
+
+    /**
+     * Deadline in a slot list. A timer that is in no list has null links.
+     */
+    private static final class Timer {
+
+        final InstantRange range;
+        final boolean start;
+        final long deadline;
+        Timer prev;
+        Timer next;
+
+        Timer( InstantRange range, boolean start, long deadline ) {
+            this.range = range;
+            this.start = start;
+            this.deadline = deadline;
+        }
+
+        static Timer sentinel() {
+            Timer s = new Timer( null, false, 0 );
+            s.prev = s;
+            s.next = s;
+            return s;
+        }
+
+        void append( Timer t ) {
+            t.prev = prev;
+            t.next = this;
+            prev.next = t;
+            prev = t;
+        }
+
+        void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}
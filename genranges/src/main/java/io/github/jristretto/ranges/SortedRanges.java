@@ -0,0 +1,343 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Binary search probes against a sorted list of disjoint ranges, like
+ * validating candidates against existing bookings.
+ *
+ * <p>
+ * The list must be sorted by start, and its ranges must be non empty and not
+ * overlap each other; meeting is fine. Then the ends are sorted too, and every
+ * probe is a binary search in O(log n) that allocates nothing. Use a
+ * {@link java.util.RandomAccess} list, e.g. from {@link Arrays#asList}. The
+ * content of a {@link PersistentRangeSet} or the output of
+ * {@link RangeCoalescer} qualify once copied into such a list.</p>
+ *
+ * <p>
+ * The batched variants take queries sorted by start and gallop forward from
+ * the position of the previous query, so m queries cost O(m log(n/m)) rather
+ * than O(m log n). For counting overlaps among ranges that may overlap each
+ * other, see {@link Endpoints}.</p>
+ */
+public final class SortedRanges {
+
+    private SortedRanges() {
+    }
+
+    /**
+     * Does any range overlap the query.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param query range
+     * @return true on overlap
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            boolean overlapsAny( List<? extends R> sorted, R query ) {
+        return firstOverlap( sorted, query ) >= 0;
+    }
+
+    /**
+     * Index of the first range that overlaps the query.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param query range
+     * @return the index, or -1 when nothing overlaps
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int firstOverlap( List<? extends R> sorted, R query ) {
+        return overlapAt( sorted, query, firstEndAfter( sorted, 0, sorted
+                .size(), query.start() ) );
+    }
+
+    /**
+     * Number of ranges that overlap the query.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param query range
+     * @return the count
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int countOverlapping( List<? extends R> sorted, R query ) {
+        if ( query.start().compareTo( query.end() ) >= 0 ) {
+            return 0;
+        }
+        int from = firstEndAfter( sorted, 0, sorted.size(), query.start() );
+        return firstStartAtOrAfter( sorted, from, sorted.size(), query.end() )
+                - from;
+    }
+
+    /**
+     * Does any range contain the point.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param point to test
+     * @return true if contained
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            boolean containsPoint( List<? extends R> sorted, P point ) {
+        return indexContaining( sorted, point ) >= 0;
+    }
+
+    /**
+     * Index of the range that contains the point.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param point to test
+     * @return the index, or -1 when no range contains it
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int indexContaining( List<? extends R> sorted, P point ) {
+        int i = firstEndAfter( sorted, 0, sorted.size(), point );
+        return i < sorted.size() && sorted.get( i ).contains( point ) ? i : -1;
+    }
+
+    /**
+     * First overlap for every query of a batch.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param queries sorted by start
+     * @return per query the index of the first overlapping range, or -1
+     * @throws IllegalArgumentException when the queries are not sorted
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int[] firstOverlaps( List<? extends R> sorted,
+                    List<? extends R> queries ) {
+        int[] result = new int[ queries.size() ];
+        int pos = 0;
+        P previous = null;
+        for ( int q = 0; q < queries.size(); q++ ) {
+            R query = queries.get( q );
+            if ( previous != null && query.start().compareTo( previous ) < 0 ) {
+                throw new IllegalArgumentException( "query " + query + " at " + q
+                        + " is out of order" );
+            }
+            previous = query.start();
+            pos = gallopEndAfter( sorted, pos, query.start() );
+            result[ q ] = overlapAt( sorted, query, pos );
+        }
+        return result;
+    }
+
+    /**
+     * Overlap test for every query of a batch.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param queries sorted by start
+     * @return per query whether anything overlaps it
+     * @throws IllegalArgumentException when the queries are not sorted
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            boolean[] overlapsAny( List<? extends R> sorted,
+                    List<? extends R> queries ) {
+        int[] first = firstOverlaps( sorted, queries );
+        boolean[] result = new boolean[ first.length ];
+        for ( int i = 0; i < first.length; i++ ) {
+            result[ i ] = first[ i ] >= 0;
+        }
+        return result;
+    }
+
+    /**
+     * Point containment for every point of a sorted batch.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param sorted disjoint ranges
+     * @param points in ascending order
+     * @return per point whether a range contains it
+     * @throws IllegalArgumentException when the points are not sorted
+     */
+    public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            boolean[] containsPoints( List<? extends R> sorted,
+                    List<? extends P> points ) {
+        boolean[] result = new boolean[ points.size() ];
+        int pos = 0;
+        for ( int q = 0; q < points.size(); q++ ) {
+            P p = points.get( q );
+            if ( q > 0 && p.compareTo( points.get( q - 1 ) ) < 0 ) {
+                throw new IllegalArgumentException( "point " + p + " at " + q
+                        + " is out of order" );
+            }
+            pos = gallopEndAfter( sorted, pos, p );
+            result[ q ] = pos < sorted.size() && sorted.get( pos ).contains( p );
+        }
+        return result;
+    }
+
+    /**
+     * Sorted start and end arrays of ranges that may overlap each other, for
+     * counting. A non empty range [s,e) overlaps a non empty query [a,b)
+     * exactly when s &lt; b and not e &le; a, so the count is the number of
+     * starts below b minus the number of ends at or below a: two binary
+     * searches. Empty ranges are left out, as they overlap nothing.
+     *
+     * @param <P> demarcation point type
+     */
+    public static final class Endpoints<P extends Comparable<? super P>>
+            implements MemoryFootprint {
+
+        private final Object[] starts;
+        private final Object[] ends;
+
+        private Endpoints( Object[] starts, Object[] ends ) {
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        /**
+         * Collect and sort the endpoints.
+         *
+         * @param <R> range type
+         * @param <P> demarcation point type
+         * @param ranges in any order
+         * @return the endpoint arrays
+         */
+        public static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+                Endpoints<P> of( Collection<? extends R> ranges ) {
+            List<P> s = new ArrayList<>( ranges.size() );
+            List<P> e = new ArrayList<>( ranges.size() );
+            for ( R r : ranges ) {
+                if ( r.start().compareTo( r.end() ) < 0 ) {
+                    s.add( r.start() );
+                    e.add( r.end() );
+                }
+            }
+            Object[] starts = s.toArray();
+            Object[] ends = e.toArray();
+            Arrays.sort( starts );
+            Arrays.sort( ends );
+            return new Endpoints<>( starts, ends );
+        }
+
+        /**
+         * Number of ranges that overlap the query.
+         *
+         * @param query range
+         * @return the count
+         */
+        public int countOverlapping( Range<?, P, ?> query ) {
+            if ( query.start().compareTo( query.end() ) >= 0 ) {
+                return 0;
+            }
+            return countBelow( starts, query.end(), false ) - countBelow( ends,
+                    query.start(), true );
+        }
+
+        /**
+         * Number of ranges that contain the point.
+         *
+         * @param point to test
+         * @return the count
+         */
+        public int countContaining( P point ) {
+            return countBelow( starts, point, true ) - countBelow( ends, point,
+                    true );
+        }
+
+        @Override
+        public long heapBytes() {
+            long bytes = RangeFootprint.objectBytes( 2, 0 ) + 2 * RangeFootprint
+                    .arrayBytes( RangeFootprint.REFERENCE, starts.length );
+            for ( int i = 0; i < starts.length; i++ ) {
+                bytes += RangeFootprint.pointBytes( starts[ i ] ) + RangeFootprint
+                        .pointBytes( ends[ i ] );
+            }
+            return bytes;
+        }
+
+        /**
+         * {@inheritDoc} Counts the non empty ranges.
+         */
+        @Override
+        public long elementCount() {
+            return starts.length;
+        }
+
+        /**
+         * Number of values below p, or at or below p when inclusive.
+         */
+        @SuppressWarnings( "unchecked" )
+        private int countBelow( Object[] sortedValues, P p, boolean inclusive ) {
+            int lo = 0;
+            int hi = sortedValues.length;
+            while ( lo < hi ) {
+                int mid = ( lo + hi ) >>> 1;
+                int c = ( (P) sortedValues[ mid ] ).compareTo( p );
+                if ( c < 0 || ( inclusive && c == 0 ) ) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int overlapAt( List<? extends R> sorted, R query, int i ) {
+        // the first range ending after the query start is the only candidate
+        return i < sorted.size() && sorted.get( i ).overlaps( query ) ? i : -1;
+    }
+
+    private static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int firstEndAfter( List<? extends R> sorted, int lo, int hi, P p ) {
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( sorted.get( mid ).end().compareTo( p ) <= 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int firstStartAtOrAfter( List<? extends R> sorted, int lo, int hi,
+                    P p ) {
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( sorted.get( mid ).start().compareTo( p ) < 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First index at or after from with an end after p, found by doubling the
+     * step and then a binary search.
+     */
+    private static <R extends Range<R, P, ?>, P extends Comparable<? super P>>
+            int gallopEndAfter( List<? extends R> sorted, int from, P p ) {
+        int n = sorted.size();
+        int step = 1;
+        int hi = from;
+        while ( hi < n && sorted.get( hi ).end().compareTo( p ) <= 0 ) {
+            from = hi + 1;
+            hi = from + step;
+            step <<= 1;
+        }
+        return firstEndAfter( sorted, from, Math.min( hi, n ), p );
+    }
+}
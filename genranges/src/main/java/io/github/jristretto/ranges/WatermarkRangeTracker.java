@@ -0,0 +1,324 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+
+/**
+ * The set of active ranges in an event time stream. A range is active until
+ * the watermark reaches its end; {@link #advanceWatermark(Instant)} then
+ * emits it as expired.
+ *
+ * <p>
+ * Ranges may arrive in any order. A range that arrives with an end at or
+ * before the watermark is late. When it ends less than the allowed lateness
+ * before the watermark it is accepted and emitted with the next advance,
+ * otherwise it is dropped. Memory is bounded by a capacity: a range that would
+ * exceed it is dropped too. Both kinds of drops are counted.</p>
+ *
+ * <p>
+ * The active ranges are held twice: in order of end for expiry, and in a treap
+ * ordered by start and augmented with the maximum end per subtree for overlap
+ * queries. Insert and expiry per range take O(log n), a query O(log n + k),
+ * all expected. The tracker is not thread safe.</p>
+ */
+public final class WatermarkRangeTracker implements MemoryFootprint {
+
+    private final Duration allowedLateness;
+    private final int capacity;
+    private final TreeSet<Node> byEnd = new TreeSet<>( Comparator.<Node, Instant>comparing(
+            n -> n.range.end() ).thenComparingLong( n -> n.seq ) );
+    private final List<InstantRange> late = new ArrayList<>();
+    private final SplittableRandom priorities = new SplittableRandom( 38 );
+    private Node root;
+    private Instant watermark = Instant.MIN;
+    private long nextSeq;
+    private long lateAccepted;
+    private long droppedLate;
+    private long droppedOverCapacity;
+
+    /**
+     * Create a tracker.
+     *
+     * @param allowedLateness how far behind the watermark a range may end
+     * and still be accepted
+     * @param capacity maximum number of ranges held, active and late
+     */
+    public WatermarkRangeTracker( Duration allowedLateness, int capacity ) {
+        if ( allowedLateness.isNegative() || capacity < 1 ) {
+            throw new IllegalArgumentException( "lateness " + allowedLateness
+                    + " must not be negative and capacity " + capacity
+                    + " must be positive" );
+        }
+        this.allowedLateness = allowedLateness;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Add a range.
+     *
+     * @param range to track
+     * @return false if the range was dropped, for being too late or for lack
+     * of capacity
+     */
+    public boolean add( InstantRange range ) {
+        Objects.requireNonNull( range );
+        boolean isLate = range.end().compareTo( watermark ) <= 0;
+        if ( isLate && !range.end().isAfter( lateLimit() ) ) {
+            droppedLate++;
+            return false;
+        }
+        if ( size() >= capacity ) {
+            droppedOverCapacity++;
+            return false;
+        }
+        if ( isLate ) {
+            lateAccepted++;
+            late.add( range );
+            return true;
+        }
+        Node n = new Node( range, nextSeq++, priorities.nextInt() );
+        byEnd.add( n );
+        root = insert( root, n );
+        return true;
+    }
+
+    private Instant lateLimit() {
+        // Instant.MIN minus anything is out of range
+        return watermark.equals( Instant.MIN ) ? watermark : watermark.minus(
+                allowedLateness );
+    }
+
+    /**
+     * Advance the watermark and emit the ranges that ended at or before it,
+     * together with late ranges accepted since the previous advance. A
+     * watermark that does not advance only emits the late ranges.
+     *
+     * @param newWatermark event time up to which the stream is complete
+     * @return the expired ranges, in order of end
+     */
+    public List<InstantRange> advanceWatermark( Instant newWatermark ) {
+        if ( newWatermark.isAfter( watermark ) ) {
+            watermark = newWatermark;
+        }
+        List<InstantRange> expired = new ArrayList<>( late );
+        late.clear();
+        while ( !byEnd.isEmpty() && !byEnd.first().range.end().isAfter(
+                watermark ) ) {
+            Node n = byEnd.pollFirst();
+            root = erase( root, n );
+            expired.add( n.range );
+        }
+        expired.sort( Comparator.comparing( InstantRange::end ) );
+        return expired;
+    }
+
+    /**
+     * Current watermark, Instant.MIN before the first advance.
+     *
+     * @return the watermark
+     */
+    public Instant watermark() {
+        return watermark;
+    }
+
+    /**
+     * Number of ranges held, active and late.
+     *
+     * @return the size
+     */
+    public int size() {
+        return byEnd.size() + late.size();
+    }
+
+    @Override
+    public long heapBytes() {
+        long bytes = RangeFootprint.objectBytes( 7, 36 ) + RangeFootprint
+                .objectBytes( 3, 8 ) + RangeFootprint.objectBytes( 0, 16 )
+                + RangeFootprint.listBytes( late.size() ) + RangeFootprint
+                .rangeBytes( late );
+        for ( Node n : byEnd ) {
+            bytes += RangeFootprint.objectBytes( 4, 12 ) + RangeFootprint.TREE_ENTRY
+                    + RangeFootprint.rangeBytes( n.range );
+        }
+        return bytes;
+    }
+
+    @Override
+    public long elementCount() {
+        return size();
+    }
+
+    /**
+     * Active ranges containing an instant.
+     *
+     * @param t instant
+     * @return the ranges, in order of start
+     */
+    public List<InstantRange> activeAt( Instant t ) {
+        return overlapping( InstantRange.of( t, t.plusNanos( 1 ) ) );
+    }
+
+    /**
+     * Active ranges overlapping a window.
+     *
+     * @param window to test
+     * @return the ranges, in order of start
+     */
+    public List<InstantRange> overlapping( InstantRange window ) {
+        List<InstantRange> out = new ArrayList<>();
+        if ( window.start().isBefore( window.end() ) ) {
+            collect( root, window, out );
+        }
+        return out;
+    }
+
+    /**
+     * Number of late ranges accepted within the allowed lateness.
+     *
+     * @return the count
+     */
+    public long lateAcceptedCount() {
+        return lateAccepted;
+    }
+
+    /**
+     * Number of ranges dropped for ending too far behind the watermark.
+     *
+     * @return the count
+     */
+    public long droppedLateCount() {
+        return droppedLate;
+    }
+
+    /**
+     * Number of ranges dropped because the tracker was full.
+     *
+     * @return the count
+     */
+    public long droppedOverCapacityCount() {
+        return droppedOverCapacity;
+    }
+
+    private static void collect( Node t, InstantRange w,
+            List<InstantRange> out ) {
+        if ( t == null || !t.maxEnd.isAfter( w.start() ) ) {
+            return;
+        }
+        collect( t.left, w, out );
+        if ( t.range.start().isBefore( w.end() ) ) {
+            // an empty range overlaps nothing, even inside the window
+            if ( t.range.end().isAfter( w.start() ) && t.range.start()
+                    .isBefore( t.range.end() ) ) {
+                out.add( t.range );
+            }
+            collect( t.right, w, out );
+        }
+    }
+
+    private static final class Node {
+
+        final InstantRange range;
+        final long seq;
+        final int priority;
+        Node left;
+        Node right;
+        Instant maxEnd;
+
+        Node( InstantRange range, long seq, int priority ) {
+            this.range = range;
+            this.seq = seq;
+            this.priority = priority;
+            this.maxEnd = range.end();
+        }
+
+        int compareTo( Node o ) {
+            int c = range.start().compareTo( o.range.start() );
+            if ( c == 0 ) {
+                c = range.end().compareTo( o.range.end() );
+            }
+            return c != 0 ? c : Long.compare( seq, o.seq );
+        }
+
+        Node fix() {
+            maxEnd = range.end();
+            if ( left != null && left.maxEnd.isAfter( maxEnd ) ) {
+                maxEnd = left.maxEnd;
+            }
+            if ( right != null && right.maxEnd.isAfter( maxEnd ) ) {
+                maxEnd = right.maxEnd;
+            }
+            return this;
+        }
+    }
+
+    private static Node insert( Node t, Node n ) {
+        if ( t == null ) {
+            return n;
+        }
+        if ( n.priority > t.priority ) {
+            Node[] parts = split( t, n );
+            n.left = parts[ 0 ];
+            n.right = parts[ 1 ];
+            return n.fix();
+        }
+        if ( n.compareTo( t ) < 0 ) {
+            t.left = insert( t.left, n );
+        } else {
+            t.right = insert( t.right, n );
+        }
+        return t.fix();
+    }
+
+    /**
+     * Split t into the nodes before key and the nodes after it.
+     */
+    private static Node[] split( Node t, Node key ) {
+        if ( t == null ) {
+            return new Node[ 2 ];
+        }
+        if ( t.compareTo( key ) < 0 ) {
+            Node[] parts = split( t.right, key );
+            t.right = parts[ 0 ];
+            parts[ 0 ] = t.fix();
+            return parts;
+        }
+        Node[] parts = split( t.left, key );
+        t.left = parts[ 1 ];
+        parts[ 1 ] = t.fix();
+        return parts;
+    }
+
+    private static Node erase( Node t, Node n ) {
+        int c = n.compareTo( t );
+        if ( c == 0 ) {
+            return merge( t.left, t.right );
+        }
+        if ( c < 0 ) {
+            t.left = erase( t.left, n );
+        } else {
+            t.right = erase( t.right, n );
+        }
+        return t.fix();
+    }
+
+    private static Node merge( Node a, Node b ) {
+        if ( a == null ) {
+            return b;
+        }
+        if ( b == null ) {
+            return a;
+        }
+        if ( a.priority > b.priority ) {
+            a.right = merge( a.right, b );
+            return a.fix();
+        }
+        b.left = merge( a, b.left );
+        return b.fix();
+    }
+}
@@ -0,0 +1,16 @@
+package io.github.jristretto.ranges;
+
+/**
+ * Range with a weight, like the value of an ad slot or a job window.
+ *
+ * @param <R> range type
+ * @param range the range
+ * @param weight its value
+ */
+public record Weighted<R extends Range<R, ?, ?>>(R range, double weight) {
+
+    @Override
+    public String toString() {
+        return range + "@" + weight;
+    }
+}
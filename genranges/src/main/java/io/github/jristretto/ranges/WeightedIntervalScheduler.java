@@ -0,0 +1,175 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Chooses the most valuable subset of weighted ranges in which no two ranges
+ * {@link Range#overlaps(Range) overlap}. Ranges that merely
+ * {@link Range#meets(Range) meet} are compatible.
+ *
+ * <p>
+ * This is the classic dynamic program over the ranges in order of end: the
+ * best value of the first j ranges either skips range j, or takes it plus the
+ * best value of the ranges that end at or before its start, found with a
+ * binary search. That is O(n log n) time and O(n) space. Ranges without
+ * positive weight are never chosen; empty ranges with positive weight always
+ * are, as they overlap nothing.</p>
+ *
+ * <p>
+ * Ranges in different connected components of the overlap graph do not
+ * interact. {@link #parallelOptimize(Collection, ForkJoinPool)} cuts the input
+ * at the points where no range spans across and solves the components
+ * concurrently.</p>
+ */
+public final class WeightedIntervalScheduler {
+
+    private WeightedIntervalScheduler() {
+    }
+
+    /**
+     * Find a maximum weight subset of non overlapping ranges.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param candidates weighted ranges in any order
+     * @return the chosen ranges, in order of start
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<Weighted<R>> optimize( Collection<Weighted<R>> candidates ) {
+        List<Weighted<R>> chosen = new ArrayList<>();
+        List<Weighted<R>> rest = new ArrayList<>();
+        split( candidates, chosen, rest );
+        chosen.addAll( solve( rest ) );
+        chosen.sort( byStart() );
+        return chosen;
+    }
+
+    /**
+     * Find a maximum weight subset of non overlapping ranges, solving the
+     * connected components in parallel.
+     *
+     * @param <R> range type
+     * @param <P> demarcation point type
+     * @param <D> distance type
+     * @param candidates weighted ranges in any order
+     * @param pool to run in
+     * @return the chosen ranges, in order of start
+     */
+    public static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<Weighted<R>> parallelOptimize(
+                    Collection<Weighted<R>> candidates, ForkJoinPool pool ) {
+        List<Weighted<R>> chosen = new ArrayList<>();
+        List<Weighted<R>> rest = new ArrayList<>();
+        split( candidates, chosen, rest );
+        rest.sort( byStart() );
+        List<List<Weighted<R>>> components = new ArrayList<>();
+        List<Weighted<R>> current = new ArrayList<>();
+        P reach = null;
+        for ( Weighted<R> w : rest ) {
+            if ( reach != null && w.range().start().compareTo( reach ) >= 0 ) {
+                components.add( current );
+                current = new ArrayList<>();
+                reach = null;
+            }
+            current.add( w );
+            reach = reach == null ? w.range().end() : Range.max( reach, w.range()
+                    .end() );
+        }
+        if ( !current.isEmpty() ) {
+            components.add( current );
+        }
+        pool.submit( () -> components.parallelStream()
+                .map( WeightedIntervalScheduler::solve )
+                .toList() ).join().forEach( chosen::addAll );
+        chosen.sort( byStart() );
+        return chosen;
+    }
+
+    /**
+     * Total weight of a selection.
+     *
+     * @param <R> range type
+     * @param selection weighted ranges
+     * @return the sum of the weights
+     */
+    public static <R extends Range<R, ?, ?>> double totalWeight(
+            Collection<Weighted<R>> selection ) {
+        double sum = 0;
+        for ( Weighted<R> w : selection ) {
+            sum += w.weight();
+        }
+        return sum;
+    }
+
+    /**
+     * Put the empty ranges with positive weight in chosen, the other ranges
+     * with positive weight in rest.
+     */
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            void split( Collection<Weighted<R>> candidates,
+                    List<Weighted<R>> chosen, List<Weighted<R>> rest ) {
+        for ( Weighted<R> w : candidates ) {
+            if ( !( w.weight() > 0 ) ) {
+                continue;
+            }
+            R r = w.range();
+            ( r.start().compareTo( r.end() ) < 0 ? rest : chosen ).add( w );
+        }
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            List<Weighted<R>> solve( List<Weighted<R>> input ) {
+        List<Weighted<R>> byEnd = new ArrayList<>( input );
+        byEnd.sort( Comparator.comparing( w -> w.range().end() ) );
+        int n = byEnd.size();
+        // best[j]: best value using the first j ranges by end
+        double[] best = new double[ n + 1 ];
+        int[] compatible = new int[ n ];
+        for ( int j = 0; j < n; j++ ) {
+            compatible[ j ] = endingAtOrBefore( byEnd, j, byEnd.get( j ).range()
+                    .start() );
+            best[ j + 1 ] = Math.max( best[ j ], byEnd.get( j ).weight()
+                    + best[ compatible[ j ] ] );
+        }
+        List<Weighted<R>> chosen = new ArrayList<>();
+        for ( int j = n; j > 0; ) {
+            Weighted<R> w = byEnd.get( j - 1 );
+            // taking it was strictly better than skipping it
+            if ( best[ j ] > best[ j - 1 ] ) {
+                chosen.add( w );
+                j = compatible[ j - 1 ];
+            } else {
+                j--;
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Number of ranges among the first limit that end at or before p.
+     */
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            int endingAtOrBefore( List<Weighted<R>> byEnd, int limit, P p ) {
+        int lo = 0;
+        int hi = limit;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( byEnd.get( mid ).range().end().compareTo( p ) <= 0 ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static <R extends Range<R, P, D>, P extends Comparable<? super P>, D extends Comparable<? super D>>
+            Comparator<Weighted<R>> byStart() {
+        return Comparator.comparing( w -> w.range().start() );
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests AllenRelation, single pairs in point spec notation and the bulk
+ * classifier against all pairs.
+ */
+class AllenRelationTest {
+
+    final RangeTestDataFactory<IntegerRange, Integer, Integer> helper
+            = RangeTestDataFactory.integers();
+
+    /**
+     * One case per relation.
+     *
+     * @param x first range
+     * @param y second range
+     * @param expected relation of x to y
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "ab,cd,BEFORE",
+        "ab,bc,MEETS",
+        "ac,bd,OVERLAPS",
+        "ab,ac,STARTS",
+        "bc,ad,DURING",
+        "bc,ac,FINISHES",
+        "ab,ab,EQUALS",
+        "ac,bc,FINISHED_BY",
+        "ad,bc,CONTAINS",
+        "ac,ab,STARTED_BY",
+        "bd,ac,OVERLAPPED_BY",
+        "bc,ab,MET_BY",
+        "cd,ab,AFTER",
+    } )
+    void tRelation( String x, String y, AllenRelation expected ) {
+        IntegerRange rx = helper.createRange( x );
+        IntegerRange ry = helper.createRange( y );
+        assertThat( rx.relationTo( ry ) ).isEqualTo( expected );
+        assertThat( ry.relationTo( rx ) ).isEqualTo( expected.inverse() );
+    }
+
+    @ParameterizedTest
+    @EnumSource( AllenRelation.class )
+    void tConsistentWithRangeMethods( AllenRelation relation ) {
+        Random rnd = new Random( 34 );
+        for ( int i = 0; i < 20_000; i++ ) {
+            IntegerRange x = random( rnd, 10 );
+            IntegerRange y = random( rnd, 10 );
+            if ( x.relationTo( y ) != relation ) {
+                continue;
+            }
+            assertThat( x.overlaps( y ) ).as( x + " " + y )
+                    .isEqualTo( relation.isOverlap() );
+            assertThat( x.contains( y ) ).as( x + " " + y ).isEqualTo(
+                    relation == AllenRelation.EQUALS
+                    || relation == AllenRelation.CONTAINS
+                    || relation == AllenRelation.STARTED_BY
+                    || relation == AllenRelation.FINISHED_BY );
+        }
+    }
+
+    static IntegerRange random( Random rnd, int span ) {
+        int s = rnd.nextInt( span );
+        return IntegerRange.of( s, s + 1 + rnd.nextInt( span / 2 ) );
+    }
+
+    @Test
+    void tClassifyMatchesAllPairs() {
+        Random rnd = new Random( 3434 );
+        List<IntegerRange> ranges = new ArrayList<>();
+        List<IntegerRange> queries = new ArrayList<>();
+        for ( int i = 0; i < 2_000; i++ ) {
+            ranges.add( random( rnd, 20_000 ) );
+        }
+        for ( int i = 0; i < 300; i++ ) {
+            queries.add( random( rnd, 20_000 ) );
+            queries.add( IntegerRange.of( rnd.nextInt( 20_000 ), rnd.nextInt(
+                    20_000 ) ) );
+        }
+        ranges.sort( null );
+        Map<AllenRelation, List<RangePair<IntegerRange>>> expected
+                = new EnumMap<>( AllenRelation.class );
+        List<IntegerRange> sortedQueries = new ArrayList<>( queries );
+        sortedQueries.sort( null );
+        for ( IntegerRange q : sortedQueries ) {
+            for ( IntegerRange r : ranges ) {
+                AllenRelation rel = r.relationTo( q );
+                if ( rel != AllenRelation.BEFORE && rel != AllenRelation.AFTER ) {
+                    expected.computeIfAbsent( rel, k -> new ArrayList<>() )
+                            .add( new RangePair<>( r, q ) );
+                }
+            }
+        }
+        var actual = AllenRelation.classify( ranges, queries );
+        assertThat( actual.keySet() ).isEqualTo( expected.keySet() );
+        expected.forEach( ( rel, pairs ) -> assertThat( OverlapJoinTest.sorted(
+                actual.get( rel ) ) ).as( rel.toString() ).isEqualTo(
+                OverlapJoinTest.sorted( pairs ) ) );
+    }
+
+    @Test
+    void tClassifyRejectsUnsorted() {
+        var unsorted = List.of( IntegerRange.of( 5, 6 ), IntegerRange.of( 1, 2 ) );
+        assertThatThrownBy( () -> AllenRelation.classify( unsorted, List.of(
+                IntegerRange.of( 0, 1 ) ) ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+}
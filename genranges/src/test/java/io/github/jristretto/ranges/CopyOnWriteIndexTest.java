@@ -0,0 +1,181 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the leasing and reclamation of CopyOnWriteIndex, also under
+ * concurrent readers and reloads.
+ */
+class CopyOnWriteIndexTest {
+
+    static NestedContainmentList<IntegerRange, Integer, Integer> build( int n ) {
+        List<IntegerRange> ranges = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            ranges.add( IntegerRange.of( i, i + 10 ) );
+        }
+        return NestedContainmentList.of( ranges );
+    }
+
+    @Test
+    void tLeaseKeepsOldVersion() throws Exception {
+        List<Object> reclaimed = new ArrayList<>();
+        var first = build( 10 );
+        var holder = new CopyOnWriteIndex<NestedContainmentList<IntegerRange, Integer, Integer>>(
+                first, reclaimed::add );
+        var lease = holder.acquire();
+        var second = holder.reload( () -> build( 20 ), Runnable::run ).get();
+        assertThat( holder.version() ).isEqualTo( 1 );
+        int size = holder.read( NestedContainmentList::size );
+        assertThat( size ).isEqualTo( 20 );
+        // the reader still sees the version it started with
+        assertThat( lease.version() ).isZero();
+        assertThat( lease.index() ).isSameAs( first );
+        assertThat( holder.retainedVersions() ).isEqualTo( 1 );
+        assertThat( reclaimed ).isEmpty();
+        lease.close();
+        lease.close();
+        assertThat( reclaimed ).containsExactly( first );
+        assertThat( holder.retainedVersions() ).isZero();
+        assertThat( holder.maxRetainedVersions() ).isEqualTo( 1 );
+        assertThat( holder.reloadCount() ).isEqualTo( 1 );
+        assertThat( holder.lastOverlapTime() ).isPositive();
+        assertThatThrownBy( lease::index ).isInstanceOf(
+                IllegalStateException.class );
+        Object now = holder.read( x -> x );
+        assertThat( now ).isSameAs( second );
+    }
+
+    @Test
+    void tUnleasedVersionReclaimedOnPublish() {
+        List<String> reclaimed = new ArrayList<>();
+        var holder = new CopyOnWriteIndex<>( "a", reclaimed::add );
+        holder.publish( "b" );
+        holder.publish( "c" );
+        assertThat( reclaimed ).containsExactly( "a", "b" );
+        // never leased by a reader, so never retained
+        assertThat( holder.retainedVersions() ).isZero();
+        assertThat( holder.maxRetainedVersions() ).isZero();
+        String now = holder.read( s -> s );
+        assertThat( now ).isEqualTo( "c" );
+        assertThat( holder.version() ).isEqualTo( 2 );
+    }
+
+    @Test
+    void tFailedBuildKeepsCurrent() {
+        var holder = new CopyOnWriteIndex<>( "a" );
+        var result = holder.reload( () -> {
+            throw new IllegalStateException( "upstream down" );
+        } );
+        assertThatThrownBy( result::join ).hasCauseInstanceOf(
+                IllegalStateException.class );
+        String now = holder.read( s -> s );
+        assertThat( now ).isEqualTo( "a" );
+        assertThat( holder.reloadCount() ).isZero();
+    }
+
+    /**
+     * Readers must never see a version after it was reclaimed.
+     */
+    @Test
+    void tConcurrentReadersAndReloads() throws Exception {
+        Set<Guarded> live = ConcurrentHashMap.newKeySet();
+        var holder = new CopyOnWriteIndex<Guarded>( new Guarded( 0 ), g -> {
+            g.reclaimed.set( true );
+            live.remove( g );
+        } );
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService readers = Executors.newFixedThreadPool( 4 );
+        List<Future<Long>> reads = new ArrayList<>();
+        for ( int r = 0; r < 4; r++ ) {
+            reads.add( readers.submit( () -> {
+                long n = 0;
+                while ( !stop.get() ) {
+                    try ( var lease = holder.acquire() ) {
+                        Guarded g = lease.index();
+                        assertThat( g.reclaimed ).isFalse();
+                        assertThat( g.n ).isGreaterThanOrEqualTo( 0 );
+                        n++;
+                    }
+                }
+                return n;
+            } ) );
+        }
+        IntStream.rangeClosed( 1, 200 ).forEach( i -> {
+            Guarded g = new Guarded( i );
+            live.add( g );
+            holder.reload( () -> g ).join();
+        } );
+        stop.set( true );
+        long total = 0;
+        for ( var f : reads ) {
+            total += f.get();
+        }
+        readers.shutdown();
+        assertThat( readers.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue();
+        assertThat( total ).isPositive();
+        assertThat( holder.version() ).isEqualTo( 200 );
+        assertThat( holder.retainedVersions() ).isZero();
+        // only the current version is left
+        assertThat( live ).hasSize( 1 );
+        int n = holder.read( g -> g.n );
+        assertThat( n ).isEqualTo( 200 );
+    }
+
+    /**
+     * Concurrent publishers must not make the version number go back.
+     */
+    @Test
+    void tVersionGrowsUnderConcurrentPublish() throws Exception {
+        var holder = new CopyOnWriteIndex<Integer>( 0, i -> {
+        } );
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService pool = Executors.newFixedThreadPool( 5 );
+        Future<Long> watcher = pool.submit( () -> {
+            long last = 0;
+            long seen = 0;
+            while ( !stop.get() ) {
+                long v = holder.version();
+                assertThat( v ).isGreaterThanOrEqualTo( last );
+                last = v;
+                seen++;
+            }
+            return seen;
+        } );
+        List<Future<?>> publishers = new ArrayList<>();
+        for ( int p = 0; p < 4; p++ ) {
+            publishers.add( pool.submit( () -> IntStream.range( 0, 2_000 )
+                    .forEach( holder::publish ) ) );
+        }
+        for ( var f : publishers ) {
+            f.get();
+        }
+        stop.set( true );
+        assertThat( watcher.get() ).isPositive();
+        pool.shutdown();
+        assertThat( pool.awaitTermination( 10, TimeUnit.SECONDS ) ).isTrue();
+        assertThat( holder.version() ).isEqualTo( 8_000 );
+        assertThat( holder.reloadCount() ).isEqualTo( 8_000 );
+    }
+
+    static final class Guarded {
+
+        final int n;
+        final AtomicBoolean reclaimed = new AtomicBoolean();
+
+        Guarded( int n ) {
+            this.n = n;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests CoverageDepthTree against a linear scan.
+ */
+class CoverageDepthTreeTest {
+
+    static int depth( List<IntegerRange> present, int p ) {
+        return (int) present.stream().filter( r -> r.contains( p ) ).count();
+    }
+
+    static int maxDepth( List<IntegerRange> present, IntegerRange w ) {
+        int best = 0;
+        for ( int p = w.start(); p < w.end(); p++ ) {
+            best = Math.max( best, depth( present, p ) );
+        }
+        return best;
+    }
+
+    @Test
+    void tSmall() {
+        var a = IntegerRange.of( 0, 10 );
+        var b = IntegerRange.of( 5, 15 );
+        var c = IntegerRange.of( 10, 20 );
+        var tree = CoverageDepthTree.of( List.of( a, b, c ) );
+        tree.add( a );
+        tree.add( b );
+        tree.add( c );
+        assertThat( tree.depthAt( 7 ) ).isEqualTo( 2 );
+        assertThat( tree.depthAt( 10 ) ).isEqualTo( 2 );
+        assertThat( tree.depthAt( 20 ) ).isZero();
+        assertThat( tree.depthAt( -1 ) ).isZero();
+        assertThat( tree.maxDepth( IntegerRange.of( 15, 30 ) ) ).isEqualTo( 1 );
+        assertThat( tree.maxDepth( IntegerRange.of( 14, 15 ) ) ).isEqualTo( 2 );
+        assertThat( tree.maxDepth() ).isEqualTo( 2 );
+        assertThat( tree.remove( b ) ).isTrue();
+        assertThat( tree.remove( b ) ).isFalse();
+        assertThat( tree.maxDepth() ).isEqualTo( 1 );
+        assertThat( tree.size() ).isEqualTo( 2 );
+    }
+
+    @Test
+    void tRejectsUnknownEndpoint() {
+        var tree = CoverageDepthTree.of( List.of( IntegerRange.of( 0, 10 ) ) );
+        assertThatThrownBy( () -> tree.add( IntegerRange.of( 0, 5 ) ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+
+    @Test
+    void tRandomAddRemove() {
+        Random rnd = new Random( 37 );
+        List<IntegerRange> universe = new ArrayList<>();
+        for ( int i = 0; i < 400; i++ ) {
+            int s = rnd.nextInt( 1_000 );
+            universe.add( IntegerRange.of( s, s + rnd.nextInt( 60 ) ) );
+        }
+        var tree = CoverageDepthTree.of( universe );
+        List<IntegerRange> present = new ArrayList<>();
+        for ( int step = 0; step < 2_000; step++ ) {
+            if ( present.isEmpty() || rnd.nextInt( 3 ) > 0 ) {
+                IntegerRange r = universe.get( rnd.nextInt( universe.size() ) );
+                tree.add( r );
+                if ( r.start() < r.end() ) {
+                    present.add( r );
+                }
+            } else {
+                IntegerRange r = present.remove( rnd.nextInt( present.size() ) );
+                assertThat( tree.remove( r ) ).isTrue();
+            }
+            if ( step % 50 == 0 ) {
+                int p = rnd.nextInt( 1_100 );
+                assertThat( tree.depthAt( p ) ).as( "at " + p )
+                        .isEqualTo( depth( present, p ) );
+                int a = rnd.nextInt( 1_100 );
+                var w = IntegerRange.of( a, a + rnd.nextInt( 100 ) );
+                assertThat( tree.maxDepth( w ) ).as( w.toString() )
+                        .isEqualTo( maxDepth( present, w ) );
+            }
+        }
+        assertThat( tree.size() ).isEqualTo( present.size() );
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests DyadicRangeSketch against exact counts.
+ */
+class DyadicRangeSketchTest {
+
+    static List<IntegerRange> random( long seed, int n, int span ) {
+        Random rnd = new Random( seed );
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            int s = rnd.nextInt( span ) - span / 2;
+            result.add( IntegerRange.of( s, s + rnd.nextInt( 500 ) ) );
+        }
+        return result;
+    }
+
+    static long exactOverlapping( List<IntegerRange> ranges, IntegerRange w ) {
+        return ranges.stream().filter( r -> r.overlaps( w ) ).count();
+    }
+
+    @Test
+    void tSmallStreamIsExact() {
+        var sketch = new DyadicRangeSketch<>( LongRangeMapping.INTEGER );
+        sketch.add( IntegerRange.of( 10, 20 ) );
+        sketch.add( IntegerRange.of( 15, 30 ) );
+        sketch.add( IntegerRange.of( 30, 40 ) );
+        sketch.add( IntegerRange.of( 50, 50 ) );
+        assertThat( sketch.count() ).isEqualTo( 3 );
+        assertThat( sketch.estimateContaining( 15 ) ).isEqualTo( 2 );
+        assertThat( sketch.estimateContaining( 30 ) ).isEqualTo( 1 );
+        assertThat( sketch.estimateContaining( 40 ) ).isZero();
+        assertThat( sketch.estimateOverlapping( IntegerRange.of( 20, 30 ) ) )
+                .isEqualTo( 1 );
+        assertThat( sketch.estimateOverlapping( IntegerRange.of( 0, 100 ) ) )
+                .isEqualTo( 3 );
+        assertThat( sketch.estimateOverlapping( IntegerRange.of( 25, 25 ) ) )
+                .isZero();
+    }
+
+    @Test
+    void tErrorWithinBound() {
+        int n = 50_000;
+        var ranges = random( 36, n, 1_000_000 );
+        var sketch = new DyadicRangeSketch<>( LongRangeMapping.INTEGER, 2048, 4 );
+        ranges.forEach( sketch::add );
+        Random rnd = new Random( 63 );
+        double totalError = 0;
+        for ( int i = 0; i < 200; i++ ) {
+            int a = rnd.nextInt( 1_000_000 ) - 500_000;
+            var w = IntegerRange.of( a, a + rnd.nextInt( 50_000 ) );
+            long error = Math.abs( sketch.estimateOverlapping( w )
+                    - exactOverlapping( ranges, w ) );
+            assertThat( error ).as( w.toString() ).isLessThan( n / 100 );
+            totalError += error;
+        }
+        assertThat( totalError / 200 ).isLessThan( n / 1000.0 );
+    }
+
+    @Test
+    void tDefaultsMeetStatedBound() {
+        int n = 50_000;
+        var ranges = random( 11, n, 1_000_000 );
+        var sketch = new DyadicRangeSketch<>( LongRangeMapping.INTEGER );
+        ranges.forEach( sketch::add );
+        Random rnd = new Random( 12 );
+        for ( int i = 0; i < 200; i++ ) {
+            int a = rnd.nextInt( 1_000_000 ) - 500_000;
+            var w = IntegerRange.of( a, a + rnd.nextInt( 50_000 ) );
+            assertThat( sketch.estimateOverlapping( w ) ).as( w.toString() )
+                    .isCloseTo( exactOverlapping( ranges, w ), within( (long) (
+                            2 * DyadicRangeSketch.DEFAULT_EPSILON * n ) ) );
+        }
+        assertThat( DyadicRangeSketch.widthFor( 32,
+                DyadicRangeSketch.DEFAULT_EPSILON ) ).isEqualTo( 4_350 );
+        assertThat( DyadicRangeSketch.depthFor( 32,
+                DyadicRangeSketch.DEFAULT_DELTA ) ).isEqualTo( 9 );
+    }
+
+    @Test
+    void tLevelsFollowTheMapping() {
+        assertThat( LongRangeMapping.INTEGER.bits() ).isEqualTo( 32 );
+        assertThat( LongRangeMapping.INSTANT_NANOS.bits() ).isEqualTo( 64 );
+        assertThat( LongRangeMapping.instants( Duration.ofSeconds( 1 ) ).bits() )
+                .isEqualTo( 56 );
+        assertThat( LongRangeMapping.instants( Duration.ofDays( 1 ) ).bits() )
+                .isEqualTo( 40 );
+        // extreme points map inside the span
+        for ( var unit : List.of( Duration.ofNanos( 1 ), Duration.ofMillis( 3 ),
+                Duration.ofSeconds( 1 ), Duration.ofDays( 7 ) ) ) {
+            var mapping = LongRangeMapping.instants( unit );
+            long half = 1L << ( mapping.bits() - 1 );
+            for ( Instant p : unit.getNano() == 0 ? List.of( Instant.MIN,
+                    Instant.MAX ) : List.of( Instant.EPOCH.minusNanos(
+                    Long.MAX_VALUE - 1_000_000_000L ), Instant.EPOCH.plusNanos(
+                    Long.MAX_VALUE ) ) ) {
+                long v = mapping.toLong( p );
+                assertThat( v ).as( unit + " " + p ).isBetween( -half, half - 1 );
+            }
+        }
+
+        var narrow = new DyadicRangeSketch<>( LongRangeMapping.INTEGER, 16, 64,
+                2, 1 );
+        narrow.add( IntegerRange.of( -32_768, 32_767 ) );
+        assertThatThrownBy( () -> narrow.add( IntegerRange.of( 0, 32_768 ) ) )
+                .isInstanceOf( IllegalArgumentException.class );
+        assertThat( narrow.estimateContaining( -40_000 ) ).isZero();
+        assertThat( narrow.estimateContaining( 0 ) ).isEqualTo( 1 );
+        assertThat( narrow.estimateOverlapping( IntegerRange.of( -100_000,
+                100_000 ) ) ).isEqualTo( 1 );
+    }
+
+    @Test
+    void tMergeEqualsSingleSketch() {
+        var ranges = random( 7, 20_000, 100_000 );
+        var whole = new DyadicRangeSketch<>( LongRangeMapping.INTEGER, 256, 3 );
+        var left = new DyadicRangeSketch<>( LongRangeMapping.INTEGER, 256, 3 );
+        var right = new DyadicRangeSketch<>( LongRangeMapping.INTEGER, 256, 3 );
+        for ( int i = 0; i < ranges.size(); i++ ) {
+            whole.add( ranges.get( i ) );
+            ( i % 2 == 0 ? left : right ).add( ranges.get( i ) );
+        }
+        left.merge( right );
+        var parallel = ranges.parallelStream().collect( DyadicRangeSketch
+                .collector( LongRangeMapping.INTEGER, 256, 3 ) );
+        for ( int a = -50_000; a < 50_000; a += 997 ) {
+            var w = IntegerRange.of( a, a + 1_500 );
+            assertThat( left.estimateOverlapping( w ) ).isEqualTo( whole
+                    .estimateOverlapping( w ) );
+            assertThat( parallel.estimateOverlapping( w ) ).isEqualTo( whole
+                    .estimateOverlapping( w ) );
+            assertThat( left.estimateContaining( a ) ).isEqualTo( whole
+                    .estimateContaining( a ) );
+        }
+        assertThatThrownBy( () -> whole.merge( new DyadicRangeSketch<>(
+                LongRangeMapping.INTEGER, 128, 3 ) ) )
+                .isInstanceOf( IllegalArgumentException.class );
+        LongRangeMapping<IntegerRange, Integer> shifted = new LongRangeMapping<>() {
+            @Override
+            public long toLong( Integer point ) {
+                return point + 1_000L;
+            }
+
+            @Override
+            public Integer fromLong( long value ) {
+                return Math.toIntExact( value - 1_000 );
+            }
+
+            @Override
+            public IntegerRange range( long start, long end ) {
+                return IntegerRange.of( fromLong( start ), fromLong( end ) );
+            }
+        };
+        assertThatThrownBy( () -> whole.merge( new DyadicRangeSketch<>(
+                shifted, 64, 256, 3, 0x5EED_D1AD_1CL ) ) )
+                .isInstanceOf( IllegalArgumentException.class )
+                .hasMessageContaining( "mapping" );
+    }
+
+    @Test
+    void tInstantRanges() {
+        var sketch = new DyadicRangeSketch<>( LongRangeMapping.instants(
+                Duration.ofSeconds( 1 ) ) );
+        Instant t0 = Instant.parse( "2026-01-01T00:00:00Z" );
+        for ( int i = 0; i < 1_000; i++ ) {
+            sketch.add( InstantRange.of( t0.plusSeconds( i ), t0.plusSeconds(
+                    i + 10 ) ) );
+        }
+        assertThat( sketch.estimateContaining( t0.plusSeconds( 500 ) ) )
+                .isCloseTo( 10L, within( 3L ) );
+        assertThat( sketch.estimateOverlapping( InstantRange.of( t0
+                .plusSeconds( 100 ), t0.plusSeconds( 200 ) ) ) )
+                .isCloseTo( 109L, within( 5L ) );
+    }
+}
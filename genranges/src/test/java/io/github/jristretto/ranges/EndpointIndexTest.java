@@ -0,0 +1,68 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests EndpointIndex lookups and chain assembly.
+ */
+class EndpointIndexTest {
+
+    @Test
+    void tMeetingLookups() {
+        var a = IntegerRange.of( 0, 5 );
+        var b = IntegerRange.of( 5, 8 );
+        var c = IntegerRange.of( 5, 9 );
+        var d = IntegerRange.of( 2, 5 );
+        var index = EndpointIndex.of( List.of( a, b, c, d ) );
+        assertThat( index.meetingOnRight( a ) ).containsExactlyInAnyOrder( b, c );
+        assertThat( index.meetingOnLeft( b ) ).containsExactlyInAnyOrder( a, d );
+        assertThat( index.meetingOnLeft( a ) ).isEmpty();
+        assertThat( index.meetingOnRight( IntegerRange.of( 3, 5 ) ) )
+                .containsExactlyInAnyOrder( b, c );
+    }
+
+    @Test
+    void tChains() {
+        var shifts = List.of( IntegerRange.of( 8, 12 ), IntegerRange.of( 20,
+                22 ), IntegerRange.of( 12, 16 ), IntegerRange.of( 16, 18 ),
+                IntegerRange.of( 30, 31 ), IntegerRange.of( 31, 32 ) );
+        var index = EndpointIndex.of( shifts );
+        assertThat( index.chains() ).containsExactly(
+                List.of( IntegerRange.of( 8, 12 ), IntegerRange.of( 12, 16 ),
+                        IntegerRange.of( 16, 18 ) ),
+                List.of( IntegerRange.of( 20, 22 ) ),
+                List.of( IntegerRange.of( 30, 31 ), IntegerRange.of( 31, 32 ) ) );
+        assertThat( index.joinedChains() ).containsExactly( IntegerRange.of( 8,
+                18 ), IntegerRange.of( 20, 22 ), IntegerRange.of( 30, 32 ) );
+    }
+
+    @Test
+    void tManyShuffledExtents() {
+        Random rnd = new Random( 40 );
+        List<IntegerRange> extents = new ArrayList<>();
+        List<IntegerRange> files = new ArrayList<>();
+        int pos = 0;
+        for ( int f = 0; f < 1_000; f++ ) {
+            int fileStart = pos;
+            int parts = 1 + rnd.nextInt( 200 );
+            for ( int i = 0; i < parts; i++ ) {
+                int len = 1 + rnd.nextInt( 50 );
+                extents.add( IntegerRange.of( pos, pos + len ) );
+                pos += len;
+            }
+            files.add( IntegerRange.of( fileStart, pos ) );
+            // gap between files
+            pos += 1 + rnd.nextInt( 10 );
+        }
+        Collections.shuffle( extents, rnd );
+        var index = EndpointIndex.of( extents );
+        assertThat( index.chains() ).hasSize( files.size() );
+        assertThat( index.joinedChains() ).containsExactlyElementsOf( files );
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.jristretto.ranges;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests ExternalRangeSorter against sorting in memory, with enough runs to
+ * need several merge passes.
+ */
+class ExternalRangeSorterTest {
+
+    static final Comparator<IntegerRange> ORDER = Comparator.<IntegerRange, Integer>comparing(
+            IntegerRange::start ).thenComparing( IntegerRange::end );
+
+    static List<IntegerRange> workload( RangeWorkload.Distribution d, int n ) {
+        return new RangeWorkload( d, 50, 100_000, 20 ).integerRanges( n );
+    }
+
+    static List<IntegerRange> expected( List<IntegerRange> input,
+            ExternalRangeSorter.Mode mode ) {
+        List<IntegerRange> sorted = input.stream().sorted( ORDER ).toList();
+        return switch ( mode ) {
+            case ALL ->
+                sorted;
+            case DISTINCT ->
+                sorted.stream().distinct().toList();
+            case COALESCE ->
+                RangeCoalescer.coalesceSorted( sorted );
+        };
+    }
+
+    static List<Path> files( Path dir ) throws IOException {
+        try ( Stream<Path> s = Files.list( dir ) ) {
+            return s.toList();
+        }
+    }
+
+    @ParameterizedTest
+    @CsvSource( {
+        "ALL, UNIFORM, 10",
+        "ALL, UNIFORM, 5000",
+        "ALL, NESTED, 5000",
+        "DISTINCT, CLUSTERED, 5000",
+        "DISTINCT, ADJACENT, 5000",
+        "COALESCE, UNIFORM, 5000",
+        "COALESCE, ADJACENT, 5000",
+        "COALESCE, LONG_TAIL, 5000"
+    } )
+    void tSortLikeInMemory( ExternalRangeSorter.Mode mode,
+            RangeWorkload.Distribution d, int n, @TempDir Path dir )
+            throws IOException {
+        List<IntegerRange> input = new ArrayList<>( workload( d, n ) );
+        // duplicates for DISTINCT
+        input.addAll( input.subList( 0, n / 10 ) );
+        ExecutorService pool = Executors.newFixedThreadPool( 3 );
+        try {
+            // 4 chunks of 16 in memory, so 5000 ranges make more than FAN_IN runs
+            var sorter = new ExternalRangeSorter<IntegerRange, Integer, Integer>(
+                    RangeCodec.INTEGER, dir, 64, mode, pool, 3 );
+            List<IntegerRange> out = new ArrayList<>();
+            long count = sorter.sort( input.iterator(), out::add );
+
+            assertThat( out ).isEqualTo( expected( input, mode ) );
+            assertThat( count ).isEqualTo( out.size() );
+            assertThat( sorter.lastCount() ).isEqualTo( input.size() );
+            assertThat( sorter.elementCount() ).isEqualTo( input.size() );
+            assertThat( sorter.heapBytes() ).isPositive();
+            if ( n > 16 ) {
+                assertThat( sorter.lastRunCount() ).isGreaterThan(
+                        ExternalRangeSorter.FAN_IN );
+                assertThat( sorter.lastSpilledBytes() ).isPositive();
+            } else {
+                assertThat( sorter.lastRunCount() ).isZero();
+            }
+            assertThat( files( dir ) ).as( "temp files removed" ).isEmpty();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void tSortFile( @TempDir Path dir ) throws IOException {
+        List<IntegerRange> input = workload( RangeWorkload.Distribution.ZIPF,
+                20_000 );
+        Path in = dir.resolve( "in.ranges" );
+        Path out = dir.resolve( "out.ranges" );
+        try ( var o = new DataOutputStream( Files.newOutputStream( in ) ) ) {
+            RangeCodec.INTEGER.writeAll( o, input.iterator() );
+        }
+        Path temp = Files.createDirectory( dir.resolve( "tmp" ) );
+        var sorter = new ExternalRangeSorter<IntegerRange, Integer, Integer>(
+                RangeCodec.INTEGER, temp, 1_000, ExternalRangeSorter.Mode.ALL );
+
+        assertThat( sorter.sort( in, out ) ).isEqualTo( 20_000 );
+        assertThat( Files.size( out ) ).isEqualTo( Files.size( in ) );
+        List<IntegerRange> sorted = new ArrayList<>();
+        try ( InputStream s = Files.newInputStream( out ) ) {
+            RangeCodec.INTEGER.reader( s ).forEachRemaining( sorted::add );
+        }
+        assertThat( sorted ).isEqualTo( expected( input,
+                ExternalRangeSorter.Mode.ALL ) );
+        assertThat( sorter.lastSpilledBytes() ).isEqualTo( Files.size( in ) );
+        assertThat( files( temp ) ).isEmpty();
+    }
+
+    @Test
+    void tTruncatedInput( @TempDir Path dir ) throws IOException {
+        Path in = dir.resolve( "in.ranges" );
+        Files.write( in, new byte[]{ 0, 0, 0, 1, 0, 0 } );
+        Path temp = Files.createDirectory( dir.resolve( "tmp" ) );
+        var sorter = new ExternalRangeSorter<IntegerRange, Integer, Integer>(
+                RangeCodec.INTEGER, temp, 100, ExternalRangeSorter.Mode.ALL );
+
+        assertThatThrownBy( () -> sorter.sort( in, dir.resolve( "out" ) ) )
+                .isInstanceOf( IOException.class );
+        assertThat( files( temp ) ).isEmpty();
+    }
+
+    @Test
+    void tDefaultParallelismFitsMemoryBound( @TempDir Path dir )
+            throws IOException {
+        var sorter = new ExternalRangeSorter<IntegerRange, Integer, Integer>(
+                RangeCodec.INTEGER, dir, 2, ExternalRangeSorter.Mode.ALL );
+        var input = workload( RangeWorkload.Distribution.UNIFORM, 100 );
+        List<IntegerRange> out = new ArrayList<>();
+        sorter.sort( input.iterator(), out::add );
+        assertThat( out ).isEqualTo( expected( input,
+                ExternalRangeSorter.Mode.ALL ) );
+        assertThatThrownBy( () -> new ExternalRangeSorter<IntegerRange, Integer, Integer>(
+                RangeCodec.INTEGER, dir, 1, ExternalRangeSorter.Mode.ALL ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+
+    @Test
+    void tInvalidBounds( @TempDir Path dir ) {
+        assertThatThrownBy( () -> new ExternalRangeSorter<IntegerRange, Integer, Integer>(
+                RangeCodec.INTEGER, dir, 4, ExternalRangeSorter.Mode.ALL,
+                Runnable::run, 4 ) )
+                .isInstanceOf( IllegalArgumentException.class );
+        assertThatThrownBy( () -> new ExternalRangeSorter<IntegerRange, Integer, Integer>(
+                RangeCodec.INTEGER, dir, 100, ExternalRangeSorter.Mode.ALL,
+                Runnable::run, 0 ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+}
@@ -0,0 +1,257 @@
+package io.github.jristretto.ranges;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests InstantRangeSegmentStore against a plain list.
+ */
+class InstantRangeSegmentStoreTest {
+
+    static final Instant T0 = Instant.parse( "2024-01-01T00:00:00Z" );
+    static final Duration HOUR = Duration.ofHours( 1 );
+
+    @TempDir
+    Path dir;
+
+    /**
+     * Mostly ordered stream: starts advance one second at a time with some
+     * jitter, lengths up to ten minutes.
+     */
+    static List<InstantRange> stream( Random rnd, int n ) {
+        List<InstantRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            Instant start = T0.plusSeconds( i - rnd.nextInt( 30 ) );
+            result.add( InstantRange.of( start, start.plusSeconds( rnd.nextInt(
+                    600 ) ) ) );
+        }
+        return result;
+    }
+
+    static InstantRange window( long fromSecond, long toSecond ) {
+        return InstantRange.of( T0.plusSeconds( fromSecond ), T0.plusSeconds(
+                toSecond ) );
+    }
+
+    @Test
+    void tQueriesMatchBruteForce() throws Exception {
+        List<InstantRange> all = stream( new Random( 28 ), 20_000 );
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 500, 2 ) ) {
+            all.forEach( store::append );
+            store.awaitCompaction();
+            assertThat( store.size() ).isEqualTo( all.size() );
+            for ( long from = 0; from < 20_000; from += 1_234 ) {
+                InstantRange w = window( from, from + 300 );
+                assertThat( store.overlapping( w ) )
+                        .as( w.toString() )
+                        .containsExactlyInAnyOrderElementsOf( all.stream()
+                                .filter( w::overlaps ).toList() );
+            }
+        }
+    }
+
+    @Test
+    void tCompactionMergesSegmentsPerPartition() throws Exception {
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 100, 4 ) ) {
+            stream( new Random( 1 ), 3_200 ).forEach( store::append );
+            store.awaitCompaction();
+            // 32 flushes of 100 ranges within one hour: two levels of merging
+            assertThat( store.segmentCount() ).isLessThanOrEqualTo( 4 );
+            assertThat( store.size() ).isEqualTo( 3_200 );
+        }
+    }
+
+    @Test
+    void tRetentionDropsEndedSegments() throws Exception {
+        List<InstantRange> all = stream( new Random( 2 ), 3 * 3600 );
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 1000, 4 ) ) {
+            all.forEach( store::append );
+            store.flush();
+            store.awaitCompaction();
+            Instant cutoff = T0.plus( HOUR ).plus( HOUR );
+            long dropped = store.dropEndedBefore( cutoff );
+            assertThat( dropped ).isPositive();
+            assertThat( store.size() ).isEqualTo( all.size() - dropped );
+            // every range that is still relevant after the cutoff is kept
+            InstantRange after = InstantRange.of( cutoff, cutoff.plus( HOUR ) );
+            assertThat( store.overlapping( after ) )
+                    .containsExactlyInAnyOrderElementsOf( all.stream()
+                            .filter( after::overlaps ).toList() );
+        }
+    }
+
+    @Test
+    void tReopenLoadsSegments() throws Exception {
+        List<InstantRange> all = stream( new Random( 3 ), 2_500 );
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 400, 2 ) ) {
+            all.forEach( store::append );
+        }
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR ) ) {
+            assertThat( store.size() ).isEqualTo( all.size() );
+            InstantRange w = window( 1_000, 1_100 );
+            assertThat( store.overlapping( w ) )
+                    .containsExactlyInAnyOrderElementsOf( all.stream()
+                            .filter( w::overlaps ).toList() );
+        }
+    }
+
+    /**
+     * A crash between writing a compaction output and deleting its inputs
+     * leaves both on disk; reopening must load each range once.
+     */
+    @Test
+    void tInterruptedCompactionLoadsRangesOnce( @TempDir Path backup )
+            throws Exception {
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 10, 100 ) ) {
+            onePartition( 0, 40 ).forEach( store::append );
+        }
+        List<Path> inputs;
+        try ( Stream<Path> files = Files.list( dir ) ) {
+            inputs = files.toList();
+        }
+        assertThat( inputs ).hasSize( 4 );
+        for ( Path f : inputs ) {
+            Files.copy( f, backup.resolve( f.getFileName() ) );
+        }
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 10, 4 ) ) {
+            onePartition( 40, 10 ).forEach( store::append );
+            store.awaitCompaction();
+            assertThat( store.segmentCount() ).isEqualTo( 2 );
+        }
+        // put the deleted inputs back next to the output
+        for ( Path f : inputs ) {
+            Files.copy( backup.resolve( f.getFileName() ), f );
+        }
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR ) ) {
+            assertThat( store.size() ).isEqualTo( 50 );
+            assertThat( store.segmentCount() ).isEqualTo( 2 );
+            assertThat( store.overlapping( window( -100, 1_000 ) ) )
+                    .containsExactlyInAnyOrderElementsOf( onePartition( 0, 50 ) );
+        }
+        for ( Path f : inputs ) {
+            assertThat( f ).as( "replaced input deleted" ).doesNotExist();
+        }
+    }
+
+    @Test
+    void tRejectsTinyPartitions() {
+        assertThatThrownBy( () -> InstantRangeSegmentStore.open( dir,
+                Duration.ofMillis( 10 ) ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+
+    @Test
+    void tConcurrentAppendAndQuery() throws IOException, InterruptedException {
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 256, 2 ) ) {
+            Thread writer = new Thread( () -> {
+                for ( int i = 0; i < 10_000; i++ ) {
+                    store.append( InstantRange.of( T0.plusSeconds( i ), T0
+                            .plusSeconds( i + 10 ) ) );
+                }
+            } );
+            writer.start();
+            InstantRange w = window( 0, 20 );
+            long seen = 0;
+            while ( writer.isAlive() ) {
+                long now = store.overlapping( w ).size();
+                assertThat( now ).isGreaterThanOrEqualTo( seen );
+                seen = now;
+            }
+            writer.join();
+            assertThat( store.overlapping( w ) ).hasSize( 20 );
+        }
+    }
+
+    /**
+     * A non-empty directory where a segment file should go makes its write
+     * fail after the temporary file was written.
+     */
+    Path block( long partition, int level, long sequence ) throws IOException {
+        Path blocker = dir.resolve( "p" + partition + "-L" + level + "-"
+                + sequence + ".seg" );
+        Files.createDirectories( blocker.resolve( "x" ) );
+        return blocker;
+    }
+
+    static void unblock( Path blocker ) throws IOException {
+        Files.delete( blocker.resolve( "x" ) );
+        Files.delete( blocker );
+    }
+
+    /**
+     * Ranges that all start in the partition of T0.
+     */
+    static List<InstantRange> onePartition( int from, int n ) {
+        List<InstantRange> result = new ArrayList<>();
+        for ( int i = from; i < from + n; i++ ) {
+            result.add( window( i, i + 60 ) );
+        }
+        return result;
+    }
+
+    long tmpFiles() throws IOException {
+        try ( Stream<Path> files = Files.list( dir ) ) {
+            return files.filter( f -> f.toString().endsWith( ".tmp" ) ).count();
+        }
+    }
+
+    @Test
+    void tFailedFlushIsRetried() throws Exception {
+        long partition = T0.getEpochSecond() / 3600;
+        List<InstantRange> all = onePartition( 0, 100 );
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 1_000, 4 ) ) {
+            Path blocker = block( partition, 0, 0 );
+            all.forEach( store::append );
+            assertThatThrownBy( store::flush )
+                    .isInstanceOf( UncheckedIOException.class );
+            assertThat( tmpFiles() ).isZero();
+            // still in memory
+            assertThat( store.size() ).isEqualTo( 100 );
+            assertThat( store.overlapping( window( -100, 1_000 ) ) ).hasSize( 100 );
+
+            unblock( blocker );
+            store.flush();
+            assertThat( store.segmentCount() ).isPositive();
+            assertThat( store.size() ).isEqualTo( 100 );
+        }
+        try ( var reopened = InstantRangeSegmentStore.open( dir, HOUR ) ) {
+            assertThat( reopened.overlapping( window( -100, 1_000 ) ) )
+                    .containsExactlyInAnyOrderElementsOf( all );
+        }
+    }
+
+    @Test
+    void tCompactionFailureIsReportedOnce() throws Exception {
+        long partition = T0.getEpochSecond() / 3600;
+        try ( var store = InstantRangeSegmentStore.open( dir, HOUR, 10, 2 ) ) {
+            // two flushes, then the compaction writes sequence 2
+            Path blocker = block( partition, 1, 2 );
+            onePartition( 0, 10 ).forEach( store::append );
+            store.awaitCompaction();
+            onePartition( 10, 10 ).forEach( store::append );
+            assertThatThrownBy( store::awaitCompaction )
+                    .isInstanceOf( UncheckedIOException.class );
+            assertThat( tmpFiles() ).isZero();
+            assertThatCode( store::awaitCompaction ).doesNotThrowAnyException();
+            assertThat( store.segmentCount() ).isEqualTo( 2 );
+
+            unblock( blocker );
+            onePartition( 20, 10 ).forEach( store::append );
+            store.awaitCompaction();
+            assertThat( store.size() ).isEqualTo( 30 );
+            assertThat( store.segmentCount() ).isLessThan( 3 );
+        }
+    }
+}
@@ -4,7 +4,11 @@ package io.github.jristretto.ranges;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Spliterator;
+import org.junit.jupiter.api.Test;
+
 import static java.time.temporal.ChronoUnit.HOURS;
+import static org.assertj.core.api.Assertions.*;
 
 /**
  *
@@ -44,4 +48,33 @@ public class InstantRangeTest extends RangeTestBase<InstantRange, Instant, Durat
         }
         return daf;
     }
-}
\ No newline at end of file
+
+    @Test
+    void tPointsEveryMinute() {
+        var range = InstantRange.of( A, A.plus( 90, ChronoUnit.SECONDS ) );
+        assertThat( range.points( Duration.ofMinutes( 1 ) ) )
+                .containsExactly( A, A.plus( 1, ChronoUnit.MINUTES ) );
+        var day = InstantRange.of( A, A.plus( 1, ChronoUnit.DAYS ) );
+        assertThat( day.points( Duration.ofMinutes( 1 ) ).parallel().count() )
+                .isEqualTo( 1_440 );
+        Spliterator<Instant> s = day.points( Duration.ofMinutes( 1 ) )
+                .spliterator();
+        assertThat( s.hasCharacteristics( Spliterator.SIZED
+                | Spliterator.SUBSIZED ) ).isTrue();
+        assertThat( s.trySplit().estimateSize() ).isEqualTo( 720 );
+    }
+
+    @Test
+    void tSplit() {
+        var range = InstantRange.of( A, A.plus( 10, ChronoUnit.SECONDS ) );
+        var parts = range.split( 3 );
+        assertThat( parts ).hasSize( 3 );
+        assertThat( parts.get( 0 ).start() ).isEqualTo( A );
+        assertThat( parts.get( 2 ).end() ).isEqualTo( range.end() );
+        for ( int i = 1; i < parts.size(); i++ ) {
+            assertThat( parts.get( i - 1 ).meets( parts.get( i ) ) ).isTrue();
+        }
+        assertThat( parts.get( 0 ).length() ).isEqualTo( Duration.ofNanos(
+                3_333_333_333L ) );
+    }
+}
@@ -1,6 +1,13 @@
 //cs:ignore
 package io.github.jristretto.ranges;
 
+import java.util.Spliterator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
 /**
  *
  * @author Pieter van den Hombergh
@@ -38,5 +45,29 @@ public class IntegerRangeTest extends RangeTestBase<IntegerRange, Integer, Integ
         }
         return daf;
     }
-    
-}
\ No newline at end of file
+
+    @Test
+    void tPoints() {
+        var range = IntegerRange.of( 3, 1_000_003 );
+        assertThat( range.points().limit( 3 ) ).containsExactly( 3, 4, 5 );
+        assertThat( range.points().parallel().asLongStream().sum() )
+                .isEqualTo( 1_000_000L * 3 + 999_999L * 1_000_000 / 2 );
+        Spliterator.OfInt s = range.points().spliterator();
+        assertThat( s.hasCharacteristics( Spliterator.SIZED
+                | Spliterator.SUBSIZED ) ).isTrue();
+        assertThat( s.trySplit().estimateSize() ).isEqualTo( 500_000 );
+    }
+
+    @ParameterizedTest
+    @CsvSource( {
+        "0,10,3,'[0,3) [3,6) [6,10)'",
+        "5,7,4,'[5,5) [5,6) [6,6) [6,7)'",
+        "-2147483648,2147483647,2,'[-2147483648,-1) [-1,2147483647)'",
+    } )
+    void tSplit( int start, int end, int n, String expected ) {
+        var parts = IntegerRange.of( start, end ).split( n );
+        assertThat( parts ).hasSize( n );
+        assertThat( String.join( " ", parts.stream().map( p -> "[" + p.start()
+                + "," + p.end() + ")" ).toList() ) ).isEqualTo( expected );
+    }
+}
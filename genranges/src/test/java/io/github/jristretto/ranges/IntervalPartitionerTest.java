@@ -0,0 +1,88 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests IntervalPartitioner for validity and minimality.
+ */
+class IntervalPartitionerTest {
+
+    static final Instant T0 = Instant.parse( "2026-06-01T08:00:00Z" );
+
+    static InstantRange booking( int fromMinute, int toMinute ) {
+        return InstantRange.of( T0.plusSeconds( 60L * fromMinute ), T0
+                .plusSeconds( 60L * toMinute ) );
+    }
+
+    @Test
+    void tMeetingBookingsShareARoom() {
+        var bookings = List.of( booking( 0, 60 ), booking( 60, 90 ), booking(
+                30, 45 ), booking( 90, 120 ) );
+        var result = IntervalPartitioner.partition( bookings );
+        assertThat( result.peak() ).isEqualTo( 2 );
+        assertThat( result.resourceOf() ).containsExactly( 0, 0, 1, 0 );
+    }
+
+    @Test
+    void tEmptyRangesNeedNoResource() {
+        var result = IntervalPartitioner.partition( List.of( IntegerRange.of( 3,
+                3 ), IntegerRange.of( 4, 4 ) ) );
+        assertThat( result.peak() ).isZero();
+        assertThat( result.resourceOf() ).containsExactly(
+                IntervalPartitioner.NO_RESOURCE, IntervalPartitioner.NO_RESOURCE );
+        var mixed = IntervalPartitioner.partition( List.of( booking( 0, 60 ),
+                booking( 30, 30 ) ) );
+        assertThat( mixed.peak() ).isEqualTo( 1 );
+        assertThat( mixed.resourceOf() ).containsExactly( 0,
+                IntervalPartitioner.NO_RESOURCE );
+    }
+
+    @Test
+    void tStreamingRejectsUnsorted() {
+        var sweep = new IntervalPartitioner<InstantRange, Instant, Duration>();
+        sweep.assign( booking( 10, 20 ) );
+        assertThatThrownBy( () -> sweep.assign( booking( 5, 30 ) ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+
+    @Test
+    void tRandomIsValidAndMinimal() {
+        Random rnd = new Random( 41 );
+        List<InstantRange> bookings = new ArrayList<>();
+        for ( int i = 0; i < 3_000; i++ ) {
+            int s = rnd.nextInt( 10_000 );
+            bookings.add( booking( s, s + rnd.nextInt( 120 ) ) );
+        }
+        var result = IntervalPartitioner.partition( bookings );
+        int[] res = result.resourceOf();
+        for ( int i = 0; i < bookings.size(); i++ ) {
+            if ( bookings.get( i ).length().isZero() ) {
+                assertThat( res[ i ] ).isEqualTo( IntervalPartitioner.NO_RESOURCE );
+                continue;
+            }
+            assertThat( res[ i ] ).isBetween( 0, result.peak() - 1 );
+            for ( int j = i + 1; j < bookings.size(); j++ ) {
+                if ( res[ i ] == res[ j ] ) {
+                    assertThat( bookings.get( i ).overlaps( bookings.get( j ) ) )
+                            .as( bookings.get( i ) + " " + bookings.get( j ) )
+                            .isFalse();
+                }
+            }
+        }
+        // the peak equals the maximum overlap depth at some start
+        int depth = 0;
+        for ( InstantRange b : bookings ) {
+            int d = (int) bookings.stream().filter( x -> x.contains( b.start() ) )
+                    .count();
+            depth = Math.max( depth, d );
+        }
+        assertThat( result.peak() ).isEqualTo( depth );
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.jristretto.ranges;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests NestedContainmentList against brute force filters.
+ */
+class NestedContainmentListTest {
+
+    /**
+     * Nested sessions: a mix of long and short ranges, with duplicates.
+     */
+    static List<IntegerRange> nested( Random rnd, int n ) {
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            int s = rnd.nextInt( 10_000 );
+            int len = rnd.nextInt( 10 ) == 0 ? rnd.nextInt( 3_000 ) : rnd.nextInt( 50 );
+            IntegerRange r = IntegerRange.of( s, s + len );
+            result.add( r );
+            if ( rnd.nextInt( 20 ) == 0 ) {
+                result.add( IntegerRange.of( s, s + len ) );
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void tQueriesMatchBruteForce() {
+        Random rnd = new Random( 33 );
+        var ranges = nested( rnd, 3_000 );
+        var index = NestedContainmentList.of( ranges );
+        assertThat( index.size() ).isEqualTo( ranges.size() );
+        for ( int k = 0; k < 300; k++ ) {
+            int s = rnd.nextInt( 10_000 );
+            IntegerRange q = IntegerRange.of( s, s + rnd.nextInt( k % 2 == 0 ? 30
+                    : 2_000 ) );
+            assertThat( index.containing( q ) ).as( "containing " + q )
+                    .containsExactlyInAnyOrderElementsOf( ranges.stream()
+                            .filter( r -> r.contains( q ) ).toList() );
+            assertThat( index.containedIn( q ) ).as( "contained in " + q )
+                    .containsExactlyInAnyOrderElementsOf( ranges.stream()
+                            .filter( q::contains ).toList() );
+            assertThat( index.overlapping( q ) ).as( "overlapping " + q )
+                    .containsExactlyInAnyOrderElementsOf( ranges.stream()
+                            .filter( q::overlaps ).toList() );
+        }
+    }
+
+    @Test
+    void tSessionsAndSubPeriods() {
+        Instant t = Instant.parse( "2024-05-01T09:00:00Z" );
+        InstantRange day = InstantRange.of( t, t.plusSeconds( 8 * 3600 ) );
+        InstantRange morning = InstantRange.of( t, t.plusSeconds( 3 * 3600 ) );
+        InstantRange talk = InstantRange.of( t.plusSeconds( 3600 ), t
+                .plusSeconds( 5400 ) );
+        InstantRange lunch = InstantRange.of( t.plusSeconds( 3 * 3600 ), t
+                .plusSeconds( 4 * 3600 ) );
+        var index = NestedContainmentList.of( List.of( talk, lunch, day, morning ) );
+        assertThat( index.containing( talk ) ).containsExactlyInAnyOrder( day,
+                morning, talk );
+        assertThat( index.containedIn( morning ) ).containsExactlyInAnyOrder(
+                morning, talk );
+        assertThat( index.containing( InstantRange.of( t.plusSeconds( 5000 ), t
+                .plusSeconds( 12_000 ) ) ) ).containsExactly( day );
+    }
+
+    @Test
+    void tEmptyIndex() {
+        var index = NestedContainmentList.<IntegerRange, Integer, Integer>of(
+                List.of() );
+        assertThat( index.containing( IntegerRange.of( 1, 2 ) ) ).isEmpty();
+        assertThat( index.containedIn( IntegerRange.of( 1, 2 ) ) ).isEmpty();
+    }
+}
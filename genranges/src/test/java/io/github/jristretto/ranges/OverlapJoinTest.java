@@ -0,0 +1,103 @@
+package io.github.jristretto.ranges;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests OverlapJoin against a nested loop join.
+ */
+class OverlapJoinTest {
+
+    static List<IntegerRange> random( Random rnd, int n, int span, int maxLength ) {
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            int s = rnd.nextInt( span );
+            result.add( IntegerRange.of( s, s + rnd.nextInt( maxLength ) ) );
+        }
+        return result;
+    }
+
+    static <R extends Range<R, ?, ?>> List<RangePair<R>> nestedLoop( List<R> ls,
+            List<R> rs ) {
+        List<RangePair<R>> result = new ArrayList<>();
+        for ( R l : ls ) {
+            for ( R r : rs ) {
+                if ( l.overlaps( r ) ) {
+                    result.add( new RangePair<>( l, r ) );
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pairs in one total order, so large results compare as lists instead of
+     * with a quadratic any order assertion.
+     */
+    static <R extends Range<R, P, ?>, P extends Comparable<? super P>> List<RangePair<R>> sorted(
+            List<RangePair<R>> pairs ) {
+        Comparator<RangePair<R>> order = Comparator.<RangePair<R>, P>comparing(
+                p -> p.left().start() )
+                .thenComparing( p -> p.left().end() )
+                .thenComparing( p -> p.right().start() )
+                .thenComparing( p -> p.right().end() );
+        return pairs.stream().sorted( order ).toList();
+    }
+
+    /**
+     * Results must match regardless of the number of partitions, including
+     * long ranges that cross many boundaries.
+     *
+     * @param partitions to use
+     */
+    @ParameterizedTest
+    @ValueSource( ints = { 1, 2, 7, 64, 1000 } )
+    void tMatchesNestedLoop( int partitions ) {
+        Random rnd = new Random( 30 + partitions );
+        var ls = random( rnd, 800, 10_000, 300 );
+        var rs = random( rnd, 600, 10_000, 2_000 );
+        var pairs = OverlapJoin.join( ls.stream(), rs.stream(), ForkJoinPool
+                .commonPool(), partitions ).toList();
+        assertThat( sorted( pairs ) ).isEqualTo( sorted( nestedLoop( ls, rs ) ) );
+    }
+
+    @Test
+    void tDuplicateStartsAndMeetingRanges() {
+        var ls = List.of( IntegerRange.of( 0, 5 ), IntegerRange.of( 5, 10 ),
+                IntegerRange.of( 5, 5 ), IntegerRange.of( 5, 6 ) );
+        var rs = List.of( IntegerRange.of( 5, 7 ), IntegerRange.of( 0, 5 ),
+                IntegerRange.of( 10, 12 ) );
+        assertThat( OverlapJoin.join( ls, rs ).toList() )
+                .containsExactlyInAnyOrderElementsOf( nestedLoop( ls, rs ) );
+    }
+
+    @Test
+    void tInstantRanges() {
+        Random rnd = new Random( 3 );
+        List<InstantRange> ls = new ArrayList<>();
+        List<InstantRange> rs = new ArrayList<>();
+        for ( int i = 0; i < 300; i++ ) {
+            Instant a = Instant.ofEpochSecond( rnd.nextInt( 86_400 ) );
+            ls.add( InstantRange.of( a, a.plusSeconds( rnd.nextInt( 3_600 ) ) ) );
+            Instant b = Instant.ofEpochSecond( rnd.nextInt( 86_400 ) );
+            rs.add( InstantRange.of( b, b.plusSeconds( rnd.nextInt( 600 ) ) ) );
+        }
+        assertThat( sorted( OverlapJoin.join( ls, rs ).toList() ) )
+                .isEqualTo( sorted( nestedLoop( ls, rs ) ) );
+    }
+
+    @Test
+    void tEmptyInput() {
+        assertThat( OverlapJoin.join( List.<IntegerRange>of(), List.of(
+                IntegerRange.of( 1, 2 ) ) ) ).isEmpty();
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests OverlapQueryCache in front of a NestedContainmentList.
+ */
+class OverlapQueryCacheTest {
+
+    final List<IntegerRange> stored = new ArrayList<>();
+    final AtomicInteger indexCalls = new AtomicInteger();
+    NestedContainmentList<IntegerRange, Integer, Integer> index;
+
+    OverlapQueryCacheTest() {
+        Random rnd = new Random( 35 );
+        for ( int i = 0; i < 5_000; i++ ) {
+            int s = rnd.nextInt( 100_000 );
+            stored.add( IntegerRange.of( s, s + 1 + rnd.nextInt( 200 ) ) );
+        }
+        index = NestedContainmentList.of( stored );
+    }
+
+    OverlapQueryCache<IntegerRange, Integer, Integer> cache( long capacity,
+            OverlapQueryCache.Policy policy ) {
+        return new OverlapQueryCache<>( q -> {
+            indexCalls.incrementAndGet();
+            return index.overlapping( q );
+        }, capacity, policy );
+    }
+
+    @ParameterizedTest
+    @EnumSource( OverlapQueryCache.Policy.class )
+    void tAnswersMatchIndex( OverlapQueryCache.Policy policy ) {
+        var cache = cache( 4_000, policy );
+        Random rnd = new Random( 53 );
+        for ( int i = 0; i < 3_000; i++ ) {
+            // windows nest inside a few popular outer windows
+            int outer = rnd.nextInt( 20 ) * 5_000;
+            int s = outer + rnd.nextInt( 4_000 );
+            IntegerRange q = rnd.nextBoolean()
+                    ? IntegerRange.of( outer, outer + 5_000 )
+                    : IntegerRange.of( s, s + rnd.nextInt( 1_000 ) );
+            assertThat( cache.overlapping( q ) ).as( q.toString() )
+                    .containsExactlyInAnyOrderElementsOf( index.overlapping( q ) );
+        }
+        assertThat( cache.cachedRanges() ).isLessThanOrEqualTo( 4_000 );
+        assertThat( cache.missCount() ).isEqualTo( indexCalls.get() );
+        assertThat( cache.hitCount() + cache.subsumptionHitCount() + cache
+                .missCount() ).isEqualTo( 3_000 );
+        assertThat( cache.hitRate() ).isGreaterThan( 0.5 );
+    }
+
+    @Test
+    void tSubsumedQueryDoesNotReachIndex() {
+        var cache = cache( 10_000, OverlapQueryCache.Policy.LRU );
+        cache.overlapping( IntegerRange.of( 1_000, 9_000 ) );
+        var inner = IntegerRange.of( 2_000, 3_000 );
+        assertThat( cache.overlapping( inner ) )
+                .containsExactlyInAnyOrderElementsOf( index.overlapping( inner ) );
+        assertThat( indexCalls.get() ).isEqualTo( 1 );
+        assertThat( cache.subsumptionHitCount() ).isEqualTo( 1 );
+        // only the outer window is cached
+        assertThat( cache.size() ).isEqualTo( 1 );
+    }
+
+    @Test
+    void tLruEvictsLeastRecentlyUsed() {
+        var cache = cache( 0, OverlapQueryCache.Policy.LRU );
+        cache.overlapping( IntegerRange.of( 0, 10 ) );
+        assertThat( cache.size() ).as( "results over capacity" ).isZero();
+
+        var a = IntegerRange.of( 100, 200 );
+        var b = IntegerRange.of( 300, 400 );
+        var c = IntegerRange.of( 500, 600 );
+        long capacity = index.overlapping( a ).size() + Math.max( index
+                .overlapping( b ).size(), index.overlapping( c ).size() ) + 2;
+        var lru = cache( capacity, OverlapQueryCache.Policy.LRU );
+        lru.overlapping( a );
+        lru.overlapping( b );
+        lru.overlapping( a );
+        lru.overlapping( c );
+        lru.overlapping( a );
+        assertThat( lru.hitCount() ).isEqualTo( 2 );
+        assertThat( lru.evictionCount() ).isEqualTo( 1 );
+        lru.overlapping( b );
+        assertThat( lru.missCount() ).as( "b was evicted" ).isEqualTo( 4 );
+    }
+
+    @Test
+    void tLfuKeepsFrequentlyUsed() {
+        var hot = IntegerRange.of( 100, 200 );
+        var lfu = cache( index.overlapping( hot ).size() + 20,
+                OverlapQueryCache.Policy.LFU );
+        for ( int i = 0; i < 5; i++ ) {
+            lfu.overlapping( hot );
+        }
+        for ( int i = 0; i < 20; i++ ) {
+            lfu.overlapping( IntegerRange.of( 1_000 * i + 10_000, 1_000 * i
+                    + 10_050 ) );
+        }
+        lfu.overlapping( hot );
+        assertThat( lfu.hitCount() ).isEqualTo( 5 );
+    }
+
+    @Test
+    void tInvalidateDropsAffectedQueries() {
+        var cache = cache( 100_000, OverlapQueryCache.Policy.LRU );
+        var a = IntegerRange.of( 100, 200 );
+        var b = IntegerRange.of( 5_000, 6_000 );
+        cache.overlapping( a );
+        cache.overlapping( b );
+
+        var added = IntegerRange.of( 150, 160 );
+        stored.add( added );
+        index = NestedContainmentList.of( stored );
+        cache.invalidate( added );
+
+        assertThat( cache.size() ).isEqualTo( 1 );
+        assertThat( cache.overlapping( a ) ).contains( added );
+        assertThat( cache.overlapping( b ) ).doesNotContain( added );
+        assertThat( indexCalls.get() ).isEqualTo( 3 );
+
+        cache.invalidateAll();
+        assertThat( cache.size() ).isZero();
+        assertThat( cache.cachedRanges() ).isZero();
+    }
+
+    /**
+     * Long and short cached queries, invalidated by random changes, never
+     * answer stale results.
+     */
+    @Test
+    void tRandomInvalidationsMatchIndex() {
+        var cache = cache( 1_000_000, OverlapQueryCache.Policy.LRU );
+        Random rnd = new Random( 350 );
+        for ( int i = 0; i < 2_000; i++ ) {
+            int s = rnd.nextInt( 100_000 );
+            IntegerRange q = IntegerRange.of( s, s + 1 + rnd.nextInt(
+                    rnd.nextInt( 10 ) == 0 ? 50_000 : 500 ) );
+            assertThat( cache.overlapping( q ) ).as( q.toString() )
+                    .containsExactlyInAnyOrderElementsOf( index.overlapping( q ) );
+            if ( i % 20 == 0 ) {
+                int c = rnd.nextInt( 100_000 );
+                IntegerRange changed = IntegerRange.of( c, c + 1 + rnd.nextInt(
+                        100 ) );
+                stored.add( changed );
+                index = NestedContainmentList.of( stored );
+                cache.invalidate( changed );
+            }
+        }
+        assertThat( cache.subsumptionHitCount() ).isPositive();
+    }
+}
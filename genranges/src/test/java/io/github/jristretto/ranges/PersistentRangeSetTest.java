@@ -0,0 +1,182 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import org.assertj.core.api.SoftAssertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests PersistentRangeSet using IntegerRanges.
+ */
+class PersistentRangeSetTest {
+
+    final RangeTestDataFactory<IntegerRange, Integer, Integer> helper
+            = RangeTestDataFactory.integers();
+
+    PersistentRangeSet<IntegerRange, Integer, Integer> setOf( String specs ) {
+        return PersistentRangeSet.of( helper.rangeList( specs ) );
+    }
+
+    /**
+     * Union joins meeting and overlapping ranges.
+     *
+     * @param initial ranges in the set
+     * @param added range to add
+     * @param expected content after union
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "ab,cd,ab|cd",
+        "ab,bc,ac",
+        "ab|cd,bc,ad",
+        "ab|ce,bd,ae",
+        "ac,ab,ac",
+        "bc|de,af,af",
+    } )
+    void tUnion( String initial, String added, String expected ) {
+        var set = setOf( initial );
+        var result = set.union( helper.createRange( added ) );
+        assertThat( result ).containsExactlyElementsOf(
+                helper.rangeList( expected ) );
+    }
+
+    /**
+     * Punch replaces the covered parts and keeps the remainders.
+     *
+     * @param initial ranges in the set
+     * @param punch range to punch with
+     * @param expected content after punch
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "ad,bc,ab|bc|cd",
+        "ac,ab,ab|bc",
+        "ab|cf,be,ab|be|ef",
+        "ab,cd,ab|cd",
+    } )
+    void tPunch( String initial, String punch, String expected ) {
+        var result = setOf( initial ).punch( helper.createRange( punch ) );
+        assertThat( result ).containsExactlyElementsOf(
+                helper.rangeList( expected ) );
+    }
+
+    /**
+     * Remove trims partially covered ranges.
+     *
+     * @param initial ranges in the set
+     * @param removed range to remove
+     * @param expected content after removal
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "ad,bc,ab|cd",
+        "ab|cf,be,ab|ef",
+        "ab|cd,af,''",
+        "ab,cd,ab",
+    } )
+    void tRemove( String initial, String removed, String expected ) {
+        var result = setOf( initial ).remove( helper.createRange( removed ) );
+        assertThat( result ).containsExactlyElementsOf( expected.isEmpty()
+                ? List.of() : helper.rangeList( expected ) );
+    }
+
+    @Test
+    void tUpdatesLeaveOriginalUntouched() {
+        var original = setOf( "ab|cd" );
+        var snapshot = original;
+        original.union( helper.createRange( "af" ) );
+        original.remove( helper.createRange( "ab" ) );
+        assertThat( snapshot ).isSameAs( original );
+        assertThat( snapshot ).containsExactlyElementsOf(
+                helper.rangeList( "ab|cd" ) );
+    }
+
+    @Test
+    void tPointQueries() {
+        var set = setOf( "ab|cd" );
+        SoftAssertions.assertSoftly( softly -> {
+            softly.assertThat( set.contains( 42 ) ).isTrue();
+            softly.assertThat( set.contains( 51 ) ).isFalse();
+            softly.assertThat( set.rangeContaining( 1000 ) ).contains(
+                    IntegerRange.of( 55, 1023 ) );
+            softly.assertThat( set.encloses( IntegerRange.of( 60, 70 ) ) )
+                    .isTrue();
+            softly.assertThat( set.encloses( IntegerRange.of( 50, 60 ) ) )
+                    .isFalse();
+        } );
+    }
+
+    /**
+     * Random updates against a boolean array model.
+     */
+    @Test
+    void tRandomAgainstModel() {
+        Random rnd = new Random( 26 );
+        boolean[] model = new boolean[ 500 ];
+        var set = PersistentRangeSet.<IntegerRange, Integer, Integer>empty();
+        for ( int i = 0; i < 2000; i++ ) {
+            int a = rnd.nextInt( model.length );
+            int b = Math.min( model.length, a + rnd.nextInt( 40 ) );
+            IntegerRange r = IntegerRange.of( a, b );
+            boolean add = rnd.nextBoolean();
+            set = add ? set.union( r ) : set.remove( r );
+            for ( int p = a; p < b; p++ ) {
+                model[ p ] = add;
+            }
+        }
+        var finalSet = set;
+        assertThat( IntStream.range( 0, model.length )
+                .filter( p -> model[ p ] != finalSet.contains( p ) ) )
+                .isEmpty();
+        List<IntegerRange> ranges = set.stream().toList();
+        for ( int i = 1; i < ranges.size(); i++ ) {
+            assertThat( ranges.get( i - 1 ).end() )
+                    .isLessThan( ranges.get( i ).start() );
+        }
+        IntegerRange q = IntegerRange.of( 100, 300 );
+        assertThat( set.overlapping( q ) ).containsExactlyElementsOf(
+                ranges.stream().filter( q::overlaps ).toList() );
+    }
+
+    /**
+     * Readers that grab a snapshot must always see a consistent version, even
+     * while a writer keeps publishing new ones.
+     */
+    @Test
+    void tConcurrentSnapshots() throws InterruptedException {
+        AtomicReference<PersistentRangeSet<IntegerRange, Integer, Integer>> current
+                = new AtomicReference<>( PersistentRangeSet.empty() );
+        ConcurrentLinkedQueue<String> problems = new ConcurrentLinkedQueue<>();
+        List<Thread> readers = new ArrayList<>();
+        for ( int t = 0; t < 4; t++ ) {
+            Thread reader = new Thread( () -> {
+                for ( int i = 0; i < 2000; i++ ) {
+                    var snap = current.get();
+                    int n = snap.size();
+                    if ( snap.stream().count() != n ) {
+                        problems.add( "size mismatch in " + snap );
+                    }
+                }
+            } );
+            readers.add( reader );
+            reader.start();
+        }
+        for ( int i = 0; i < 2000; i++ ) {
+            int s = i * 3;
+            current.updateAndGet( set -> set.union( IntegerRange.of( s, s + 1 ) ) );
+        }
+        for ( Thread reader : readers ) {
+            reader.join();
+        }
+        assertThat( problems ).isEmpty();
+        assertThat( current.get().size() ).isEqualTo( 2000 );
+    }
+}
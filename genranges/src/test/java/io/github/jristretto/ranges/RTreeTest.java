@@ -0,0 +1,123 @@
+package io.github.jristretto.ranges;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests RangeBox and RTree, the tree against a brute force scan.
+ */
+class RTreeTest {
+
+    static RangeBox<IntegerRange, Integer, IntegerRange, Integer> box(
+            int x0, int x1, int y0, int y1 ) {
+        return RangeBox.of( IntegerRange.of( x0, x1 ), IntegerRange.of( y0, y1 ) );
+    }
+
+    /**
+     * Box relations are the conjunction of the per dimension relations.
+     *
+     * @param a first box as x0,x1,y0,y1
+     * @param b second box as x0,x1,y0,y1
+     * @param overlaps expected overlap
+     * @param contains expected a contains b
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "0 10 0 10, 5 15 5 15, true, false",
+        "0 10 0 10, 10 15 5 15, false, false", // meets in x
+        "0 10 0 10, 2 8 12 15, false, false", // disjoint in y only
+        "0 10 0 10, 2 8 2 10, true, true",
+        "0 10 0 10, 0 10 0 10, true, true",
+    } )
+    void tBoxRelations( String a, String b, boolean overlaps, boolean contains ) {
+        var ba = parse( a );
+        var bb = parse( b );
+        assertThat( ba.overlaps( bb ) ).isEqualTo( overlaps );
+        assertThat( ba.contains( bb ) ).isEqualTo( contains );
+        assertThat( ba.intersectWith( bb ).isPresent() ).isEqualTo( overlaps );
+    }
+
+    @Test
+    void tIntersectAndSpan() {
+        var a = box( 0, 10, 0, 10 );
+        var b = box( 5, 15, 8, 20 );
+        assertThat( a.intersectWith( b ) ).contains( box( 5, 10, 8, 10 ) );
+        assertThat( a.span( b ) ).isEqualTo( box( 0, 15, 0, 20 ) );
+        assertThat( a.contains( 0, 9 ) ).isTrue();
+        assertThat( a.contains( 10, 9 ) ).isFalse();
+    }
+
+    static RangeBox<IntegerRange, Integer, IntegerRange, Integer> parse( String s ) {
+        String[] p = s.trim().split( " " );
+        return box( Integer.parseInt( p[ 0 ] ), Integer.parseInt( p[ 1 ] ),
+                Integer.parseInt( p[ 2 ] ), Integer.parseInt( p[ 3 ] ) );
+    }
+
+    static List<RangeBox<InstantRange, Instant, IntegerRange, Integer>> randomBoxes(
+            Random rnd, int n ) {
+        List<RangeBox<InstantRange, Instant, IntegerRange, Integer>> result
+                = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            Instant t = Instant.ofEpochSecond( rnd.nextInt( 100_000 ) );
+            Instant u = t.plusSeconds( 1 + rnd.nextInt( 2_000 ) );
+            int id = rnd.nextInt( 1000 );
+            result.add( RangeBox.of( InstantRange.of( t, u ),
+                    IntegerRange.of( id, id + 1 + rnd.nextInt( 20 ) ) ) );
+        }
+        return result;
+    }
+
+    @Test
+    void tRandomQueriesMatchBruteForce() {
+        Random rnd = new Random( 27 );
+        var boxes = randomBoxes( rnd, 5000 );
+        var packed = RTree.bulkLoad( boxes, Instant::getEpochSecond,
+                Integer::doubleValue );
+        RTree<InstantRange, Instant, IntegerRange, Integer> grown
+                = new RTree<>( Instant::getEpochSecond, Integer::doubleValue, 8 );
+        boxes.forEach( grown::insert );
+        assertThat( packed.size() ).isEqualTo( boxes.size() );
+        assertThat( grown.size() ).isEqualTo( boxes.size() );
+        assertThat( packed.height() ).isGreaterThan( 1 );
+        for ( var query : randomBoxes( rnd, 200 ) ) {
+            var expected = boxes.stream().filter( query::overlaps ).toList();
+            assertThat( packed.overlapping( query ) )
+                    .as( "packed " + query )
+                    .containsExactlyInAnyOrderElementsOf( expected );
+            assertThat( grown.overlapping( query ) )
+                    .as( "grown " + query )
+                    .containsExactlyInAnyOrderElementsOf( expected );
+        }
+    }
+
+    @Test
+    void tInsertAfterBulkLoad() {
+        Random rnd = new Random( 72 );
+        var boxes = randomBoxes( rnd, 1000 );
+        var tree = RTree.bulkLoad( boxes.subList( 0, 500 ),
+                Instant::getEpochSecond, Integer::doubleValue );
+        boxes.subList( 500, 1000 ).forEach( tree::insert );
+        var query = RangeBox.of( InstantRange.of( Instant.ofEpochSecond( 20_000 ),
+                Instant.ofEpochSecond( 40_000 ) ), IntegerRange.of( 100, 400 ) );
+        assertThat( tree.overlapping( query ) )
+                .containsExactlyInAnyOrderElementsOf( boxes.stream()
+                        .filter( query::overlaps ).toList() );
+    }
+
+    @Test
+    void tEmptyTree() {
+        var tree = RTree.<IntegerRange, Integer, IntegerRange, Integer>bulkLoad(
+                List.of(), Integer::doubleValue, Integer::doubleValue );
+        assertThat( tree.overlapping( box( 0, 1, 0, 1 ) ) ).isEmpty();
+        assertThatThrownBy( () -> new RTree<IntegerRange, Integer, IntegerRange, Integer>(
+                Integer::doubleValue, Integer::doubleValue, 3 ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+}
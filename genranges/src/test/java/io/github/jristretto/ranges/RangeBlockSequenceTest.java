@@ -0,0 +1,137 @@
+package io.github.jristretto.ranges;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests RangeBlockSequence round trips and seeks.
+ */
+class RangeBlockSequenceTest {
+
+    static List<IntegerRange> integerSchedule( Random rnd, int n ) {
+        List<IntegerRange> result = new ArrayList<>();
+        int start = -5_000;
+        for ( int i = 0; i < n; i++ ) {
+            start += rnd.nextInt( 50 );
+            result.add( IntegerRange.of( start, start + rnd.nextInt( 100 ) ) );
+        }
+        return result;
+    }
+
+    static List<InstantRange> instantSchedule( Random rnd, int n ) {
+        List<InstantRange> result = new ArrayList<>();
+        Instant start = Instant.parse( "2024-03-01T08:00:00Z" );
+        for ( int i = 0; i < n; i++ ) {
+            start = start.plusSeconds( 60 * rnd.nextInt( 30 ) );
+            result.add( InstantRange.of( start, start.plus( Duration.ofMinutes(
+                    15 * ( 1 + rnd.nextInt( 8 ) ) ) ) ) );
+        }
+        return result;
+    }
+
+    @ParameterizedTest
+    @ValueSource( ints = { 1, 7, 128 } )
+    void tIntegerRoundTrip( int blockSize ) {
+        var ranges = integerSchedule( new Random( blockSize ), 1_000 );
+        var seq = RangeBlockSequence.encode( ranges, LongRangeMapping.INTEGER,
+                blockSize );
+        assertThat( seq.size() ).isEqualTo( ranges.size() );
+        assertThat( seq.stream() ).containsExactlyElementsOf( ranges );
+    }
+
+    @Test
+    void tInstantRoundTripIsCompact() {
+        var ranges = instantSchedule( new Random( 29 ), 10_000 );
+        // the schedule is whole minutes, so second resolution is still exact
+        var seq = RangeBlockSequence.encode( ranges,
+                LongRangeMapping.instants( Duration.ofSeconds( 1 ) ) );
+        assertThat( seq ).containsExactlyElementsOf( ranges );
+        // 24 bytes per range in RangeCodec.INSTANT, far more as objects
+        assertThat( seq.encodedBytes() ).isLessThan( ranges.size() * 24 / 4 );
+    }
+
+    @Test
+    void tSeekFindsFirstStartAtOrAfterTarget() {
+        var ranges = integerSchedule( new Random( 4 ), 2_000 );
+        var seq = RangeBlockSequence.encode( ranges, LongRangeMapping.INTEGER, 16 );
+        var cursor = seq.cursor();
+        Random rnd = new Random( 5 );
+        for ( int i = 0; i < 300; i++ ) {
+            int target = -6_000 + rnd.nextInt( 60_000 );
+            int expected = 0;
+            while ( expected < ranges.size()
+                    && ranges.get( expected ).start() < target ) {
+                expected++;
+            }
+            cursor.seek( target );
+            assertThat( cursor.position() ).as( "seek " + target )
+                    .isEqualTo( expected );
+            if ( expected < ranges.size() ) {
+                assertThat( cursor.next() ).isEqualTo( ranges.get( expected ) );
+            } else {
+                assertThat( cursor.hasNext() ).isFalse();
+            }
+        }
+    }
+
+    @Test
+    void tFileRoundTrip( @TempDir Path dir ) throws Exception {
+        var ranges = instantSchedule( new Random( 6 ), 3_000 );
+        Path file = dir.resolve( "schedule.rblk" );
+        RangeBlockSequence.encode( ranges, LongRangeMapping.INSTANT_NANOS )
+                .writeTo( file );
+        var mapped = RangeBlockSequence.open( file,
+                LongRangeMapping.INSTANT_NANOS );
+        assertThat( mapped.stream() ).containsExactlyElementsOf( ranges );
+        var target = ranges.get( 1_500 ).start();
+        assertThat( mapped.cursor().seek( target ).next().start() )
+                .isEqualTo( target );
+    }
+
+    @Test
+    void tRejectsUnsortedInput() {
+        var unsorted = List.of( IntegerRange.of( 5, 6 ), IntegerRange.of( 1, 2 ) );
+        assertThatThrownBy( () -> RangeBlockSequence.encode( unsorted,
+                LongRangeMapping.INTEGER ) )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+
+    @Test
+    void tRejectsOversizedInput() {
+        // never read: the size is checked before encoding
+        List<IntegerRange> huge = new AbstractList<>() {
+            @Override
+            public IntegerRange get( int index ) {
+                return IntegerRange.of( index, index + 1 );
+            }
+
+            @Override
+            public int size() {
+                return 120_000_000;
+            }
+        };
+        assertThatThrownBy( () -> RangeBlockSequence.encode( huge,
+                LongRangeMapping.INTEGER ) )
+                .isInstanceOf( IllegalArgumentException.class )
+                .hasMessageContaining( "120000000 ranges" );
+    }
+
+    @Test
+    void tEmptySequence() {
+        var seq = RangeBlockSequence.encode( List.<IntegerRange>of(),
+                LongRangeMapping.INTEGER );
+        assertThat( seq.cursor().seek( 3 ).hasNext() ).isFalse();
+        assertThat( seq.stream() ).isEmpty();
+    }
+}
@@ -0,0 +1,111 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests RangeCoalescer, sequential, fork/join and collector variants against
+ * each other and against a boolean model.
+ */
+class RangeCoalescerTest {
+
+    final RangeTestDataFactory<IntegerRange, Integer, Integer> helper
+            = RangeTestDataFactory.integers();
+
+    /**
+     * Small cases in point spec notation.
+     *
+     * @param input ranges in any order
+     * @param expected disjoint union
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "cd|ab,ab|cd",
+        "bc|ab,ac",
+        "ac|bd|ef,ad|ef",
+        "af|bc|de,af",
+        "ab|bb|dd|de,ab|de",
+    } )
+    void tCoalesce( String input, String expected ) {
+        var ranges = helper.rangeList( input );
+        assertThat( RangeCoalescer.coalesce( ranges ) )
+                .containsExactlyElementsOf( helper.rangeList( expected ) );
+    }
+
+    static List<IntegerRange> random( long seed, int n, int span ) {
+        Random rnd = new Random( seed );
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            int s = rnd.nextInt( span );
+            result.add( IntegerRange.of( s, s + rnd.nextInt( 20 ) ) );
+        }
+        return result;
+    }
+
+    static List<IntegerRange> model( List<IntegerRange> ranges, int span ) {
+        boolean[] covered = TestUtils.cover( ranges, span + 20 );
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int p = 0; p < covered.length; p++ ) {
+            if ( covered[ p ] ) {
+                int s = p;
+                while ( p < covered.length && covered[ p ] ) {
+                    p++;
+                }
+                result.add( IntegerRange.of( s, p ) );
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void tParallelMatchesModel() {
+        var ranges = random( 31, 200_000, 1_000_000 );
+        var expected = model( ranges, 1_000_000 );
+        IntegerRange[] array = ranges.toArray( IntegerRange[]::new );
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        try {
+            assertThat( RangeCoalescer.parallelCoalesce( array, pool ) )
+                    .containsExactlyElementsOf( expected );
+        } finally {
+            pool.shutdown();
+        }
+        assertThat( RangeCoalescer.parallelCoalesce( ranges ) )
+                .containsExactlyElementsOf( expected );
+    }
+
+    @Test
+    void tCollectorOnParallelStream() {
+        var ranges = random( 13, 100_000, 300_000 );
+        var expected = model( ranges, 300_000 );
+        assertThat( ranges.parallelStream().collect( RangeCoalescer.toCoalesced() ) )
+                .containsExactlyElementsOf( expected );
+        assertThat( ranges.stream().collect( RangeCoalescer.toCoalesced() ) )
+                .containsExactlyElementsOf( expected );
+    }
+
+    @Test
+    void tLongRangeSpansManyChunks() {
+        var ranges = new ArrayList<>( random( 7, 50_000, 100_000 ) );
+        ranges.add( IntegerRange.of( 10, 90_000 ) );
+        var expected = model( ranges, 100_000 );
+        assertThat( RangeCoalescer.parallelCoalesce( ranges ) )
+                .containsExactlyElementsOf( expected );
+        assertThat( ranges.parallelStream().collect( RangeCoalescer.toCoalesced() ) )
+                .containsExactlyElementsOf( expected );
+    }
+
+    @Test
+    void tEmptyInput() {
+        assertThat( RangeCoalescer.parallelCoalesce( new IntegerRange[ 0 ] ) )
+                .isEmpty();
+        assertThat( List.<IntegerRange>of().stream().collect( RangeCoalescer
+                .toCoalesced() ) ).isEmpty();
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests RangeCollectors on sequential and parallel streams, and the quantile
+ * sketch against exact quantiles.
+ */
+class RangeCollectorsTest {
+
+    static List<IntegerRange> random( long seed, int n ) {
+        Random rnd = new Random( seed );
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            int s = rnd.nextInt( 1_000_000 );
+            // long tailed lengths
+            int len = (int) Math.min( 100_000, Math.exp( rnd.nextDouble() * 10 ) );
+            result.add( IntegerRange.of( s, s + len ) );
+        }
+        return result;
+    }
+
+    @Test
+    void tSummaryParallelEqualsSequential() {
+        var ranges = random( 43, 200_000 );
+        var seq = ranges.stream().collect( RangeCollectors.summarizing(
+                Integer::sum ) );
+        var par = ranges.parallelStream().collect( RangeCollectors.summarizing(
+                Integer::sum ) );
+        assertThat( par.getCount() ).isEqualTo( 200_000 );
+        assertThat( par.getTotalLength() ).isEqualTo( seq.getTotalLength() );
+        assertThat( par.getTotalLength() ).contains( ranges.stream()
+                .mapToInt( IntegerRange::length ).sum() );
+        assertThat( par.getMinStart() ).contains( ranges.stream()
+                .mapToInt( IntegerRange::start ).min().getAsInt() );
+        assertThat( par.getMaxEnd() ).contains( ranges.stream()
+                .mapToInt( IntegerRange::end ).max().getAsInt() );
+        assertThat( ranges.parallelStream().collect( RangeCollectors.minStart() ) )
+                .isEqualTo( par.getMinStart() );
+        assertThat( ranges.parallelStream().collect( RangeCollectors.maxEnd() ) )
+                .isEqualTo( par.getMaxEnd() );
+    }
+
+    @Test
+    void tUnionLength() {
+        var ranges = List.of( IntegerRange.of( 0, 10 ), IntegerRange.of( 5, 15 ),
+                IntegerRange.of( 20, 25 ) );
+        assertThat( ranges.parallelStream().collect( RangeCollectors
+                .unionLength( Integer::sum ) ) ).contains( 20 );
+        assertThat( ranges.stream().collect( RangeCollectors.totalLength(
+                Integer::sum ) ) ).contains( 25 );
+        assertThat( List.<IntegerRange>of().stream().collect( RangeCollectors
+                .unionLength( Integer::sum ) ) ).isEmpty();
+    }
+
+    @Test
+    void tInstantRanges() {
+        Instant t0 = Instant.parse( "2026-07-01T00:00:00Z" );
+        var ranges = List.of( InstantRange.of( t0, t0.plusSeconds( 60 ) ),
+                InstantRange.of( t0.plusSeconds( 30 ), t0.plusSeconds( 90 ) ) );
+        assertThat( ranges.stream().collect( RangeCollectors.unionLength(
+                Duration::plus ) ) ).contains( Duration.ofSeconds( 90 ) );
+        assertThat( ranges.stream().collect( RangeCollectors.overlapCount(
+                InstantRange.of( t0.plusSeconds( 60 ), t0.plusSeconds( 61 ) ) ) ) )
+                .isEqualTo( 1L );
+        var sketch = ranges.stream().collect( RangeCollectors.lengthQuantiles(
+                Duration::toSeconds, 0.01 ) );
+        assertThat( sketch.quantile( 0.5 ) ).isCloseTo( 60, within( 0.6 ) );
+    }
+
+    @Test
+    void tQuantilesWithinRelativeAccuracy() {
+        var ranges = random( 34, 100_000 );
+        double alpha = 0.01;
+        var sketch = ranges.parallelStream().collect( RangeCollectors
+                .lengthQuantiles( Integer::doubleValue, alpha ) );
+        double[] lengths = ranges.stream().mapToDouble( IntegerRange::length )
+                .sorted().toArray();
+        for ( double q : new double[]{ 0, 0.1, 0.5, 0.9, 0.99, 0.999, 1 } ) {
+            double exact = lengths[ (int) Math.floor( q * ( lengths.length - 1 ) ) ];
+            assertThat( sketch.quantile( q ) ).as( "q=" + q )
+                    .isCloseTo( exact, within( exact * alpha + 1e-9 ) );
+        }
+        var sequential = ranges.stream().collect( RangeCollectors
+                .lengthQuantiles( Integer::doubleValue, alpha ) );
+        assertThat( sequential.quantile( 0.5 ) ).isEqualTo( sketch.quantile( 0.5 ) );
+        assertThat( sketch.count() ).isEqualTo( lengths.length );
+        assertThat( sketch.max() ).isEqualTo( Arrays.stream( lengths ).max()
+                .getAsDouble() );
+    }
+
+    @Test
+    void tOverlapCountParallel() {
+        var ranges = random( 7, 100_000 );
+        var window = IntegerRange.of( 400_000, 410_000 );
+        assertThat( ranges.parallelStream().collect( RangeCollectors
+                .overlapCount( window ) ) ).isEqualTo( ranges.stream()
+                .filter( r -> r.overlaps( window ) ).count() );
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.jristretto.ranges;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests RangeDiff with point specs, against a boolean model and on files.
+ */
+class RangeDiffTest {
+
+    final RangeTestDataFactory<IntegerRange, Integer, Integer> helper
+            = RangeTestDataFactory.integers();
+
+    /**
+     * Deltas in point spec notation, '-' is the empty set, deltas are written
+     * as +xy or -xy.
+     *
+     * @param older old version
+     * @param newer new version
+     * @param expected deltas
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "ab,ab,-",
+        "ab,-,-ab",
+        "-,ab,+ab",
+        "ac,bd,-ab|+cd",
+        "ab,bc,-ab|+bc",
+        "ad,bc,-ab|-cd",
+        "ab|cd,ad,+bc",
+        "ab|bc,ac,-",
+        "ae,ab|cd|ef,-bc|-de|+ef",
+    } )
+    void tDeltas( String older, String newer, String expected ) {
+        var deltas = RangeDiff.diff( helper.rangeList( older ), helper
+                .rangeList( newer ) )
+                .map( d -> ( d.kind() == RangeDiff.Kind.ADDED ? "+" : "-" )
+                + helper.spec( d.range().start(), d.range().end() ) )
+                .collect( Collectors.joining( "|" ) );
+        assertThat( deltas.isEmpty() ? "-" : deltas ).isEqualTo( expected );
+    }
+
+    static List<IntegerRange> random( Random rnd, int n ) {
+        List<IntegerRange> result = new ArrayList<>();
+        int at = 0;
+        for ( int i = 0; i < n; i++ ) {
+            at += rnd.nextInt( 8 );
+            int len = 1 + rnd.nextInt( 8 );
+            result.add( IntegerRange.of( at, at + len ) );
+            at += len;
+        }
+        return result;
+    }
+
+    @Test
+    void tAgainstModel() {
+        Random rnd = new Random( 47 );
+        for ( int round = 0; round < 50; round++ ) {
+            var older = random( rnd, 200 );
+            var newer = random( rnd, 200 );
+            int size = 4_000;
+            boolean[] o = TestUtils.cover( older, size );
+            boolean[] n = TestUtils.cover( newer, size );
+            var deltas = RangeDiff.diff( older, newer ).toList();
+            boolean[] added = new boolean[ size ];
+            boolean[] removed = new boolean[ size ];
+            IntegerRange previous = null;
+            for ( var d : deltas ) {
+                var r = d.range();
+                assertThat( r.start() ).isLessThan( r.end() );
+                if ( previous != null ) {
+                    assertThat( r.start() ).isGreaterThanOrEqualTo( previous.end() );
+                }
+                previous = r;
+                for ( int p = r.start(); p < r.end(); p++ ) {
+                    ( d.kind() == RangeDiff.Kind.ADDED ? added : removed )[ p ] = true;
+                }
+            }
+            for ( int p = 0; p < size; p++ ) {
+                assertThat( added[ p ] ).as( "added " + p ).isEqualTo( n[ p ] && !o[ p ] );
+                assertThat( removed[ p ] ).as( "removed " + p ).isEqualTo( o[ p ] && !n[ p ] );
+            }
+            assertThat( deltas.stream().filter( d -> d.kind()
+                    == RangeDiff.Kind.ADDED ).map( RangeDiff.Delta::range ) )
+                    .containsExactlyElementsOf( RangeDiff.added( older, newer )
+                            .toList() );
+            assertThat( deltas.stream().filter( d -> d.kind()
+                    == RangeDiff.Kind.REMOVED ).map( RangeDiff.Delta::range ) )
+                    .containsExactlyElementsOf( RangeDiff.removed( older, newer )
+                            .toList() );
+        }
+    }
+
+    static Path write( Path file, List<IntegerRange> ranges ) throws IOException {
+        try ( var out = new DataOutputStream( Files.newOutputStream( file ) ) ) {
+            RangeCodec.INTEGER.writeAll( out, ranges.iterator() );
+        }
+        return file;
+    }
+
+    @Test
+    void tFiles( @TempDir Path dir ) throws IOException {
+        Random rnd = new Random( 74 );
+        var older = random( rnd, 50_000 );
+        var newer = random( rnd, 50_000 );
+        List<RangeDiff.Delta<IntegerRange>> deltas = new ArrayList<>();
+        long n = RangeDiff.diff( write( dir.resolve( "old" ), older ), write( dir
+                .resolve( "new" ), newer ), RangeCodec.INTEGER, deltas::add );
+        assertThat( n ).isEqualTo( deltas.size() );
+        assertThat( deltas ).containsExactlyElementsOf( RangeDiff.diff( older,
+                newer ).toList() );
+    }
+
+    @Test
+    void tTruncatedFile( @TempDir Path dir ) throws IOException {
+        Path file = write( dir.resolve( "old" ), List.of( IntegerRange.of( 1, 2 ) ) );
+        Files.write( file, new byte[]{ 0, 0 }, StandardOpenOption.APPEND );
+        Path empty = write( dir.resolve( "new" ), List.of() );
+        assertThatThrownBy( () -> RangeDiff.diff( file, empty,
+                RangeCodec.INTEGER, d -> {
+        } ) ).isInstanceOf( IOException.class );
+        try ( var in = Files.newInputStream( file ) ) {
+            var reader = RangeCodec.INTEGER.reader( in );
+            assertThat( reader.next() ).isEqualTo( IntegerRange.of( 1, 2 ) );
+            assertThatThrownBy( reader::hasNext ).isInstanceOf(
+                    UncheckedIOException.class );
+        }
+    }
+}
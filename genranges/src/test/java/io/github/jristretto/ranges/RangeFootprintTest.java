@@ -0,0 +1,197 @@
+package io.github.jristretto.ranges;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the RangeFootprint estimates and that all containers report a
+ * plausible footprint.
+ */
+class RangeFootprintTest {
+
+    static final Instant T0 = Instant.parse( "2026-07-01T00:00:00Z" );
+
+    @Test
+    void tPlainRanges() {
+        assertThat( RangeFootprint.rangeBytes( IntegerRange.of( 1_000, 2_000 ) ) )
+                .isEqualTo( 24 + 16 + 16 );
+        // cached Integers are shared by the JVM
+        assertThat( RangeFootprint.rangeBytes( IntegerRange.of( 1, 2 ) ) )
+                .isEqualTo( 24 );
+        assertThat( RangeFootprint.rangeBytes( InstantRange.of( T0, T0
+                .plusSeconds( 1 ) ) ) ).isEqualTo( 24 + 24 + 24 );
+    }
+
+    @Test
+    void tCollectionEstimate() {
+        List<IntegerRange> list = new ArrayList<>();
+        for ( int i = 0; i < 1_000; i++ ) {
+            list.add( IntegerRange.of( 1_000 + i, 2_000 + i ) );
+        }
+        var e = RangeFootprint.of( list );
+        assertThat( e.elementCount() ).isEqualTo( 1_000 );
+        assertThat( e.distinctPoints() ).isEqualTo( 2_000 );
+        assertThat( e.heapBytes() ).isEqualTo( RangeFootprint.listBytes( 1_000 )
+                + 1_000 * 56 );
+        assertThat( e.packedBytes() ).isEqualTo( 16 + 16_000 );
+        assertThat( e.bytesPerElement() ).isBetween( 60.0, 61.0 );
+        assertThat( e.toString() ).contains( "1000 ranges" );
+
+        // ranges that meet share their boundary Instant
+        List<InstantRange> chain = new ArrayList<>();
+        Instant at = T0;
+        for ( int i = 0; i < 100; i++ ) {
+            Instant next = at.plusSeconds( 60 );
+            chain.add( InstantRange.of( at, next ) );
+            at = next;
+        }
+        var shared = RangeFootprint.of( chain );
+        assertThat( shared.distinctPoints() ).isEqualTo( 101 );
+        assertThat( shared.sharedPointBytes() ).isEqualTo( 99 * 24 );
+        // the same range twice counts once, only the list grows
+        chain.add( chain.get( 0 ) );
+        assertThat( RangeFootprint.of( chain ).heapBytes() ).isEqualTo( shared
+                .heapBytes() - RangeFootprint.listBytes( 100 ) + RangeFootprint
+                .listBytes( 101 ) );
+    }
+
+    static List<IntegerRange> ranges( int n ) {
+        return new RangeWorkload( RangeWorkload.Distribution.UNIFORM, 49,
+                1_000_000, 100 ).integerRanges( n );
+    }
+
+    static List<IntegerRange> disjoint( int n ) {
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            result.add( IntegerRange.of( 1_000 + 10 * i, 1_005 + 10 * i ) );
+        }
+        return result;
+    }
+
+    /**
+     * Every container reports its elements, and a positive heap footprint
+     * that grows with them.
+     */
+    @Test
+    void tContainers( @TempDir Path dir ) throws IOException {
+        Map<String, Function<Integer, MemoryFootprint>> builders
+                = new LinkedHashMap<>();
+        builders.put( "PersistentRangeSet", n -> PersistentRangeSet.of(
+                disjoint( n ) ) );
+        builders.put( "RTree", n -> {
+            var tree = new RTree<IntegerRange, Integer, IntegerRange, Integer>(
+                    Integer::doubleValue, Integer::doubleValue );
+            ranges( n ).forEach( r -> tree.insert( new RangeBox<>( r, r ) ) );
+            return tree;
+        } );
+        builders.put( "NestedContainmentList", n -> NestedContainmentList.of(
+                ranges( n ) ) );
+        builders.put( "EndpointIndex", n -> EndpointIndex.of( ranges( n ) ) );
+        builders.put( "CoverageDepthTree", n -> {
+            var tree = CoverageDepthTree.of( ranges( n ) );
+            ranges( n ).forEach( tree::add );
+            return tree;
+        } );
+        builders.put( "OverlapQueryCache", n -> {
+            var all = ranges( n );
+            var cache = new OverlapQueryCache<IntegerRange, Integer, Integer>(
+                    q -> all.stream().filter( q::overlaps ).toList(), 1_000_000,
+                    OverlapQueryCache.Policy.LRU );
+            all.forEach( cache::overlapping );
+            return cache;
+        } );
+        builders.put( "SortedRanges.Endpoints", n -> SortedRanges.Endpoints.of(
+                ranges( n ) ) );
+        builders.put( "RangeBlockSequence", n -> RangeBlockSequence.encode(
+                disjoint( n ), LongRangeMapping.INTEGER ) );
+        builders.put( "WatermarkRangeTracker", n -> {
+            var tracker = new WatermarkRangeTracker( Duration.ZERO, n );
+            for ( int i = 0; i < n; i++ ) {
+                tracker.add( InstantRange.of( T0.plusSeconds( i ), T0
+                        .plusSeconds( i + 10 ) ) );
+            }
+            return tracker;
+        } );
+        builders.put( "RangeTimingWheel", n -> {
+            var wheel = new RangeTimingWheel( Clock.fixed( T0, ZoneOffset.UTC ),
+                    Duration.ofSeconds( 1 ), Runnable::run, r -> {
+            }, r -> {
+            } );
+            for ( int i = 0; i < n; i++ ) {
+                wheel.schedule( InstantRange.of( T0.plusSeconds( i + 1 ), T0
+                        .plusSeconds( i + 10 ) ) );
+            }
+            return wheel;
+        } );
+        builders.put( "CopyOnWriteIndex", n -> new CopyOnWriteIndex<>(
+                NestedContainmentList.of( ranges( n ) ) ) );
+        for ( var b : builders.entrySet() ) {
+            MemoryFootprint small = b.getValue().apply( 100 );
+            MemoryFootprint large = b.getValue().apply( 1_000 );
+            assertThat( small.elementCount() ).as( b.getKey() ).isPositive();
+            assertThat( large.elementCount() ).as( b.getKey() ).isGreaterThan(
+                    small.elementCount() );
+            assertThat( small.heapBytes() ).as( b.getKey() ).isPositive();
+            assertThat( large.heapBytes() ).as( b.getKey() ).isGreaterThan(
+                    small.heapBytes() );
+            assertThat( large.bytesPerElement() ).as( b.getKey() ).isBetween(
+                    1.0, 2_000.0 );
+        }
+        // fixed size summaries
+        var sketch = new DyadicRangeSketch<IntegerRange, Integer>(
+                LongRangeMapping.INTEGER );
+        long empty = sketch.heapBytes();
+        ranges( 1_000 ).forEach( sketch::add );
+        assertThat( sketch.heapBytes() ).isEqualTo( empty ).isGreaterThan( 2L
+                * 32 * 4_350 * 9 * 8 );
+        assertThat( sketch.elementCount() ).isEqualTo( 1_000 );
+
+        // a mapped file is off heap
+        Path file = dir.resolve( "seq" );
+        RangeBlockSequence.encode( disjoint( 1_000 ), LongRangeMapping.INTEGER )
+                .writeTo( file );
+        var mapped = RangeBlockSequence.open( file, LongRangeMapping.INTEGER );
+        assertThat( mapped.offHeapBytes() ).isEqualTo( mapped.encodedBytes() );
+        assertThat( mapped.heapBytes() ).isLessThan( 100 );
+
+        try ( var store = InstantRangeSegmentStore.open( dir.resolve( "store" ),
+                Duration.ofHours( 1 ), 256, 4 ) ) {
+            long before = store.heapBytes();
+            for ( int i = 0; i < 1_000; i++ ) {
+                store.append( InstantRange.of( T0.plusSeconds( i ), T0
+                        .plusSeconds( i + 60 ) ) );
+            }
+            store.flush();
+            assertThat( store.elementCount() ).isEqualTo( 1_000 );
+            assertThat( store.heapBytes() ).isGreaterThan( before + 1_000 * 72 );
+        }
+    }
+
+    @Test
+    void tCopyOnWriteIndexCountsLeasedVersions() {
+        var holder = new CopyOnWriteIndex<>( NestedContainmentList.of( ranges(
+                1_000 ) ) );
+        long one = holder.heapBytes();
+        var lease = holder.acquire();
+        holder.publish( NestedContainmentList.of( ranges( 1_000 ) ) );
+        assertThat( holder.retainedVersionBytes() ).isEqualTo( one );
+        assertThat( holder.heapBytes() ).isEqualTo( 2 * one );
+        lease.close();
+        assertThat( holder.retainedVersionBytes() ).isZero();
+        assertThat( holder.heapBytes() ).isEqualTo( one );
+        assertThat( new CopyOnWriteIndex<>( "not accounted" ).heapBytes() ).isZero();
+    }
+}
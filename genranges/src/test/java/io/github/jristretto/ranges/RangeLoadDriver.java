@@ -0,0 +1,247 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Multi threaded driver that replays a mix of inserts, queries and punches
+ * against any range structure and reports throughput and latency
+ * percentiles.
+ *
+ * <p>
+ * Every thread gets its own {@link RangeWorkload#fork(int) fork} of the
+ * workload, and generates all its operations before the threads start
+ * together, so generation is not measured and a run is reproducible up to
+ * thread interleaving. Latencies are recorded per operation with
+ * {@link System#nanoTime()}.</p>
+ */
+class RangeLoadDriver {
+
+    /**
+     * Kind of operation.
+     */
+    enum Operation {
+        INSERT, QUERY, PUNCH
+    }
+
+    /**
+     * The structure under load, adapted to the three operations. It must be
+     * thread safe.
+     *
+     * @param <R> range type
+     */
+    interface Target<R> {
+
+        void insert( R range );
+
+        /**
+         * Query, returning something derived from the answer, so the work is
+         * not optimised away.
+         *
+         * @param range query
+         * @return e.g. the number of ranges found
+         */
+        long query( R range );
+
+        void punch( R range );
+    }
+
+    /**
+     * Fractions of the operations, normalised to sum to one.
+     *
+     * @param insert weight of inserts
+     * @param query weight of queries
+     * @param punch weight of punches
+     */
+    record Mix(double insert, double query, double punch) {
+
+        Mix {
+            if ( insert < 0 || query < 0 || punch < 0 || insert + query + punch
+                    <= 0 ) {
+                throw new IllegalArgumentException( "invalid mix " + insert
+                        + "/" + query + "/" + punch );
+            }
+        }
+
+        Operation pick( double u ) {
+            double total = insert + query + punch;
+            if ( u * total < insert ) {
+                return Operation.INSERT;
+            }
+            return u * total < insert + query ? Operation.QUERY
+                    : Operation.PUNCH;
+        }
+    }
+
+    /**
+     * Outcome of a run.
+     *
+     * @param elapsed wall clock time of the run
+     * @param latencies per operation kind, sorted nanoseconds
+     * @param checksum sum of the query answers
+     */
+    record Report(Duration elapsed, Map<Operation, long[]> latencies,
+            long checksum) {
+
+        long operations() {
+            return latencies.values().stream().mapToLong( l -> l.length ).sum();
+        }
+
+        long operations( Operation op ) {
+            return latencies.get( op ).length;
+        }
+
+        /**
+         * Operations per second over all threads.
+         *
+         * @return the throughput
+         */
+        double throughput() {
+            return operations() * 1e9 / Math.max( 1, elapsed.toNanos() );
+        }
+
+        /**
+         * Latency at a quantile, nearest rank.
+         *
+         * @param op kind of operation
+         * @param q quantile, 0 to 1
+         * @return the latency, zero when no such operations ran
+         */
+        Duration percentile( Operation op, double q ) {
+            long[] sorted = latencies.get( op );
+            if ( sorted.length == 0 ) {
+                return Duration.ZERO;
+            }
+            int rank = (int) Math.ceil( q * sorted.length ) - 1;
+            return Duration.ofNanos( sorted[ Math.max( 0, rank ) ] );
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder( String.format(
+                    "%d ops in %s, %.0f ops/s", operations(), elapsed,
+                    throughput() ) );
+            for ( Operation op : Operation.values() ) {
+                if ( operations( op ) > 0 ) {
+                    sb.append( String.format(
+                            "%n  %-6s n=%d p50=%dns p90=%dns p99=%dns p99.9=%dns",
+                            op, operations( op ),
+                            percentile( op, 0.5 ).toNanos(),
+                            percentile( op, 0.9 ).toNanos(),
+                            percentile( op, 0.99 ).toNanos(),
+                            percentile( op, 0.999 ).toNanos() ) );
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private RangeLoadDriver() {
+    }
+
+    /**
+     * Run a load.
+     *
+     * @param <R> range type
+     * @param target structure under load
+     * @param workload shape of the ranges, forked per thread
+     * @param mapping to the range type
+     * @param mix of operations
+     * @param threads number of threads
+     * @param operationsPerThread operations of every thread
+     * @return the report
+     * @throws Exception when an operation fails
+     */
+    static <R extends Range<R, ?, ?>> Report run( Target<R> target,
+            RangeWorkload workload, LongRangeMapping<R, ?> mapping, Mix mix,
+            int threads, int operationsPerThread ) throws Exception {
+        List<List<R>> ranges = new ArrayList<>();
+        List<Operation[]> ops = new ArrayList<>();
+        for ( int t = 0; t < threads; t++ ) {
+            RangeWorkload w = workload.fork( t );
+            SplittableRandom pick = new SplittableRandom( t );
+            ranges.add( w.ranges( mapping, 0, operationsPerThread ) );
+            Operation[] o = new Operation[ operationsPerThread ];
+            for ( int i = 0; i < o.length; i++ ) {
+                o[ i ] = mix.pick( pick.nextDouble() );
+            }
+            ops.add( o );
+        }
+        ExecutorService pool = Executors.newFixedThreadPool( threads );
+        try {
+            CountDownLatch ready = new CountDownLatch( threads );
+            CountDownLatch go = new CountDownLatch( 1 );
+            List<Future<long[]>> futures = new ArrayList<>();
+            long[] checksums = new long[ threads ];
+            for ( int t = 0; t < threads; t++ ) {
+                int thread = t;
+                futures.add( pool.submit( () -> {
+                    List<R> rs = ranges.get( thread );
+                    Operation[] os = ops.get( thread );
+                    long[] nanos = new long[ os.length ];
+                    long sum = 0;
+                    ready.countDown();
+                    go.await();
+                    for ( int i = 0; i < os.length; i++ ) {
+                        long t0 = System.nanoTime();
+                        switch ( os[ i ] ) {
+                            case INSERT -> target.insert( rs.get( i ) );
+                            case QUERY -> sum += target.query( rs.get( i ) );
+                            case PUNCH -> target.punch( rs.get( i ) );
+                        }
+                        nanos[ i ] = System.nanoTime() - t0;
+                    }
+                    checksums[ thread ] = sum;
+                    return nanos;
+                } ) );
+            }
+            ready.await();
+            long start = System.nanoTime();
+            go.countDown();
+            List<long[]> perThread = new ArrayList<>();
+            for ( Future<long[]> f : futures ) {
+                perThread.add( f.get() );
+            }
+            Duration elapsed = Duration.ofNanos( System.nanoTime() - start );
+            return new Report( elapsed, byOperation( ops, perThread ), Arrays
+                    .stream( checksums ).sum() );
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Map<Operation, long[]> byOperation( List<Operation[]> ops,
+            List<long[]> nanos ) {
+        Map<Operation, long[]> result = new EnumMap<>( Operation.class );
+        for ( Operation op : Operation.values() ) {
+            int n = 0;
+            for ( Operation[] o : ops ) {
+                for ( Operation x : o ) {
+                    n += x == op ? 1 : 0;
+                }
+            }
+            long[] l = new long[ n ];
+            int k = 0;
+            for ( int t = 0; t < ops.size(); t++ ) {
+                Operation[] o = ops.get( t );
+                for ( int i = 0; i < o.length; i++ ) {
+                    if ( o[ i ] == op ) {
+                        l[ k++ ] = nanos.get( t )[ i ];
+                    }
+                }
+            }
+            Arrays.sort( l );
+            result.put( op, l );
+        }
+        return result;
+    }
+}
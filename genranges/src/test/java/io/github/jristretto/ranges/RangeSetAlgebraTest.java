@@ -0,0 +1,97 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests RangeSetAlgebra with point specs and against a boolean model.
+ */
+class RangeSetAlgebraTest {
+
+    final RangeTestDataFactory<IntegerRange, Integer, Integer> helper
+            = RangeTestDataFactory.integers();
+
+    /**
+     * Operations in point spec notation, '-' is the empty set.
+     *
+     * @param op operation
+     * @param a first operand
+     * @param b second operand
+     * @param expected result
+     */
+    @ParameterizedTest
+    @CsvSource( {
+        "UNION,ab|cd,bc,ad",
+        "UNION,ab,cd,ab|cd",
+        "INTERSECTION,ad,bc|ef,bc",
+        "INTERSECTION,ab,bc,-",
+        "DIFFERENCE,af,bc|de,ab|cd|ef",
+        "DIFFERENCE,ab|bc,ab,bc",
+        "SYMMETRIC_DIFFERENCE,ac,bd,ab|cd",
+        "SYMMETRIC_DIFFERENCE,ab,ab,-",
+    } )
+    void tOperations( RangeSetAlgebra.Operation op, String a, String b,
+            String expected ) {
+        assertThat( RangeSetAlgebra.apply( op, helper.rangeList( a ), helper
+                .rangeList( b ) ) )
+                .containsExactlyElementsOf( helper.rangeList( expected ) );
+    }
+
+    static List<IntegerRange> randomSet( Random rnd, int span ) {
+        List<IntegerRange> raw = new ArrayList<>();
+        for ( int i = 0; i < span / 10; i++ ) {
+            int s = rnd.nextInt( span );
+            raw.add( IntegerRange.of( s, Math.min( span, s + rnd.nextInt( 15 ) ) ) );
+        }
+        return RangeCoalescer.coalesce( raw );
+    }
+
+    @ParameterizedTest
+    @EnumSource( RangeSetAlgebra.Operation.class )
+    void tRandomAgainstModel( RangeSetAlgebra.Operation op ) {
+        Random rnd = new Random( 32 + op.ordinal() );
+        int span = 5_000;
+        var a = randomSet( rnd, span );
+        var b = randomSet( rnd, span );
+        boolean[] ma = TestUtils.cover( a, span );
+        boolean[] mb = TestUtils.cover( b, span );
+        List<IntegerRange> result = RangeSetAlgebra.apply( op, a, b ).toList();
+        boolean[] mr = TestUtils.cover( result, span );
+        for ( int p = 0; p < span; p++ ) {
+            assertThat( mr[ p ] ).as( op + " at " + p )
+                    .isEqualTo( op.test( ma[ p ], mb[ p ] ) );
+        }
+        // output is coalesced
+        for ( int i = 1; i < result.size(); i++ ) {
+            assertThat( result.get( i - 1 ).end() ).isLessThan( result.get( i )
+                    .start() );
+        }
+    }
+
+    @Test
+    void tWorksWithPersistentRangeSets() {
+        var availability = PersistentRangeSet.of( List.of( IntegerRange.of( 9,
+                17 ) ) );
+        var bookings = PersistentRangeSet.<IntegerRange, Integer, Integer>empty()
+                .union( IntegerRange.of( 10, 11 ) )
+                .union( IntegerRange.of( 13, 15 ) );
+        assertThat( RangeSetAlgebra.difference( availability, bookings ) )
+                .containsExactly( IntegerRange.of( 9, 10 ), IntegerRange.of( 11,
+                        13 ), IntegerRange.of( 15, 17 ) );
+    }
+
+    @Test
+    void tRejectsOverlappingInput() {
+        var bad = List.of( IntegerRange.of( 0, 10 ), IntegerRange.of( 5, 12 ) );
+        assertThatThrownBy( () -> RangeSetAlgebra.union( bad, List.of() )
+                .toList() )
+                .isInstanceOf( IllegalArgumentException.class );
+    }
+}
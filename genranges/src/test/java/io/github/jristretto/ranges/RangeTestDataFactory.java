@@ -14,6 +14,11 @@ import static java.util.stream.Collectors.toList;
  */
 public abstract class RangeTestDataFactory< R, P, D> {
 
+    /**
+     * Points a to f of the IntegerRange tests.
+     */
+    static final Integer[] INTEGER_POINTS = { 42, 51, 55, 1023, 1610, 2840 };
+
     protected final P[] points;
 
     /**
@@ -25,6 +30,26 @@ public abstract class RangeTestDataFactory< R, P, D> {
         this.points = points;
     }
 
+    /**
+     * Factory of IntegerRanges on the {@link #INTEGER_POINTS}, shared by the
+     * tests of the range sets and algorithms.
+     *
+     * @return the factory
+     */
+    static RangeTestDataFactory<IntegerRange, Integer, Integer> integers() {
+        return new RangeTestDataFactory<>( INTEGER_POINTS ) {
+            @Override
+            IntegerRange createRange( Integer start, Integer end ) {
+                return IntegerRange.of( start, end );
+            }
+
+            @Override
+            Integer distance( Integer a, Integer b ) {
+                return b - a;
+            }
+        };
+    }
+
     /**
      * Lookup up a point from the spec.
      *
@@ -80,6 +105,29 @@ public abstract class RangeTestDataFactory< R, P, D> {
         List<P> p1 = pointList( spec );
         return createRange( p1.get( 0 ), p1.get( 1 ) );
     }
+
+    /**
+     * Helper to turn a spec like ab|cd into a list of ranges.
+     *
+     * @param spec ranges separated by '|', or '-' for none
+     * @return the ranges
+     */
+    List<R> rangeList( String spec ) {
+        return spec.equals( "-" ) ? List.of() : restRanges( "\\|", spec );
+    }
+
+    /**
+     * Spec of a range, the inverse of {@link #createRange(String)}.
+     *
+     * @param start of the range, one of the points
+     * @param end of the range, one of the points
+     * @return the spec, e.g. bc
+     */
+    String spec( P start, P end ) {
+        List<P> p = Arrays.asList( points );
+        return "" + (char) ( 'a' + p.indexOf( start ) )
+                + (char) ( 'a' + p.indexOf( end ) );
+    }
     
     
         /**
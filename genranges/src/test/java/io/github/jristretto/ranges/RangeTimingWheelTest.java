@@ -0,0 +1,152 @@
+package io.github.jristretto.ranges;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests RangeTimingWheel with a hand driven clock and a direct executor.
+ */
+class RangeTimingWheelTest {
+
+    static final Instant T0 = Instant.parse( "2026-05-01T00:00:00Z" );
+
+    static final class ManualClock extends Clock {
+
+        Instant now = T0;
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone( ZoneId zone ) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    final ManualClock clock = new ManualClock();
+    final Map<InstantRange, Instant> started = new HashMap<>();
+    final Map<InstantRange, Instant> ended = new HashMap<>();
+    final RangeTimingWheel wheel = new RangeTimingWheel( clock, Duration
+            .ofSeconds( 1 ), Runnable::run, r -> started.put( r, clock.now ),
+            r -> ended.put( r, clock.now ) );
+
+    static InstantRange r( long from, long to ) {
+        return InstantRange.of( T0.plusSeconds( from ), T0.plusSeconds( to ) );
+    }
+
+    @Test
+    void tFiresStartAndEnd() {
+        var range = r( 5, 10 );
+        wheel.schedule( range );
+        clock.now = T0.plusSeconds( 4 );
+        assertThat( wheel.advance() ).isZero();
+        clock.now = T0.plusSeconds( 7 );
+        assertThat( wheel.advance() ).isEqualTo( 1 );
+        assertThat( started ).containsEntry( range, T0.plusSeconds( 7 ) );
+        clock.now = T0.plusSeconds( 10 );
+        wheel.advance();
+        assertThat( ended ).containsEntry( range, T0.plusSeconds( 10 ) );
+        assertThat( wheel.pending() ).isZero();
+    }
+
+    @Test
+    void tCancel() {
+        var handle = wheel.schedule( r( 5, 10 ) );
+        clock.now = T0.plusSeconds( 6 );
+        wheel.advance();
+        assertThat( handle.cancel() ).as( "end still pending" ).isTrue();
+        assertThat( handle.cancel() ).isFalse();
+        clock.now = T0.plusSeconds( 20 );
+        assertThat( wheel.advance() ).isZero();
+        assertThat( started ).containsKey( handle.range() );
+        assertThat( ended ).isEmpty();
+    }
+
+    @Test
+    void tPastDeadlineFiresOnNextAdvance() {
+        clock.now = T0.plusSeconds( 100 );
+        wheel.advance();
+        wheel.schedule( r( 10, 20 ) );
+        clock.now = T0.plusSeconds( 101 );
+        assertThat( wheel.advance() ).isEqualTo( 2 );
+    }
+
+    /**
+     * Deadlines that move down a level fire at their tick, also when it is
+     * the tick at which the higher level slot comes round.
+     */
+    @Test
+    void tCascadedDeadlinesFireOnTime() {
+        var aligned = r( 64, 4096 );
+        var after = r( 4097, 64 * 64 * 64 );
+        wheel.schedule( aligned );
+        wheel.schedule( after );
+        for ( long deadline : new long[]{ 64, 4096, 4097, 64 * 64 * 64 } ) {
+            clock.now = T0.plusSeconds( deadline - 1 );
+            assertThat( wheel.advance() ).as( "before " + deadline ).isZero();
+            clock.now = T0.plusSeconds( deadline );
+            assertThat( wheel.advance() ).as( "at " + deadline ).isEqualTo( 1 );
+        }
+        assertThat( started ).containsEntry( aligned, T0.plusSeconds( 64 ) )
+                .containsEntry( after, T0.plusSeconds( 4097 ) );
+        assertThat( ended ).containsEntry( aligned, T0.plusSeconds( 4096 ) )
+                .containsEntry( after, T0.plusSeconds( 64 * 64 * 64 ) );
+        assertThat( wheel.pending() ).isZero();
+    }
+
+    @Test
+    void tManyRangesOverLongHorizon() {
+        Random rnd = new Random( 39 );
+        List<RangeTimingWheel.Handle> handles = new ArrayList<>();
+        for ( int i = 0; i < 20_000; i++ ) {
+            long s = 1 + rnd.nextInt( 10_000_000 );
+            handles.add( wheel.schedule( r( s, s + rnd.nextInt( 1_000_000 ) ) ) );
+        }
+        List<InstantRange> cancelled = new ArrayList<>();
+        for ( int i = 0; i < 1_000; i++ ) {
+            var h = handles.get( rnd.nextInt( handles.size() ) );
+            if ( h.cancel() ) {
+                cancelled.add( h.range() );
+            }
+        }
+        Map<Instant, Instant> previousAdvance = new HashMap<>();
+        Instant last = T0;
+        while ( wheel.pending() > 0 ) {
+            clock.now = clock.now.plusSeconds( 1 + rnd.nextInt( 5_000 ) );
+            wheel.advance();
+            previousAdvance.put( clock.now, last );
+            last = clock.now;
+        }
+        for ( var h : handles ) {
+            InstantRange range = h.range();
+            if ( cancelled.contains( range ) ) {
+                continue;
+            }
+            // fired at the first advance at or after the deadline
+            assertThat( started.get( range ) ).isAfterOrEqualTo( range.start() );
+            assertThat( previousAdvance.get( started.get( range ) ) )
+                    .isBefore( range.start() );
+            assertThat( ended.get( range ) ).isAfterOrEqualTo( range.end() );
+            assertThat( previousAdvance.get( ended.get( range ) ) )
+                    .isBefore( range.end() );
+        }
+    }
+}
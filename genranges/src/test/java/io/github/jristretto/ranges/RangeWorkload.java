@@ -0,0 +1,251 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible generator of realistic range workloads, for tests and load
+ * runs that need more than the six points of {@link RangeTestDataFactory}.
+ *
+ * <p>
+ * Ranges are generated as long bounds in [0, domain) and turned into any
+ * range type through a {@link LongRangeMapping}, so the same seed gives the
+ * same workload as IntegerRange and as InstantRange. A generator is not
+ * thread safe; give every thread its own, e.g. with {@link #fork(int)}.</p>
+ */
+class RangeWorkload {
+
+    /**
+     * Shape of the generated ranges.
+     */
+    enum Distribution {
+        /**
+         * Starts and lengths uniform, length up to twice the mean.
+         */
+        UNIFORM,
+        /**
+         * Starts in a few hot buckets with Zipf distributed popularity.
+         */
+        ZIPF,
+        /**
+         * Starts normally distributed around a few cluster centres.
+         */
+        CLUSTERED,
+        /**
+         * Ranges mostly inside the previous one, as trees of nested ranges.
+         */
+        NESTED,
+        /**
+         * Every range starts where the previous one ended.
+         */
+        ADJACENT,
+        /**
+         * Uniform starts with Pareto distributed lengths: mostly short, some
+         * very long.
+         */
+        LONG_TAIL
+    }
+
+    static final int ZIPF_BUCKETS = 1024;
+    static final double ZIPF_EXPONENT = 1.1;
+    static final int CLUSTERS = 16;
+    static final double PARETO_ALPHA = 1.5;
+    static final double NEST_PROBABILITY = 0.8;
+
+    private final Distribution distribution;
+    private final long seed;
+    private final long domain;
+    private final long meanLength;
+    private final SplittableRandom random;
+    private final double[] zipfCdf;
+    private final long[] hot;
+    private long previousStart;
+    private long previousEnd;
+
+    /**
+     * Create a generator.
+     *
+     * @param distribution shape of the ranges
+     * @param seed for reproducibility
+     * @param domain range of the generated bounds, [0, domain)
+     * @param meanLength typical length, positive and below domain
+     */
+    RangeWorkload( Distribution distribution, long seed, long domain,
+            long meanLength ) {
+        if ( meanLength <= 0 || meanLength >= domain ) {
+            throw new IllegalArgumentException( "mean length " + meanLength
+                    + " not in (0, " + domain + ")" );
+        }
+        this.distribution = Objects.requireNonNull( distribution );
+        this.seed = seed;
+        this.domain = domain;
+        this.meanLength = meanLength;
+        this.random = new SplittableRandom( seed );
+        this.zipfCdf = zipfCdf();
+        // hot bucket positions and cluster centres, fixed by the seed
+        this.hot = new long[ Math.max( ZIPF_BUCKETS, CLUSTERS ) ];
+        for ( int i = 0; i < hot.length; i++ ) {
+            hot[ i ] = random.nextLong( domain );
+        }
+    }
+
+    private static double[] zipfCdf() {
+        double[] cdf = new double[ ZIPF_BUCKETS ];
+        double sum = 0;
+        for ( int k = 0; k < ZIPF_BUCKETS; k++ ) {
+            sum += 1 / Math.pow( k + 1, ZIPF_EXPONENT );
+            cdf[ k ] = sum;
+        }
+        for ( int k = 0; k < ZIPF_BUCKETS; k++ ) {
+            cdf[ k ] /= sum;
+        }
+        return cdf;
+    }
+
+    /**
+     * Independent generator with the same shape, for another thread.
+     *
+     * @param stream number of the generator
+     * @return the generator
+     */
+    RangeWorkload fork( int stream ) {
+        return new RangeWorkload( distribution, seed * 31 + stream + 1, domain,
+                meanLength );
+    }
+
+    Distribution distribution() {
+        return distribution;
+    }
+
+    /**
+     * Next bounds, start and end.
+     *
+     * @return start and end, start &lt; end
+     */
+    long[] nextBounds() {
+        long start;
+        long length;
+        switch ( distribution ) {
+            case UNIFORM -> {
+                start = random.nextLong( domain );
+                length = uniformLength();
+            }
+            case ZIPF -> {
+                int k = zipfRank();
+                long width = Math.max( 1, domain / ZIPF_BUCKETS );
+                start = hot[ k ] + random.nextLong( width );
+                length = uniformLength();
+            }
+            case CLUSTERED -> {
+                long centre = hot[ random.nextInt( CLUSTERS ) ];
+                start = centre + (long) ( random.nextGaussian() * domain / 200 );
+                length = uniformLength();
+            }
+            case NESTED -> {
+                long parent = previousEnd - previousStart;
+                if ( parent > 1 && random.nextDouble() < NEST_PROBABILITY ) {
+                    length = 1 + random.nextLong( parent - 1 );
+                    start = previousStart + random.nextLong( parent - length + 1 );
+                } else {
+                    length = 1 + random.nextLong( 16 * meanLength );
+                    start = random.nextLong( domain );
+                }
+            }
+            case ADJACENT -> {
+                length = uniformLength();
+                start = previousEnd + length > domain ? 0 : previousEnd;
+            }
+            case LONG_TAIL -> {
+                start = random.nextLong( domain );
+                // Pareto with the given mean
+                double xm = meanLength * ( PARETO_ALPHA - 1 ) / PARETO_ALPHA;
+                length = (long) Math.ceil( xm / Math.pow( 1 - random
+                        .nextDouble(), 1 / PARETO_ALPHA ) );
+            }
+            default -> throw new AssertionError( distribution );
+        }
+        start = Math.floorMod( start, domain );
+        long end = Math.min( domain, start + Math.max( 1, length ) );
+        previousStart = start;
+        previousEnd = end;
+        return new long[]{ start, end };
+    }
+
+    private long uniformLength() {
+        return 1 + random.nextLong( 2 * meanLength );
+    }
+
+    private int zipfRank() {
+        double u = random.nextDouble();
+        int lo = 0;
+        int hi = ZIPF_BUCKETS - 1;
+        while ( lo < hi ) {
+            int mid = ( lo + hi ) >>> 1;
+            if ( zipfCdf[ mid ] < u ) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Next range of any type.
+     *
+     * @param <R> range type
+     * @param mapping to the range type
+     * @param origin added to the generated bounds
+     * @return the range
+     */
+    <R extends Range<R, ?, ?>> R next( LongRangeMapping<R, ?> mapping,
+            long origin ) {
+        long[] b = nextBounds();
+        return mapping.range( origin + b[ 0 ], origin + b[ 1 ] );
+    }
+
+    /**
+     * Generate ranges of any type.
+     *
+     * @param <R> range type
+     * @param mapping to the range type
+     * @param origin added to the generated bounds
+     * @param n number of ranges
+     * @return the ranges, in generation order
+     */
+    <R extends Range<R, ?, ?>> List<R> ranges( LongRangeMapping<R, ?> mapping,
+            long origin, int n ) {
+        List<R> result = new ArrayList<>( n );
+        for ( int i = 0; i < n; i++ ) {
+            result.add( next( mapping, origin ) );
+        }
+        return result;
+    }
+
+    /**
+     * Generate integer ranges.
+     *
+     * @param n number of ranges
+     * @return the ranges
+     */
+    List<IntegerRange> integerRanges( int n ) {
+        return ranges( LongRangeMapping.INTEGER, 0, n );
+    }
+
+    /**
+     * Generate instant ranges, one generated unit being one unit of time.
+     *
+     * @param origin instant of bound 0
+     * @param unit duration of one generated unit
+     * @param n number of ranges
+     * @return the ranges
+     */
+    List<InstantRange> instantRanges( Instant origin, Duration unit, int n ) {
+        var mapping = LongRangeMapping.instants( unit );
+        return ranges( mapping, mapping.toLong( origin ), n );
+    }
+}
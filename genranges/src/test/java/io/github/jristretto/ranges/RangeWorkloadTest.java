@@ -0,0 +1,124 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests the shapes of RangeWorkload and a short run of RangeLoadDriver.
+ */
+class RangeWorkloadTest {
+
+    static final long DOMAIN = 1_000_000;
+
+    @ParameterizedTest
+    @EnumSource( RangeWorkload.Distribution.class )
+    void tReproducibleAndInDomain( RangeWorkload.Distribution d ) {
+        var a = new RangeWorkload( d, 48, DOMAIN, 100 ).integerRanges( 10_000 );
+        var b = new RangeWorkload( d, 48, DOMAIN, 100 ).integerRanges( 10_000 );
+        assertThat( a ).isEqualTo( b );
+        assertThat( a ).allSatisfy( r -> {
+            assertThat( r.start() ).isBetween( 0, (int) DOMAIN - 1 );
+            assertThat( r.end() ).isBetween( r.start() + 1, (int) DOMAIN );
+        } );
+        assertThat( new RangeWorkload( d, 49, DOMAIN, 100 ).integerRanges( 100 ) )
+                .isNotEqualTo( a.subList( 0, 100 ) );
+    }
+
+    @Test
+    void tSameShapeAsInstants() {
+        Instant origin = Instant.parse( "2026-01-01T00:00:00Z" );
+        var ints = new RangeWorkload( RangeWorkload.Distribution.CLUSTERED, 4,
+                DOMAIN, 60 ).integerRanges( 1_000 );
+        var instants = new RangeWorkload( RangeWorkload.Distribution.CLUSTERED,
+                4, DOMAIN, 60 ).instantRanges( origin, Duration.ofSeconds( 1 ),
+                1_000 );
+        for ( int i = 0; i < ints.size(); i++ ) {
+            assertThat( instants.get( i ).start() ).isEqualTo( origin
+                    .plusSeconds( ints.get( i ).start() ) );
+            assertThat( instants.get( i ).length() ).isEqualTo( Duration
+                    .ofSeconds( ints.get( i ).length() ) );
+        }
+    }
+
+    @Test
+    void tShapes() {
+        var adjacent = gen( RangeWorkload.Distribution.ADJACENT );
+        long meeting = 0;
+        for ( int i = 1; i < adjacent.size(); i++ ) {
+            meeting += adjacent.get( i - 1 ).meets( adjacent.get( i ) ) ? 1 : 0;
+        }
+        assertThat( meeting ).isGreaterThan( adjacent.size() * 9 / 10 );
+
+        var nested = gen( RangeWorkload.Distribution.NESTED );
+        long inside = 0;
+        for ( int i = 1; i < nested.size(); i++ ) {
+            inside += nested.get( i - 1 ).contains( nested.get( i ) ) ? 1 : 0;
+        }
+        assertThat( inside ).isGreaterThan( nested.size() * 7 / 10 );
+
+        var longTail = gen( RangeWorkload.Distribution.LONG_TAIL );
+        int maxLength = longTail.stream().mapToInt( IntegerRange::length ).max()
+                .getAsInt();
+        double median = longTail.stream().mapToInt( IntegerRange::length )
+                .sorted().skip( longTail.size() / 2 ).findFirst().getAsInt();
+        assertThat( maxLength ).isGreaterThan( (int) ( 50 * median ) );
+
+        // the hottest of 1024 buckets draws far more than its fair share
+        var zipf = gen( RangeWorkload.Distribution.ZIPF );
+        Map<Integer, Integer> perBucket = new HashMap<>();
+        zipf.forEach( r -> perBucket.merge( (int) ( r.start() / ( DOMAIN / 1024 ) ),
+                1, Integer::sum ) );
+        int hottest = perBucket.values().stream().mapToInt( i -> i ).max()
+                .getAsInt();
+        assertThat( hottest ).isGreaterThan( zipf.size() / 20 );
+    }
+
+    static List<IntegerRange> gen( RangeWorkload.Distribution d ) {
+        return new RangeWorkload( d, 42, DOMAIN, 100 ).integerRanges( 20_000 );
+    }
+
+    @Test
+    void tDriverAgainstPersistentSet() throws Exception {
+        AtomicReference<PersistentRangeSet<IntegerRange, Integer, Integer>> set
+                = new AtomicReference<>( PersistentRangeSet.empty() );
+        RangeLoadDriver.Target<IntegerRange> target = new RangeLoadDriver.Target<>() {
+            @Override
+            public void insert( IntegerRange range ) {
+                set.updateAndGet( s -> s.union( range ) );
+            }
+
+            @Override
+            public long query( IntegerRange range ) {
+                return set.get().overlapping( range ).count();
+            }
+
+            @Override
+            public void punch( IntegerRange range ) {
+                set.updateAndGet( s -> s.punch( range ) );
+            }
+        };
+        var report = RangeLoadDriver.run( target, new RangeWorkload(
+                RangeWorkload.Distribution.UNIFORM, 7, DOMAIN, 100 ),
+                LongRangeMapping.INTEGER, new RangeLoadDriver.Mix( 0.3, 0.6, 0.1 ),
+                4, 2_000 );
+        assertThat( report.operations() ).isEqualTo( 8_000 );
+        assertThat( report.operations( RangeLoadDriver.Operation.QUERY ) )
+                .isBetween( 4_400L, 5_200L );
+        assertThat( report.throughput() ).isPositive();
+        for ( var op : RangeLoadDriver.Operation.values() ) {
+            assertThat( report.percentile( op, 0.5 ) ).isLessThanOrEqualTo(
+                    report.percentile( op, 0.99 ) );
+        }
+        assertThat( report.toString() ).contains( "p99.9" );
+        assertThat( set.get().size() ).isPositive();
+    }
+}
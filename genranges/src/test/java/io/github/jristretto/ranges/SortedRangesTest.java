@@ -0,0 +1,139 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests SortedRanges probes against brute force.
+ */
+class SortedRangesTest {
+
+    static final List<IntegerRange> BOOKED = List.of( IntegerRange.of( 10, 20 ),
+            IntegerRange.of( 20, 30 ), IntegerRange.of( 40, 50 ), IntegerRange
+            .of( 70, 71 ) );
+
+    @ParameterizedTest
+    @CsvSource( {
+        // s,e,first,count
+        "0,10,-1,0",
+        "0,11,0,1",
+        "19,21,0,2",
+        "20,21,1,1",
+        "30,40,-1,0",
+        "25,45,1,2",
+        "50,70,-1,0",
+        "60,80,3,1",
+        "0,99,0,4",
+        "15,15,-1,0", } )
+    void tProbes( int s, int e, int first, int count ) {
+        var q = IntegerRange.of( s, e );
+        assertThat( SortedRanges.firstOverlap( BOOKED, q ) ).isEqualTo( first );
+        assertThat( SortedRanges.overlapsAny( BOOKED, q ) ).isEqualTo( first >= 0 );
+        assertThat( SortedRanges.countOverlapping( BOOKED, q ) ).isEqualTo( count );
+        assertThat( SortedRanges.Endpoints.of( BOOKED ).countOverlapping( q ) )
+                .isEqualTo( count );
+    }
+
+    @Test
+    void tContainsPoint() {
+        assertThat( SortedRanges.containsPoint( BOOKED, 9 ) ).isFalse();
+        assertThat( SortedRanges.containsPoint( BOOKED, 10 ) ).isTrue();
+        assertThat( SortedRanges.indexContaining( BOOKED, 20 ) ).isEqualTo( 1 );
+        assertThat( SortedRanges.containsPoint( BOOKED, 30 ) ).isFalse();
+        assertThat( SortedRanges.containsPoint( BOOKED, 70 ) ).isTrue();
+        assertThat( SortedRanges.containsPoint( BOOKED, 71 ) ).isFalse();
+        assertThat( SortedRanges.containsPoint( List.<IntegerRange>of(), 1 ) )
+                .isFalse();
+        assertThat( SortedRanges.containsPoints( BOOKED, List.of( 9, 10, 29, 30,
+                70, 71 ) ) ).containsExactly( false, true, true, false, true,
+                false );
+    }
+
+    static List<IntegerRange> randomDisjoint( Random rnd, int n ) {
+        List<IntegerRange> result = new ArrayList<>();
+        int at = 0;
+        for ( int i = 0; i < n; i++ ) {
+            at += rnd.nextInt( 5 );
+            int len = 1 + rnd.nextInt( 10 );
+            result.add( IntegerRange.of( at, at + len ) );
+            at += len;
+        }
+        return result;
+    }
+
+    static List<IntegerRange> randomQueries( Random rnd, int n, int bound ) {
+        List<IntegerRange> result = new ArrayList<>();
+        for ( int i = 0; i < n; i++ ) {
+            int s = rnd.nextInt( bound );
+            result.add( IntegerRange.of( s, s + rnd.nextInt( 30 ) ) );
+        }
+        result.sort( Comparator.naturalOrder() );
+        return result;
+    }
+
+    @Test
+    void tBatchesMatchBruteForce() {
+        Random rnd = new Random( 45 );
+        var sorted = randomDisjoint( rnd, 2_000 );
+        int bound = sorted.get( sorted.size() - 1 ).end() + 20;
+        var queries = randomQueries( rnd, 3_000, bound );
+        int[] first = SortedRanges.firstOverlaps( sorted, queries );
+        boolean[] any = SortedRanges.overlapsAny( sorted, queries );
+        for ( int i = 0; i < queries.size(); i++ ) {
+            var q = queries.get( i );
+            int expected = -1;
+            for ( int j = 0; j < sorted.size(); j++ ) {
+                if ( sorted.get( j ).overlaps( q ) ) {
+                    expected = j;
+                    break;
+                }
+            }
+            assertThat( first[ i ] ).as( q.toString() ).isEqualTo( expected );
+            assertThat( any[ i ] ).isEqualTo( expected >= 0 );
+            assertThat( SortedRanges.firstOverlap( sorted, q ) ).isEqualTo(
+                    expected );
+            assertThat( SortedRanges.countOverlapping( sorted, q ) ).isEqualTo(
+                    (int) sorted.stream().filter( r -> r.overlaps( q ) ).count() );
+        }
+        List<Integer> points = queries.stream().map( IntegerRange::start )
+                .collect( Collectors.toList() );
+        boolean[] contained = SortedRanges.containsPoints( sorted, points );
+        for ( int i = 0; i < points.size(); i++ ) {
+            int p = points.get( i );
+            assertThat( contained[ i ] ).isEqualTo( sorted.stream().anyMatch(
+                    r -> r.contains( p ) ) );
+        }
+    }
+
+    @Test
+    void tEndpointsCountOverlappingRanges() {
+        Random rnd = new Random( 54 );
+        var ranges = randomQueries( rnd, 2_000, 1_000 );
+        var endpoints = SortedRanges.Endpoints.<IntegerRange, Integer>of( ranges );
+        for ( var q : randomQueries( rnd, 500, 1_100 ) ) {
+            assertThat( endpoints.countOverlapping( q ) ).as( q.toString() )
+                    .isEqualTo( (int) ranges.stream().filter( r -> r.overlaps( q ) )
+                            .count() );
+            assertThat( endpoints.countContaining( q.start() ) ).isEqualTo(
+                    (int) ranges.stream().filter( r -> r.contains( q.start() ) )
+                            .count() );
+        }
+    }
+
+    @Test
+    void tUnsortedBatchRejected() {
+        var queries = List.of( IntegerRange.of( 5, 6 ), IntegerRange.of( 1, 2 ) );
+        assertThatThrownBy( () -> SortedRanges.firstOverlaps( BOOKED, queries ) )
+                .isInstanceOf( IllegalArgumentException.class );
+        assertThatThrownBy( () -> SortedRanges.containsPoints( BOOKED, List.of(
+                3, 2 ) ) ).isInstanceOf( IllegalArgumentException.class );
+    }
+}
@@ -85,4 +85,21 @@ class TestUtils {
                    + " causes an exception " + e.toString();
         }
     }
+
+    /**
+     * Boolean model of the points covered by integer ranges.
+     *
+     * @param ranges to cover
+     * @param size of the model, beyond the largest end
+     * @return the model, true for every covered point
+     */
+    static boolean[] cover( Iterable<IntegerRange> ranges, int size ) {
+        boolean[] covered = new boolean[ size ];
+        for ( IntegerRange r : ranges ) {
+            for ( int p = r.start(); p < r.end(); p++ ) {
+                covered[ p ] = true;
+            }
+        }
+        return covered;
+    }
 }
@@ -0,0 +1,116 @@
+package io.github.jristretto.ranges;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests WatermarkRangeTracker, expiry, lateness and queries against a list.
+ */
+class WatermarkRangeTrackerTest {
+
+    static final Instant T0 = Instant.parse( "2026-03-01T00:00:00Z" );
+
+    static InstantRange r( int from, int to ) {
+        return InstantRange.of( T0.plusSeconds( from ), T0.plusSeconds( to ) );
+    }
+
+    @Test
+    void tExpiresAtWatermark() {
+        var tracker = new WatermarkRangeTracker( Duration.ZERO, 100 );
+        tracker.add( r( 0, 10 ) );
+        tracker.add( r( 5, 20 ) );
+        tracker.add( r( 2, 8 ) );
+        assertThat( tracker.activeAt( T0.plusSeconds( 9 ) ) )
+                .containsExactly( r( 0, 10 ), r( 5, 20 ) );
+        assertThat( tracker.advanceWatermark( T0.plusSeconds( 10 ) ) )
+                .containsExactly( r( 2, 8 ), r( 0, 10 ) );
+        assertThat( tracker.size() ).isEqualTo( 1 );
+        assertThat( tracker.advanceWatermark( T0.plusSeconds( 5 ) ) )
+                .as( "watermark does not go back" ).isEmpty();
+        assertThat( tracker.watermark() ).isEqualTo( T0.plusSeconds( 10 ) );
+    }
+
+    @Test
+    void tLateRanges() {
+        var tracker = new WatermarkRangeTracker( Duration.ofSeconds( 30 ), 100 );
+        tracker.advanceWatermark( T0.plusSeconds( 100 ) );
+        assertThat( tracker.add( r( 50, 90 ) ) ).as( "within lateness" )
+                .isTrue();
+        assertThat( tracker.add( r( 10, 60 ) ) ).as( "too late" ).isFalse();
+        assertThat( tracker.add( r( 90, 120 ) ) ).as( "out of order, active" )
+                .isTrue();
+        assertThat( tracker.activeAt( T0.plusSeconds( 95 ) ) )
+                .containsExactly( r( 90, 120 ) );
+        assertThat( tracker.advanceWatermark( T0.plusSeconds( 101 ) ) )
+                .containsExactly( r( 50, 90 ) );
+        assertThat( tracker.lateAcceptedCount() ).isEqualTo( 1 );
+        assertThat( tracker.droppedLateCount() ).isEqualTo( 1 );
+    }
+
+    @Test
+    void tEmptyRangesOverlapNothing() {
+        var tracker = new WatermarkRangeTracker( Duration.ZERO, 100 );
+        tracker.add( r( 10, 10 ) );
+        tracker.add( r( 8, 12 ) );
+        assertThat( r( 10, 10 ).overlaps( r( 5, 15 ) ) ).isFalse();
+        assertThat( tracker.overlapping( r( 5, 15 ) ) )
+                .containsExactly( r( 8, 12 ) );
+        assertThat( tracker.advanceWatermark( T0.plusSeconds( 10 ) ) )
+                .as( "still expired" ).containsExactly( r( 10, 10 ) );
+    }
+
+    @Test
+    void tCapacity() {
+        var tracker = new WatermarkRangeTracker( Duration.ZERO, 2 );
+        assertThat( tracker.add( r( 0, 1 ) ) ).isTrue();
+        assertThat( tracker.add( r( 0, 2 ) ) ).isTrue();
+        assertThat( tracker.add( r( 0, 3 ) ) ).isFalse();
+        assertThat( tracker.droppedOverCapacityCount() ).isEqualTo( 1 );
+        tracker.advanceWatermark( T0.plusSeconds( 1 ) );
+        assertThat( tracker.add( r( 0, 3 ) ) ).isTrue();
+    }
+
+    @Test
+    void tRandomAgainstList() {
+        Random rnd = new Random( 38 );
+        var tracker = new WatermarkRangeTracker( Duration.ofSeconds( 50 ),
+                100_000 );
+        List<InstantRange> model = new ArrayList<>();
+        int watermark = 0;
+        for ( int step = 0; step < 20_000; step++ ) {
+            int s = watermark - 40 + rnd.nextInt( 200 );
+            var range = r( s, s + rnd.nextInt( 300 ) );
+            if ( tracker.add( range ) && range.end().isAfter( T0.plusSeconds(
+                    watermark ) ) ) {
+                model.add( range );
+            }
+            if ( step % 10 == 0 ) {
+                watermark += rnd.nextInt( 20 );
+                Instant w = T0.plusSeconds( watermark );
+                List<InstantRange> expected = model.stream()
+                        .filter( x -> !x.end().isAfter( w ) ).toList();
+                model.removeAll( expected );
+                assertThat( tracker.advanceWatermark( w ) )
+                        .containsAll( expected );
+                int q = watermark + rnd.nextInt( 200 );
+                var window = r( q, q + rnd.nextInt( 30 ) );
+                assertThat( tracker.overlapping( window ) )
+                        .containsExactlyElementsOf( model.stream()
+                                .filter( x -> x.overlaps( window ) )
+                                .sorted( Comparator.comparing( InstantRange::start )
+                                        .thenComparing( InstantRange::end ) )
+                                .toList() );
+            }
+        }
+        // flush late ranges still pending
+        tracker.advanceWatermark( T0.plusSeconds( watermark ) );
+        assertThat( tracker.size() ).isEqualTo( model.size() );
+    }
+}
@@ -0,0 +1,92 @@
+package io.github.jristretto.ranges;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests WeightedIntervalScheduler against exhaustive search.
+ */
+class WeightedIntervalSchedulerTest {
+
+    static Weighted<IntegerRange> w( int start, int end, double weight ) {
+        return new Weighted<>( IntegerRange.of( start, end ), weight );
+    }
+
+    @Test
+    void tMeetingRangesAreCompatible() {
+        var candidates = List.of( w( 0, 5, 3 ), w( 5, 10, 3 ), w( 2, 8, 5 ),
+                w( 10, 10, 1 ), w( 20, 30, -4 ) );
+        assertThat( WeightedIntervalScheduler.optimize( candidates ) )
+                .containsExactly( w( 0, 5, 3 ), w( 5, 10, 3 ), w( 10, 10, 1 ) );
+    }
+
+    static double bruteForce( List<Weighted<IntegerRange>> c ) {
+        double best = 0;
+        for ( int mask = 0; mask < 1 << c.size(); mask++ ) {
+            double sum = 0;
+            boolean ok = true;
+            for ( int i = 0; i < c.size() && ok; i++ ) {
+                if ( ( mask >> i & 1 ) == 0 ) {
+                    continue;
+                }
+                sum += c.get( i ).weight();
+                for ( int j = i + 1; j < c.size(); j++ ) {
+                    if ( ( mask >> j & 1 ) != 0 && c.get( i ).range().overlaps( c
+                            .get( j ).range() ) ) {
+                        ok = false;
+                        break;
+                    }
+                }
+            }
+            if ( ok ) {
+                best = Math.max( best, sum );
+            }
+        }
+        return best;
+    }
+
+    @Test
+    void tMatchesBruteForce() {
+        Random rnd = new Random( 42 );
+        for ( int round = 0; round < 200; round++ ) {
+            List<Weighted<IntegerRange>> c = new ArrayList<>();
+            for ( int i = 0; i < 12; i++ ) {
+                int s = rnd.nextInt( 30 );
+                c.add( w( s, s + 1 + rnd.nextInt( 10 ), rnd.nextInt( 10 ) ) );
+            }
+            var chosen = WeightedIntervalScheduler.optimize( c );
+            for ( int i = 0; i < chosen.size(); i++ ) {
+                for ( int j = i + 1; j < chosen.size(); j++ ) {
+                    assertThat( chosen.get( i ).range().overlaps( chosen.get( j )
+                            .range() ) ).isFalse();
+                }
+            }
+            assertThat( WeightedIntervalScheduler.totalWeight( chosen ) )
+                    .as( c.toString() ).isEqualTo( bruteForce( c ) );
+        }
+    }
+
+    @Test
+    void tParallelMatchesSequential() {
+        Random rnd = new Random( 24 );
+        List<Weighted<IntegerRange>> c = new ArrayList<>();
+        for ( int i = 0; i < 200_000; i++ ) {
+            int s = rnd.nextInt( 5_000_000 );
+            c.add( w( s, s + 1 + rnd.nextInt( 100 ), rnd.nextInt( 1_000 ) ) );
+        }
+        ForkJoinPool pool = new ForkJoinPool( 4 );
+        try {
+            var parallel = WeightedIntervalScheduler.parallelOptimize( c, pool );
+            var sequential = WeightedIntervalScheduler.optimize( c );
+            assertThat( WeightedIntervalScheduler.totalWeight( parallel ) )
+                    .isEqualTo( WeightedIntervalScheduler.totalWeight( sequential ) );
+        } finally {
+            pool.shutdown();
+        }
+    }
+}